@@ -11,6 +11,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.time.LocalDate;
@@ -18,7 +19,8 @@ import java.time.LocalDate;
 import static com.realbeatz.configs.FileUploadConfig.APPLICATION_BASE_PATH;
 
 @SpringBootApplication
-@ConfigurationPropertiesScan("com.realbeatz.security.jwt")
+@EnableScheduling
+@ConfigurationPropertiesScan({"com.realbeatz.security.jwt", "com.realbeatz.post.timeline", "com.realbeatz.post.trending"})
 public class RealBeatzApplication {
 
     public static void main(String[] args) {
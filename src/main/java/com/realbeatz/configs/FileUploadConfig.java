@@ -23,13 +23,12 @@ public class FileUploadConfig {
         if (path.startsWith("jar")) {
             log.info("Running application as a jar");
             // returns the parent folder of the jar file if is in a jar file
-            APPLICATION_BASE_PATH = path
-                    .replace("jar:file:/", "")
+            APPLICATION_BASE_PATH = stripFileScheme(path)
                     .replaceAll(PROJECT_NAME + "([^/]*)[.]jar(.*)!/$", "");
         } else {
             log.info("Running application not in a jar");
             // returns the project root folder as base path if isn't in a jar file
-            APPLICATION_BASE_PATH = path.replace("file:/", "")
+            APPLICATION_BASE_PATH = stripFileScheme(path)
                     .replaceAll("classes/$", "")
                     .replaceAll("target/$", "");
         }
@@ -37,12 +36,30 @@ public class FileUploadConfig {
         log.info("Application base path: " + APPLICATION_BASE_PATH);
     }
 
+    /**
+     * Turns a code source location (Ex. 'jar:file:/opt/app/realbeatz.jar!/')
+     * into a file path, keeping it absolute: the leading slash is only dropped
+     * before a Windows drive letter, otherwise the directories would be
+     * created relative to the working directory
+     */
+    static String stripFileScheme(String location) {
+        return location
+                .replaceFirst("^(jar:)?file:", "")
+                .replaceFirst("^/([A-Za-z]:/)", "$1");
+    }
+
     public static final String DEFAULT_PROFILE_PIC_FILENAME =
             "default-profile-picture.jpg";
     public static final String PROFILE_PICTURE_UPLOAD_DIRECTORY_PATH =
             APPLICATION_BASE_PATH + "/profile-pics";
     public static final String DEFAULT_PROFILE_PIC_FULL_NAME =
             DEFAULT_PROFILE_PIC_FILENAME;
+    // uploads wait here until the profile picture pipeline has processed them
+    public static final String PROFILE_PICTURE_STAGING_DIRECTORY_PATH =
+            APPLICATION_BASE_PATH + "/profile-pics-staging";
+    // smaller copies of the profile pictures, one directory per size
+    public static final String PROFILE_PICTURE_THUMBNAIL_DIRECTORY_PATH =
+            APPLICATION_BASE_PATH + "/profile-pics-thumbnails";
 
     /**
      * This constructor will initialize the configuration and create the
@@ -50,15 +67,21 @@ public class FileUploadConfig {
      * running location of the application (base path)
      */
     public FileUploadConfig() {
+        createDirectory("profile-pics");
+        createDirectory("profile-pics-staging");
+        createDirectory("profile-pics-thumbnails");
+    }
+
+    private static void createDirectory(String name) {
         try {
-            log.info("Creating '/profile-pics' directory...");
+            log.info("Creating '/{}' directory...", name);
             Files.createDirectory(Path.of(APPLICATION_BASE_PATH)
-                    .resolve("profile-pics"));
+                    .resolve(name));
         } catch (FileAlreadyExistsException e) {
-            log.info("'/profile-pics' directory already created.");
+            log.info("'/{}' directory already created.", name);
         } catch (IOException e) {
-            log.error("An error occurred when creating 'profile-pics' directory: {}",
-                    e.getMessage(), e);
+            log.error("An error occurred when creating '{}' directory: {}",
+                    name, e.getMessage(), e);
             throw new RuntimeException(e);
         }
     }
@@ -69,4 +92,12 @@ public class FileUploadConfig {
     public static Path getProfilePictureUploadDirectory() {
         return Path.of(PROFILE_PICTURE_UPLOAD_DIRECTORY_PATH);
     }
+
+    public static Path getProfilePictureStagingDirectory() {
+        return Path.of(PROFILE_PICTURE_STAGING_DIRECTORY_PATH);
+    }
+
+    public static Path getProfilePictureThumbnailDirectory() {
+        return Path.of(PROFILE_PICTURE_THUMBNAIL_DIRECTORY_PATH);
+    }
 }
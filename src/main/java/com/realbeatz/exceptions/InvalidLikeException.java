@@ -0,0 +1,7 @@
+package com.realbeatz.exceptions;
+
+public class InvalidLikeException extends Exception {
+    public InvalidLikeException(String message) {
+        super(message);
+    }
+}
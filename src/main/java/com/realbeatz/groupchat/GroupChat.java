@@ -27,7 +27,7 @@ public class GroupChat {
             name = "group_chat_seq",
             sequenceName = "group_chat_seq",
             initialValue = 2000,
-            allocationSize = 1)
+            allocationSize = 50)
     @Column(name = "chat_id", nullable = false)
     private Long id;
 
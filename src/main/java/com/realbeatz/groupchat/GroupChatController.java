@@ -3,15 +3,20 @@ package com.realbeatz.groupchat;
 import com.realbeatz.payloads.responses.ErrorMessage;
 import com.realbeatz.exceptions.InvalidUserIdException;
 import com.realbeatz.payloads.requests.CreateGroupChatRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
+import static com.realbeatz.utils.StreamingUtils.toNdjsonResponse;
+
 @RestController
 @AllArgsConstructor
 @Slf4j
@@ -20,12 +25,23 @@ import java.util.List;
 public class GroupChatController {
 
     private final GroupChatService groupChatService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
     public ResponseEntity<List<GroupChat>> getAllGroupChats() {
         return ResponseEntity.ok(groupChatService.getAllGroupChats());
     }
 
+    /**
+     * Streams every group chat as newline delimited JSON, used instead of
+     * getAllGroupChats when the client accepts application/x-ndjson
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllGroupChats() {
+        log.info("Streaming all group chats");
+        return toNdjsonResponse(objectMapper, groupChatService::streamAllGroupChats);
+    }
+
     @GetMapping("/{chatId}")
     public ResponseEntity<?> getGroupChatById(
             @PathVariable(name = "chatId") Long chatId) {
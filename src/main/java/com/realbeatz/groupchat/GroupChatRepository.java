@@ -1,8 +1,28 @@
 package com.realbeatz.groupchat;
 
+import com.realbeatz.user.NamedRelation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.realbeatz.utils.StreamingUtils.STREAM_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 @Repository
 public interface GroupChatRepository extends JpaRepository<GroupChat, Long> {
+
+    @Query("select new com.realbeatz.user.NamedRelation(m.id, g.chatName) " +
+            "from GroupChat g join g.members m where m.id in ?1")
+    List<NamedRelation> findChatNamesByMemberIdIn(Collection<Long> memberIds);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select new com.realbeatz.groupchat.GroupChatView(g.id, g.chatName, g.timeCreated) " +
+            "from GroupChat g order by g.id")
+    Stream<GroupChatView> streamAllViews();
 }
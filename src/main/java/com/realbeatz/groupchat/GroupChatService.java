@@ -5,10 +5,13 @@ import com.realbeatz.user.User;
 import com.realbeatz.user.UserService;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor
@@ -20,6 +23,16 @@ public class GroupChatService {
         return groupChatRepository.findAll();
     }
 
+    /**
+     * Hands every group chat to the consumer while it is read from the database
+     */
+    @Transactional(readOnly = true)
+    public void streamAllGroupChats(Consumer<? super GroupChatView> consumer) {
+        try (Stream<GroupChatView> groupChats = groupChatRepository.streamAllViews()) {
+            groupChats.forEach(consumer);
+        }
+    }
+
     public GroupChat getGroupChat(Long chatId) {
         return groupChatRepository.findById(chatId).orElseThrow();
     }
@@ -37,6 +50,7 @@ public class GroupChatService {
         groupChat.getMembers().add(owner);
 
         groupChatRepository.save(groupChat);
+        userService.touchUsers(List.of(owner.getId()));
         return GroupChatDTO.map(groupChat);
     }
 
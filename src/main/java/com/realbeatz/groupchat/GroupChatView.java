@@ -0,0 +1,12 @@
+package com.realbeatz.groupchat;
+
+import java.time.LocalDate;
+
+/**
+ * The columns of a group chat serialized when listing every group chat,
+ * read without loading its eagerly fetched members and messages
+ */
+public record GroupChatView(Long id,
+                            String chatName,
+                            LocalDate timeCreated) {
+}
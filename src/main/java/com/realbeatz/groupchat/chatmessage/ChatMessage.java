@@ -25,7 +25,7 @@ public class ChatMessage {
             name = "chat_messages_gen",
             sequenceName = "chat_messages_seq",
             initialValue = 3000,
-            allocationSize = 1)
+            allocationSize = 50)
     @Column(name = "msg_id", nullable = false)
     private Long id;
 
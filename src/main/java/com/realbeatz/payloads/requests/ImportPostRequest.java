@@ -0,0 +1,14 @@
+package com.realbeatz.payloads.requests;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value
+public class ImportPostRequest {
+    String content;
+    String songTitle;
+    String artists;
+    // when the post was originally made, defaults to the time of the import
+    LocalDateTime postTime;
+}
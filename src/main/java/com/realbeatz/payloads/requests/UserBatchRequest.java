@@ -0,0 +1,11 @@
+package com.realbeatz.payloads.requests;
+
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+public class UserBatchRequest {
+    List<Long> ids;
+    List<String> usernames;
+}
@@ -3,6 +3,7 @@ package com.realbeatz.post;
 import com.realbeatz.post.comment.Comment;
 import com.realbeatz.user.User;
 import lombok.*;
+import org.hibernate.annotations.Formula;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -18,7 +19,9 @@ import static com.realbeatz.utils.PostUtils.*;
 @ToString
 @AllArgsConstructor
 @RequiredArgsConstructor
-@Table(name = "posts")
+@Table(
+        name = "posts",
+        indexes = @Index(name = "idx_posts_creator_time", columnList = "creator_id, postTime, post_id"))
 public class Post {
     @Setter(AccessLevel.NONE)
     @Id
@@ -29,7 +32,7 @@ public class Post {
             name = "posts_gen",
             sequenceName = "posts_seq",
             initialValue = 3000,
-            allocationSize = 1)
+            allocationSize = 50)
     @Column(name = "post_id", nullable = false)
     private Long id;
 
@@ -48,12 +51,19 @@ public class Post {
 
     @OneToMany(
             mappedBy = "post",
-            fetch = FetchType.EAGER,
+            fetch = FetchType.LAZY,
             orphanRemoval = true,
             cascade = CascadeType.ALL)
+    @ToString.Exclude
     @Builder.Default
     private Set<Comment> comments = new HashSet<>();
 
+    // counted in the same select as the post so the comments never have to be loaded
+    @Setter(AccessLevel.NONE)
+    @Formula("(select count(*) from comments c where c.post_id = post_id)")
+    @Builder.Default
+    private Integer commentCount = 0;
+
 
     @ManyToOne(fetch = FetchType.EAGER, cascade = CascadeType.DETACH)
     @JoinColumn(
@@ -63,4 +73,10 @@ public class Post {
     )
     private User creator;
     private LocalDateTime postTime;
+
+    // bumped with PostRepository.touch whenever the post is edited, never written by saving the entity
+    @Setter(AccessLevel.NONE)
+    @Column(nullable = false, updatable = false)
+    @Builder.Default
+    private Long revision = 0L;
 }
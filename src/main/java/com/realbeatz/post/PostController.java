@@ -1,28 +1,45 @@
 package com.realbeatz.post;
 
 import com.realbeatz.exceptions.InvalidAccessException;
+import com.realbeatz.exceptions.InvalidLikeException;
 import com.realbeatz.exceptions.InvalidPostIdException;
 import com.realbeatz.exceptions.InvalidUserInputException;
 import com.realbeatz.exceptions.InvalidUsernameException;
 import com.realbeatz.payloads.requests.CreatePostRequest;
 import com.realbeatz.payloads.requests.NewCommentRequest;
 import com.realbeatz.payloads.responses.ErrorMessage;
+import com.realbeatz.post.bulk.PostImportResult;
+import com.realbeatz.post.bulk.PostImportService;
 import com.realbeatz.post.comment.CommentDTO;
+import com.realbeatz.post.like.LikeDTO;
+import com.realbeatz.post.like.LikeService;
+import com.realbeatz.user.friends.FriendDTO;
+import com.realbeatz.utils.ETagUtils;
+import com.realbeatz.utils.ETagUtils.Tagged;
+import com.realbeatz.utils.PaginationUtils.CursorPage;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
+import static com.realbeatz.utils.CustomHeaders.NEXT_CURSOR;
 import static com.realbeatz.utils.CustomHeaders.USERNAME;
 import static com.realbeatz.utils.HttpRequestUtils.getUsernameFromRequest;
+import static com.realbeatz.utils.PaginationUtils.toResponse;
+import static com.realbeatz.utils.StreamingUtils.toNdjsonResponse;
 
-@CrossOrigin(origins = "*", originPatterns = "*")
+@CrossOrigin(origins = "*", originPatterns = "*", exposedHeaders = {NEXT_CURSOR, HttpHeaders.ETAG})
 @RestController
 @Slf4j
 @AllArgsConstructor
@@ -30,6 +47,9 @@ import static com.realbeatz.utils.HttpRequestUtils.getUsernameFromRequest;
 public class PostController {
 
     private final PostService postService;
+    private final LikeService likeService;
+    private final PostImportService postImportService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
     @PreAuthorize("hasAuthority('admin:read')")
@@ -37,23 +57,63 @@ public class PostController {
         return ResponseEntity.ok(postService.getAllPosts());
     }
 
+    /**
+     * Streams every post as newline delimited JSON, for exports too large to be
+     * built in memory. Used instead of getAllPosts when the client accepts application/x-ndjson
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAuthority('admin:read')")
+    public ResponseEntity<StreamingResponseBody> streamAllPosts() {
+        log.info("Streaming all posts");
+        return toNdjsonResponse(objectMapper, postService::streamAllPosts);
+    }
+
+    @GetMapping("/search")
+    @PreAuthorize("hasAnyAuthority('user:read', 'admin:read')")
+    public ResponseEntity<?> searchPosts(
+            @RequestParam(value = "q") String query,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            HttpServletRequest request) {
+
+        String username = getUsernameFromRequest(request);
+
+        log.info("Searching posts with query: {}, limit: {}", query, limit);
+
+        List<PostDTO> posts;
+
+        try {
+            posts = postService.searchPosts(query, limit, username);
+        } catch (InvalidUserInputException | InvalidUsernameException e) {
+            log.error("Error searching posts with query: {}", query, e);
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(ErrorMessage.of(e.getMessage()));
+        }
+
+        return ResponseEntity.ok(posts);
+    }
+
     @GetMapping("/{postId}")
     @PreAuthorize("hasAnyAuthority('user:read', 'admin:read')")
     public ResponseEntity<?> getPostById(
-            @PathVariable(name = "postId") Long postId) {
+            @PathVariable(name = "postId") Long postId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request) {
+
+        String username = getUsernameFromRequest(request);
 
         log.info("Getting post with id: {}", postId);
-        PostDTO post;
+        Tagged<PostDTO> post;
 
         try {
-            post = postService.getPostById(postId);
-        } catch (InvalidPostIdException e) {
+            post = postService.getPostById(postId, username, ifNoneMatch);
+        } catch (InvalidPostIdException | InvalidUsernameException e) {
             log.error("Error getting post with id: {}", postId, e);
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
                     .body(ErrorMessage.of(e.getMessage()));
         }
-        return ResponseEntity.ok(post);
+        return ETagUtils.toResponse(post);
     }
 
     @PostMapping("/create")
@@ -80,6 +140,30 @@ public class PostController {
         return ResponseEntity.ok(newPost);
     }
 
+    @PostMapping(
+            value = "/import",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasAnyRole('ROLE_USER', 'ROLE_SUPER_ADMIN')")
+    public ResponseEntity<?> importPosts(HttpServletRequest request) {
+
+        String username = getUsernameFromRequest(request);
+
+        log.info("Importing posts for user with username: {}", username);
+
+        PostImportResult result;
+
+        try {
+            result = postImportService.importPosts(username, request.getInputStream());
+        } catch (InvalidUsernameException | IOException e) {
+            log.error("Error importing posts for user with username: {}", username, e);
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(ErrorMessage.of(e.getMessage()));
+        }
+
+        return ResponseEntity.ok(result);
+    }
+
     // todo: implement a way to let super admin edit the post even super admin isn't the original creator
     @PatchMapping("/update/{postId}")
     @PreAuthorize("hasAnyRole('ROLE_USER', 'ROLE_SUPER_ADMIN')")
@@ -118,22 +202,95 @@ public class PostController {
 
     // todo: delete posts
 
-    // todo: like posts
+    @PostMapping("/{postId}/like")
+    @PreAuthorize("hasAnyRole('ROLE_USER', 'ROLE_SUPER_ADMIN')")
+    public ResponseEntity<?> likePost(
+            @PathVariable(name = "postId") Long postId,
+            HttpServletRequest request) {
+
+        String username = getUsernameFromRequest(request);
 
-    // todo: unlike a post
+        log.info("User with username: {} liking post with id: {}", username, postId);
 
+        LikeDTO likeDTO;
+
+        try {
+            likeDTO = likeService.likePost(username, postId);
+        } catch (InvalidUsernameException | InvalidPostIdException | InvalidLikeException e) {
+            log.error("Error liking post with id: {} for user with username: {}",
+                    postId, username, e);
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(ErrorMessage.of(e.getMessage()));
+        }
+
+        return ResponseEntity.ok(likeDTO);
+    }
+
+    @PostMapping("/{postId}/unlike")
+    @PreAuthorize("hasAnyRole('ROLE_USER', 'ROLE_SUPER_ADMIN')")
+    public ResponseEntity<?> unlikePost(
+            @PathVariable(name = "postId") Long postId,
+            HttpServletRequest request) {
+
+        String username = getUsernameFromRequest(request);
+
+        log.info("User with username: {} unliking post with id: {}", username, postId);
+
+        LikeDTO likeDTO;
+
+        try {
+            likeDTO = likeService.unlikePost(username, postId);
+        } catch (InvalidUsernameException | InvalidPostIdException | InvalidLikeException e) {
+            log.error("Error unliking post with id: {} for user with username: {}",
+                    postId, username, e);
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(ErrorMessage.of(e.getMessage()));
+        }
+
+        return ResponseEntity.ok(likeDTO);
+    }
+
+
+    @GetMapping("/{postId}/likers")
+    @PreAuthorize("hasAnyAuthority('user:read', 'admin:read')")
+    public ResponseEntity<?> getLikersOfPostById(
+            @PathVariable(name = "postId") Long postId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        log.info("Get likers of post with id: {}, cursor: {}, limit: {}",
+                postId, cursor, limit);
+
+        CursorPage<FriendDTO> likers;
+
+        try {
+            likers = likeService.getLikers(postId, cursor, limit);
+        } catch (InvalidPostIdException | InvalidUserInputException e) {
+            log.error("Error getting likers of post with id: {}", postId, e);
+
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(ErrorMessage.of(e.getMessage()));
+        }
+
+        return toResponse(likers);
+    }
 
     @GetMapping("/{postId}/comment")
     @PreAuthorize("hasAnyAuthority('user:read', 'admin:read')")
-    public ResponseEntity<?> getAllCommentsOfPostById(
-            @PathVariable(name = "postId") Long postId) {
-        log.info("Get all comments of post with id: {}", postId);
+    public ResponseEntity<?> getCommentsOfPostById(
+            @PathVariable(name = "postId") Long postId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        log.info("Get comments of post with id: {}, cursor: {}, limit: {}",
+                postId, cursor, limit);
 
-        List<CommentDTO> commentDTOList;
+        CursorPage<CommentDTO> comments;
 
         try {
-            commentDTOList = postService.getAllCommentsOfPostById(postId);
-        } catch (Exception e) {
+            comments = postService.getCommentsOfPost(postId, cursor, limit);
+        } catch (InvalidPostIdException | InvalidUserInputException e) {
             log.error("Error getting all comments of post with id: {}", postId, e);
 
             return ResponseEntity
@@ -141,7 +298,7 @@ public class PostController {
                     .body(ErrorMessage.of(e.getMessage()));
         }
 
-        return ResponseEntity.ok(commentDTOList);
+        return toResponse(comments);
     }
 
     //todo: get specific comment on post
@@ -179,21 +336,26 @@ public class PostController {
 
 
     @GetMapping("/get-all-related")
-    public ResponseEntity<?> fetchAllRelatedPosts(HttpServletRequest request) {
+    public ResponseEntity<?> fetchAllRelatedPosts(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request) {
         String username = getUsernameFromRequest(request);
-        log.info("Fetching all posts related to user: {}", username);
+        log.info("Fetching posts related to user: {}, cursor: {}, limit: {}",
+                username, cursor, limit);
 
-        List<PostDTO> postDTOs;
+        Tagged<CursorPage<PostDTO>> postDTOs;
 
         try {
-            postDTOs = postService.getAllPostsRelatedToUser(username);
-        } catch (InvalidUsernameException e) {
+            postDTOs = postService.getPostsRelatedToUser(username, cursor, limit, ifNoneMatch);
+        } catch (InvalidUsernameException | InvalidUserInputException e) {
             log.info("Error fetching all posts related to user: {}", username);
             return ResponseEntity
                     .badRequest()
                     .body(e.getMessage());
         }
 
-        return ResponseEntity.ok(postDTOs);
+        return toResponse(postDTOs);
     }
 }
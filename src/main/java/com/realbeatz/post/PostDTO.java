@@ -16,6 +16,10 @@ public class PostDTO {
     private String songTitle;
     private String artists;
     private Integer likes;
+    // whether the user the post is shown to liked it, null when unknown
+    private Boolean likedByMe;
+    private Integer commentCount;
+    // only the newest comments, the rest are fetched page by page
     private List<CommentDTO> comments;
     private Long userId;
 
@@ -23,22 +27,32 @@ public class PostDTO {
     private String posterProfilePictureFullName;
     private LocalDateTime postTime;
 
-    public static PostDTO map(Post post) {
-        List<CommentDTO> comments = post.getComments().stream()
-                .map(CommentDTO::map)
-                .toList();
+    /**
+     * Maps a post without any of its comments, only the comment count
+     */
+    public static PostDTO map(PostView post) {
+        return map(post, List.of());
+    }
 
+    /**
+     * Maps a post along with a preview of its newest comments
+     *
+     * @param post           the post to map
+     * @param latestComments newest comments of the post, already mapped
+     */
+    public static PostDTO map(PostView post, List<CommentDTO> latestComments) {
         return PostDTO.builder()
-                .id(post.getId())
-                .content(post.getContent())
-                .songTitle(post.getSongTitle())
-                .artists(post.getArtists())
-                .likes(post.getLikes())
-                .comments(comments)
-                .userId(post.getCreator().getId())
-                .posterUsername(post.getCreator().getUsername())
-                .posterProfilePictureFullName(post.getCreator().getProfile().getProfilePictureFullName())
-                .postTime(post.getPostTime())
+                .id(post.id())
+                .content(post.content())
+                .songTitle(post.songTitle())
+                .artists(post.artists())
+                .likes(post.likes())
+                .commentCount(post.commentCount())
+                .comments(latestComments)
+                .userId(post.creatorId())
+                .posterUsername(post.creatorUsername())
+                .posterProfilePictureFullName(post.creatorProfilePictureFullName())
+                .postTime(post.postTime())
                 .build();
     }
 }
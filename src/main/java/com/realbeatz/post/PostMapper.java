@@ -0,0 +1,66 @@
+package com.realbeatz.post;
+
+import com.realbeatz.post.comment.CommentDTO;
+import com.realbeatz.post.comment.CommentRepository;
+import com.realbeatz.post.comment.CommentView;
+import com.realbeatz.post.like.LikerBitmaps;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.realbeatz.utils.PostUtils.LATEST_COMMENTS_PREVIEW_SIZE;
+
+/**
+ * Maps posts the same way wherever they are shown (Ex. the feed, search
+ * results and the posts of a user), kept apart from PostService so services
+ * PostService depends on can map posts too
+ */
+@Component
+@AllArgsConstructor
+public class PostMapper {
+
+    private final CommentRepository commentRepository;
+    private final LikerBitmaps likerBitmaps;
+
+    /**
+     * Maps posts along with a preview of their newest comments and whether
+     * the viewer liked them, fetching the comments of all the posts with two
+     * queries and the likes with a single bitmap lookup
+     *
+     * @param posts    the posts to map
+     * @param viewerId id of the user the posts are shown to, null if unknown
+     */
+    public List<PostDTO> map(List<PostView> posts, @Nullable Long viewerId) {
+        if (posts.isEmpty()) return List.of();
+
+        List<Long> postIds = posts.stream()
+                .map(PostView::id)
+                .toList();
+
+        List<Long> latestCommentIds =
+                commentRepository.findLatestIdsByPostIdIn(postIds, LATEST_COMMENTS_PREVIEW_SIZE);
+        Map<Long, List<CommentDTO>> latestComments = latestCommentIds.isEmpty() ?
+                Map.of() :
+                commentRepository.findViewsByIdIn(latestCommentIds).stream()
+                        .collect(Collectors.groupingBy(
+                                CommentView::postId,
+                                Collectors.mapping(CommentDTO::map, Collectors.toList())));
+
+        Map<Long, Boolean> likedByViewer = viewerId == null ?
+                Map.of() : likerBitmaps.likedBy(viewerId, postIds);
+
+        return posts.stream()
+                .map(post -> {
+                    PostDTO postDTO = PostDTO.map(post, latestComments.getOrDefault(post.id(), List.of()));
+                    // include likes that haven't been flushed yet
+                    postDTO.setLikes(likerBitmaps.getLikeCount(post.id(), post.likes()));
+                    postDTO.setLikedByMe(likedByViewer.get(post.id()));
+                    return postDTO;
+                })
+                .toList();
+    }
+}
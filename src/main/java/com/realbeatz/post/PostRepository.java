@@ -1,13 +1,92 @@
 package com.realbeatz.post;
 
-import com.realbeatz.user.User;
+import com.realbeatz.post.search.SearchDocument;
+import com.realbeatz.post.timeline.TimelineItem;
+import com.realbeatz.post.trending.PostedSong;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static com.realbeatz.utils.StreamingUtils.STREAM_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
 
-    List<Post> findPostByCreator(User user);
+    String POST_VIEW = "select new com.realbeatz.post.PostView(" +
+            "p.id, p.content, p.songTitle, p.artists, p.likes, p.commentCount, " +
+            "u.id, u.username, pr.profilePictureFullName, p.postTime) " +
+            "from Post p join p.creator u join u.profile pr ";
+
+    @Query("select p.likes from Post p where p.id = ?1")
+    Optional<Integer> findLikesById(Long postId);
+
+    @Query("select new com.realbeatz.post.PostVersion(" +
+            "p.id, p.revision, p.likes, p.commentCount, " +
+            "(select max(c.id) from Comment c where c.post = p), u.revision) " +
+            "from Post p join p.creator u where p.id in ?1")
+    List<PostVersion> findVersionsByIdIn(Collection<Long> postIds);
+
+    @Transactional
+    @Modifying
+    @Query("update Post p set p.revision = p.revision + 1 where p.id = ?1")
+    int touch(Long postId);
+
+    @Query(POST_VIEW + "where p.id = ?1")
+    Optional<PostView> findViewById(Long postId);
+
+    @Query(POST_VIEW + "where p.id in ?1")
+    List<PostView> findViewsByIdIn(Collection<Long> postIds);
+
+    @Query(POST_VIEW)
+    List<PostView> findAllViews();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(POST_VIEW + "order by p.id")
+    Stream<PostView> streamAllViews();
+
+    @Query(POST_VIEW + "where u.id in ?1 " +
+            "order by p.postTime desc, p.id desc")
+    List<PostView> findViewsByCreatorIdIn(Collection<Long> creatorIds);
+
+    @Query(POST_VIEW + "where u.id = ?1 " +
+            "order by p.postTime desc, p.id desc")
+    List<PostView> findViewPageByCreatorId(Long creatorId, Pageable pageable);
+
+    @Query(POST_VIEW + "where u.id = ?1 " +
+            "and (p.postTime < ?2 or (p.postTime = ?2 and p.id < ?3)) " +
+            "order by p.postTime desc, p.id desc")
+    List<PostView> findViewPageByCreatorIdBefore(Long creatorId, LocalDateTime postTime, Long postId, Pageable pageable);
+
+    @Query("select new com.realbeatz.post.timeline.TimelineItem(p.id, p.postTime) " +
+            "from Post p where p.creator.id in ?1 " +
+            "order by p.postTime desc, p.id desc")
+    List<TimelineItem> findItemsByCreatorIdIn(Collection<Long> creatorIds, Pageable pageable);
+
+    @Query("select new com.realbeatz.post.timeline.TimelineItem(p.id, p.postTime) " +
+            "from Post p where p.creator.id in ?1 " +
+            "and (p.postTime < ?2 or (p.postTime = ?2 and p.id < ?3)) " +
+            "order by p.postTime desc, p.id desc")
+    List<TimelineItem> findItemsByCreatorIdInBefore(Collection<Long> creatorIds, LocalDateTime postTime, Long postId, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select new com.realbeatz.post.search.SearchDocument(p.id, p.songTitle, p.artists, p.content) " +
+            "from Post p")
+    Stream<SearchDocument> streamSearchDocuments();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select new com.realbeatz.post.trending.PostedSong(p.songTitle, p.artists, p.postTime) " +
+            "from Post p where p.postTime > ?1")
+    Stream<PostedSong> streamPostedSongsSince(LocalDateTime postTime);
 }
@@ -4,19 +4,34 @@ import com.realbeatz.exceptions.*;
 import com.realbeatz.post.comment.Comment;
 import com.realbeatz.post.comment.CommentDTO;
 import com.realbeatz.post.comment.CommentRepository;
+import com.realbeatz.post.comment.CommentView;
+import com.realbeatz.post.like.LikeService;
+import com.realbeatz.post.search.PostSearchIndex;
+import com.realbeatz.post.search.SearchDocument;
+import com.realbeatz.post.timeline.TimelineItem;
+import com.realbeatz.post.timeline.TimelineService;
+import com.realbeatz.post.trending.TrendingService;
 import com.realbeatz.user.User;
 import com.realbeatz.user.UserService;
-import com.realbeatz.utils.PostUtils;
+import com.realbeatz.utils.ETagUtils.Tagged;
+import com.realbeatz.utils.FieldUpdaters;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.util.ReflectionUtils;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.lang.reflect.Field;
+import javax.annotation.Nullable;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.function.Predicate;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import static com.realbeatz.utils.ValidationUtils.validateField;
+import static com.realbeatz.utils.ETagUtils.matches;
+import static com.realbeatz.utils.ETagUtils.strongETag;
+import static com.realbeatz.utils.PaginationUtils.*;
+import static com.realbeatz.utils.PostUtils.POST_SCHEMA;
+import static com.realbeatz.utils.SearchUtils.*;
 
 @Service
 @AllArgsConstructor
@@ -25,24 +40,73 @@ public class PostService {
     private final PostRepository postRepository;
     private final CommentRepository commentRepository;
     private final UserService userService;
+    private final TimelineService timelineService;
+    private final LikeService likeService;
+    private final PostSearchIndex postSearchIndex;
+    private final TrendingService trendingService;
+    private final PostMapper postMapper;
 
-    // input validation checks for all the updatable fields of a post
-    private final Map<String, Predicate<Object>> postChecks =
-            PostUtils.getPostChecks();
     private final List<String> UPDATABLE_POST_FIELDS =
             List.of("content", "songTitle", "artists");
+    private final FieldUpdaters<Post> postUpdaters =
+            FieldUpdaters.of(Post.class, UPDATABLE_POST_FIELDS);
 
     public List<PostDTO> getAllPosts() {
-        return postRepository.findAll().stream()
+        return postRepository.findAllViews().stream()
                 .map(PostDTO::map)
                 .toList();
     }
 
+    /**
+     * Same as {@link #getAllPosts()} but hands each post to the consumer
+     * while it is read from the database instead of collecting them
+     */
+    @Transactional(readOnly = true)
+    public void streamAllPosts(Consumer<? super PostDTO> consumer) {
+        try (Stream<PostView> posts = postRepository.streamAllViews()) {
+            posts.map(PostDTO::map).forEach(consumer);
+        }
+    }
+
     public PostDTO getPostById(Long postId) throws InvalidPostIdException {
-        Post post = postRepository.findById(postId)
+        return getPostById(postId, (Long) null);
+    }
+
+    public PostDTO getPostById(Long postId, String username) throws InvalidPostIdException, InvalidUsernameException {
+        Long viewerId = userService.getUserIdByUsername(username);
+        return getPostById(postId, viewerId);
+    }
+
+    /**
+     * Returns a post tagged with an ETag, or only the ETag when it matches the
+     * one the client sent. The ETag is computed from a version lookup before
+     * the post is loaded, so unchanged posts are never mapped.
+     *
+     * @param ifNoneMatch value of the If-None-Match header, null if absent
+     */
+    public Tagged<PostDTO> getPostById(Long postId,
+                                       String username,
+                                       @Nullable String ifNoneMatch) throws InvalidPostIdException, InvalidUsernameException {
+        Long viewerId = userService.getUserIdByUsername(username);
+
+        List<PostVersion> versions = postRepository.findVersionsByIdIn(List.of(postId));
+        if (versions.isEmpty()) {
+            throw new InvalidPostIdException(
+                    "The post with id: " + postId + " doesn't exist");
+        }
+
+        String etag = postsETag(List.of(postId), versions, viewerId);
+        if (matches(ifNoneMatch, etag)) return Tagged.notModified(etag);
+
+        // tagged before loading, a post changed in between is only sent again on the next request
+        return new Tagged<>(etag, getPostById(postId, viewerId));
+    }
+
+    public PostDTO getPostById(Long postId, @Nullable Long viewerId) throws InvalidPostIdException {
+        PostView post = postRepository.findViewById(postId)
                 .orElseThrow(() -> new InvalidPostIdException(
                         "The post with id: " + postId + " doesn't exist"));
-        return PostDTO.map(post);
+        return mapPost(post, viewerId);
     }
 
     public PostDTO createNewPost(Long userId,
@@ -66,18 +130,6 @@ public class PostService {
             String content,
             String songTitle,
             String artists) throws InvalidUserInputException {
-
-
-        Map<String, String> input = new HashMap<>();
-        input.put("content", content);
-        input.put("songTitle", songTitle);
-        input.put("artists", artists);
-        for (Map.Entry<String, String> entry : input.entrySet()) {
-            String field = entry.getKey();
-            String value = entry.getValue();
-            validateField(field, value, postChecks);
-        }
-
         Post post = Post.builder()
                 .creator(user)
                 .content(content)
@@ -85,17 +137,34 @@ public class PostService {
                 .songTitle(songTitle)
                 .postTime(LocalDateTime.now())
                 .build();
+        POST_SCHEMA.check(post);
 
         postRepository.save(post);
-        return PostDTO.map(post);
+        userService.touchUsers(List.of(user.getId()));
+        timelineService.onPostCreated(post);
+        postSearchIndex.index(SearchDocument.of(post));
+        trendingService.onPostCreated(post);
+        return PostDTO.map(PostView.of(post));
     }
 
-    public List<CommentDTO> getAllCommentsOfPostById(Long postId) throws Exception {
-        Post post = postRepository.findById(postId)
-                .orElseThrow(() -> new Exception("Post with id: " + postId + " doesn't exist"));
-        return post.getComments().stream()
-                .map(CommentDTO::map)
-                .toList();
+    public CursorPage<CommentDTO> getCommentsOfPost(Long postId,
+                                                    String cursor,
+                                                    Integer pageSize) throws InvalidPostIdException, InvalidUserInputException {
+        if (!postRepository.existsById(postId)) {
+            throw new InvalidPostIdException(
+                    "Post with id: " + postId + " doesn't exist");
+        }
+
+        Cursor after = decodeCursor(cursor);
+        int size = pageSize(pageSize);
+
+        List<CommentView> comments = after == null ?
+                commentRepository.findPageByPostId(postId, lookAhead(size)) :
+                commentRepository.findPageByPostIdBefore(
+                        postId, after.time(), after.id(), lookAhead(size));
+
+        return toPage(comments, size, CommentView::timePosted, CommentView::id)
+                .map(CommentDTO::map);
     }
 
     public CommentDTO createNewComment(Long userId,
@@ -131,13 +200,12 @@ public class PostService {
                 .timePosted(LocalDateTime.now())
                 .build();
 
-        // add comment to post
-        post.getComments().add(comment);
-
+        // saved on its own so the comments of the post never have to be loaded
         commentRepository.save(comment);
-        postRepository.save(post);
+        // the comment count is shown in the UserDTO of the creator
+        userService.touchUsers(List.of(post.getCreator().getId()));
 
-        return CommentDTO.map(comment);
+        return CommentDTO.map(CommentView.of(comment));
     }
 
     public PostDTO updatePost(Long postId,
@@ -170,54 +238,170 @@ public class PostService {
 
         // filter out all fields that are not allowed or doesn't exist
         List<String> validKeys = updates.keySet().stream()
-                .filter(UPDATABLE_POST_FIELDS::contains)
+                .filter(postUpdaters::isUpdatable)
                 .toList();
 
 
+        // validate all the updates before changing anything
+        POST_SCHEMA.checkUpdates(updates, validKeys);
+
         // update values for each field
         for (String key : validKeys) {
-            String value = updates.get(key);
-            // validate user input against check
-            validateField(key, value, postChecks);
-
-            // update post content after passing check
-            Field field = ReflectionUtils.findField(Post.class, key);
-            Objects.requireNonNull(field).setAccessible(true);
-            ReflectionUtils.setField(field, post, value);
+            postUpdaters.update(post, key, updates.get(key));
         }
 
         postRepository.save(post);
-        return PostDTO.map(post);
+        postRepository.touch(postId);
+        userService.touchUsers(List.of(user.getId()));
+        postSearchIndex.index(SearchDocument.of(post));
+        return mapPost(PostView.of(post), user.getId());
     }
 
-    public List<PostDTO> getAllPostsByUser(Long userId) throws InvalidUserIdException {
-        User user = userService.getUserById(userId);
-        return getAllPostsByUser(user);
+    public CursorPage<PostDTO> getPostsByUser(Long userId,
+                                              String cursor,
+                                              Integer pageSize) throws InvalidUserIdException, InvalidUserInputException {
+        userService.checkUserExists(userId);
+        return getPostsByCreatorId(userId, cursor, pageSize);
     }
 
-    public List<PostDTO> getAllPostsByUser(String username) throws InvalidUsernameException {
-        User user = userService.getUserByUsername(username);
-        return getAllPostsByUser(user);
+    public CursorPage<PostDTO> getPostsByUser(String username,
+                                              String cursor,
+                                              Integer pageSize) throws InvalidUsernameException, InvalidUserInputException {
+        Long userId = userService.getUserIdByUsername(username);
+        return getPostsByCreatorId(userId, cursor, pageSize);
     }
 
-    public List<PostDTO> getAllPostsByUser(User user) {
-        return postRepository.findPostByCreator(user).stream()
-                .map(PostDTO::map)
+    public CursorPage<PostDTO> getPostsByUser(User user,
+                                              String cursor,
+                                              Integer pageSize) throws InvalidUserInputException {
+        return getPostsByCreatorId(user.getId(), cursor, pageSize);
+    }
+
+    private CursorPage<PostDTO> getPostsByCreatorId(Long creatorId,
+                                                    String cursor,
+                                                    Integer pageSize) throws InvalidUserInputException {
+        Cursor after = decodeCursor(cursor);
+        int size = pageSize(pageSize);
+
+        List<PostView> posts = after == null ?
+                postRepository.findViewPageByCreatorId(creatorId, lookAhead(size)) :
+                postRepository.findViewPageByCreatorIdBefore(
+                        creatorId, after.time(), after.id(), lookAhead(size));
+
+        CursorPage<PostView> page = toPage(posts, size, PostView::postTime, PostView::id);
+        return new CursorPage<>(postMapper.map(page.items(), creatorId), page.nextCursor());
+    }
+
+    /**
+     * Returns one page of the home feed of a user tagged with an ETag, or only
+     * the ETag when it matches the one the client sent. The ETag is computed
+     * from the page's post ids and versions before any post is loaded.
+     *
+     * @param ifNoneMatch value of the If-None-Match header, null if absent
+     */
+    public Tagged<CursorPage<PostDTO>> getPostsRelatedToUser(String username,
+                                                             String cursor,
+                                                             Integer pageSize,
+                                                             @Nullable String ifNoneMatch) throws InvalidUsernameException, InvalidUserInputException {
+        Long userId = userService.getUserIdByUsername(username);
+
+        // one page of post ids from the materialized home timeline
+        CursorPage<TimelineItem> timeline = timelineService.getTimeline(
+                userId, decodeCursor(cursor), pageSize(pageSize));
+        List<Long> postIds = timeline.items().stream()
+                .map(TimelineItem::postId)
                 .toList();
+
+        List<PostVersion> versions = postIds.isEmpty() ?
+                List.of() : postRepository.findVersionsByIdIn(postIds);
+        String etag = postsETag(postIds, versions, userId, timeline.nextCursor());
+        if (matches(ifNoneMatch, etag)) return Tagged.notModified(etag);
+
+        // keep timeline order, skip posts deleted since they were fanned out
+        List<PostView> orderedPosts = findViewsInOrder(postIds);
+
+        return new Tagged<>(etag, new CursorPage<>(postMapper.map(orderedPosts, userId), timeline.nextCursor()));
     }
 
-    public List<PostDTO> getAllPostsRelatedToUser(String username) throws InvalidUsernameException {
-        User user = userService.getUserByUsername(username);
-        Set<User> friends = user.getFriends();
+    /**
+     * Searches posts by song title, artists and content, best matches first.
+     * Query terms ending with '*' are matched as prefixes (Ex. 'taylor swi*')
+     *
+     * @param query    the search terms
+     * @param limit    max number of posts returned
+     * @param username username of the user searching
+     */
+    public List<PostDTO> searchPosts(String query,
+                                     Integer limit,
+                                     String username) throws InvalidUserInputException, InvalidUsernameException {
+        if (tokenizeQuery(query).isEmpty()) {
+            throw new InvalidUserInputException(
+                    "Search query: " + query + " is not valid");
+        }
 
-        Set<Post> posts = user.getPosts();
+        Long userId = userService.getUserIdByUsername(username);
 
-        friends.stream()
-                .map(User::getPosts)
-                .forEach(posts::addAll);
+        int size = limit == null ?
+                DEFAULT_SEARCH_RESULTS :
+                Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS));
+        List<Long> postIds = postSearchIndex.search(query, size);
 
-        return posts.stream()
-                .map(PostDTO::map)
+        // keep ranking order
+        List<PostView> rankedPosts = findViewsInOrder(postIds);
+
+        return postMapper.map(rankedPosts, userId);
+    }
+
+    /**
+     * Fetches posts with a single query, in the same order as the ids
+     * passed in, skipping posts that don't exist anymore
+     */
+    private List<PostView> findViewsInOrder(List<Long> postIds) {
+        if (postIds.isEmpty()) return List.of();
+
+        Map<Long, PostView> posts = postRepository.findViewsByIdIn(postIds).stream()
+                .collect(Collectors.toMap(PostView::id, Function.identity()));
+
+        return postIds.stream()
+                .map(posts::get)
+                .filter(Objects::nonNull)
                 .toList();
     }
+
+    /**
+     * Builds the ETag of posts shown to a viewer from their versions, the likes
+     * not written to the database yet and whether the viewer liked them
+     *
+     * @param postIds  ids of the posts in the order they are shown
+     * @param versions versions of the posts that still exist
+     * @param extra    anything else the response depends on (Ex. the next cursor)
+     */
+    private String postsETag(List<Long> postIds,
+                             List<PostVersion> versions,
+                             Long viewerId,
+                             Object... extra) {
+        Map<Long, PostVersion> versionsById = versions.stream()
+                .collect(Collectors.toMap(PostVersion::postId, Function.identity()));
+        Map<Long, Boolean> likedByViewer = likeService.likedBy(viewerId, postIds);
+
+        // extra parts may be null, such as the cursor of the last page
+        List<Object> parts = new ArrayList<>(Arrays.asList(extra));
+        for (Long postId : postIds) {
+            PostVersion version = versionsById.get(postId);
+            parts.add(postId);
+            if (version == null) continue;
+
+            parts.add(version.revision());
+            parts.add(likeService.getLikeCount(postId, version.likes()));
+            parts.add(version.commentCount());
+            parts.add(version.latestCommentId());
+            parts.add(version.creatorRevision());
+            parts.add(likedByViewer.get(postId));
+        }
+        return strongETag(parts.toArray());
+    }
+
+    private PostDTO mapPost(PostView post, @Nullable Long viewerId) {
+        return postMapper.map(List.of(post), viewerId).get(0);
+    }
 }
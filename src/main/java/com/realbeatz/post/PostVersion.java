@@ -0,0 +1,19 @@
+package com.realbeatz.post;
+
+/**
+ * Everything stored in the database that a {@link PostDTO} depends on,
+ * looked up without loading the post to tag it with an ETag
+ *
+ * @param revision        bumped whenever the post is edited
+ * @param likes           likes written to the database so far
+ * @param commentCount    number of comments of the post
+ * @param latestCommentId id of the newest comment, null without comments
+ * @param creatorRevision bumped whenever the creator's name or picture changes
+ */
+public record PostVersion(Long postId,
+                          Long revision,
+                          Integer likes,
+                          Integer commentCount,
+                          Long latestCommentId,
+                          Long creatorRevision) {
+}
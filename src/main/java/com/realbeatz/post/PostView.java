@@ -0,0 +1,34 @@
+package com.realbeatz.post;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read model of a post holding exactly the columns a {@link PostDTO} is made
+ * of, fetched with a single query instead of loading the post, its creator
+ * and the creator's profile as entities
+ */
+public record PostView(Long id,
+                       String content,
+                       String songTitle,
+                       String artists,
+                       Integer likes,
+                       Integer commentCount,
+                       Long creatorId,
+                       String creatorUsername,
+                       String creatorProfilePictureFullName,
+                       LocalDateTime postTime) {
+
+    public static PostView of(Post post) {
+        return new PostView(
+                post.getId(),
+                post.getContent(),
+                post.getSongTitle(),
+                post.getArtists(),
+                post.getLikes(),
+                post.getCommentCount(),
+                post.getCreator().getId(),
+                post.getCreator().getUsername(),
+                post.getCreator().getProfile().getProfilePictureFullName(),
+                post.getPostTime());
+    }
+}
@@ -0,0 +1,10 @@
+package com.realbeatz.post.bulk;
+
+/**
+ * A post of an import that was skipped
+ *
+ * @param index   position of the post in the import, starting from 0
+ * @param message why the post was skipped
+ */
+public record PostImportFailure(int index, String message) {
+}
@@ -0,0 +1,27 @@
+package com.realbeatz.post.bulk;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.realbeatz.utils.PostUtils.MAX_REPORTED_IMPORT_FAILURES;
+
+@Data
+public class PostImportResult {
+    private int imported;
+    private int failed;
+    // only the first failures are reported
+    private List<PostImportFailure> failures = new ArrayList<>();
+
+    void addImported(int count) {
+        imported += count;
+    }
+
+    void addFailure(int index, String message) {
+        failed++;
+        if (failures.size() < MAX_REPORTED_IMPORT_FAILURES) {
+            failures.add(new PostImportFailure(index, message));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.realbeatz.post.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.realbeatz.exceptions.InvalidUserInputException;
+import com.realbeatz.exceptions.InvalidUsernameException;
+import com.realbeatz.payloads.requests.ImportPostRequest;
+import com.realbeatz.post.Post;
+import com.realbeatz.post.PostRepository;
+import com.realbeatz.post.search.PostSearchIndex;
+import com.realbeatz.post.search.SearchDocument;
+import com.realbeatz.post.timeline.TimelineService;
+import com.realbeatz.post.trending.TrendingService;
+import com.realbeatz.user.User;
+import com.realbeatz.user.UserService;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.realbeatz.utils.PostUtils.IMPORT_BATCH_SIZE;
+import static com.realbeatz.utils.PostUtils.POST_SCHEMA;
+
+/**
+ * Imports posts in bulk (Ex. when migrating from another platform). Posts are
+ * read one at a time from a JSON array or newline delimited JSON, so the whole
+ * import is never held in memory, and written in JDBC batches, each batch in
+ * its own transaction. Posts failing validation are skipped and reported.
+ */
+@Slf4j
+@Service
+@AllArgsConstructor
+public class PostImportService {
+
+    private final PostRepository postRepository;
+    private final UserService userService;
+    private final TimelineService timelineService;
+    private final PostSearchIndex postSearchIndex;
+    private final TrendingService trendingService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+
+
+    public PostImportResult importPosts(String username, InputStream input) throws InvalidUsernameException {
+        User user = userService.getUserByUsername(username);
+
+        PostImportResult result = new PostImportResult();
+        List<Post> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        // position of each post of the batch in the import
+        List<Integer> batchIndexes = new ArrayList<>(IMPORT_BATCH_SIZE);
+        int index = 0;
+
+        try (MappingIterator<ImportPostRequest> posts =
+                     objectMapper.readerFor(ImportPostRequest.class).readValues(input)) {
+
+            while (posts.hasNextValue()) {
+                ImportPostRequest post = posts.nextValue();
+                try {
+                    batch.add(toPost(user, post));
+                    batchIndexes.add(index);
+                } catch (InvalidUserInputException e) {
+                    result.addFailure(index, e.getMessage());
+                }
+                index++;
+
+                if (batch.size() == IMPORT_BATCH_SIZE) {
+                    saveBatch(user, batch, batchIndexes, result);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // the rest of the input can't be read reliably after malformed json
+            result.addFailure(index, "Input is not valid JSON: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            result.addFailure(index, "Error reading input: " + e.getMessage());
+        }
+
+        if (!batch.isEmpty()) {
+            saveBatch(user, batch, batchIndexes, result);
+        }
+
+        log.info("Imported {} posts for user: {}, {} failed",
+                result.getImported(), username, result.getFailed());
+        return result;
+    }
+
+    private Post toPost(User user, ImportPostRequest post) throws InvalidUserInputException {
+        if (post == null) {
+            throw new InvalidUserInputException("Post is empty");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (post.getPostTime() != null && post.getPostTime().isAfter(now)) {
+            throw new InvalidUserInputException(
+                    "Input: " + post.getPostTime() + " for field: postTime is not valid");
+        }
+
+        Post newPost = Post.builder()
+                .creator(user)
+                .content(post.getContent())
+                .songTitle(post.getSongTitle())
+                .artists(post.getArtists())
+                .postTime(post.getPostTime() == null ? now : post.getPostTime())
+                .build();
+        POST_SCHEMA.check(newPost);
+        return newPost;
+    }
+
+    private void saveBatch(User user,
+                           List<Post> batch,
+                           List<Integer> batchIndexes,
+                           PostImportResult result) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                postRepository.saveAll(batch);
+                entityManager.flush();
+                timelineService.onPostsImported(user.getId(), batch.stream()
+                        .map(Post::getId)
+                        .toList());
+            });
+
+            userService.touchUsers(List.of(user.getId()));
+            for (Post post : batch) {
+                postSearchIndex.index(SearchDocument.of(post));
+                trendingService.onPostCreated(post);
+            }
+            result.addImported(batch.size());
+
+        } catch (DataAccessException e) {
+            log.error("Error saving batch of {} imported posts for user: {}",
+                    batch.size(), user.getUsername(), e);
+            batchIndexes.forEach(index -> result.addFailure(index, "Error saving post"));
+        } finally {
+            // keep the persistence context from growing with the import
+            entityManager.clear();
+            batch.clear();
+            batchIndexes.clear();
+        }
+    }
+}
@@ -14,7 +14,9 @@ import java.time.LocalDateTime;
 @ToString
 @AllArgsConstructor
 @RequiredArgsConstructor
-@Table(name = "comments")
+@Table(
+        name = "comments",
+        indexes = @Index(name = "idx_comments_post_time", columnList = "post_id, timePosted, comment_id"))
 public class Comment {
     @Id
     @GeneratedValue(
@@ -24,7 +26,7 @@ public class Comment {
             name = "comments_gen",
             sequenceName = "comments_seq",
             initialValue = 4000,
-            allocationSize = 1)
+            allocationSize = 50)
     @Column(name = "comment_id", nullable = false)
     private Long id;
 
@@ -42,12 +44,16 @@ public class Comment {
             nullable = false)
     private User user;
 
-    @ManyToOne(cascade = CascadeType.ALL, optional = false)
+    @ManyToOne(
+            fetch = FetchType.LAZY,
+            cascade = CascadeType.ALL,
+            optional = false)
     @JoinColumn(
             name = "post_id",
             referencedColumnName = "post_id",
             updatable = false,
             nullable = false)
+    @ToString.Exclude
     private Post post;
 
 }
@@ -14,13 +14,13 @@ public class CommentDTO {
     private Long userId;
     private String posterUsername;
 
-    public static CommentDTO map(Comment comment) {
+    public static CommentDTO map(CommentView comment) {
         return CommentDTO.builder()
-                .id(comment.getId())
-                .content(comment.getContent())
-                .timePosted(comment.getTimePosted())
-                .userId(comment.getUser().getId())
-                .posterUsername(comment.getUser().getUsername())
+                .id(comment.id())
+                .content(comment.content())
+                .timePosted(comment.timePosted())
+                .userId(comment.userId())
+                .posterUsername(comment.username())
                 .build();
     }
 }
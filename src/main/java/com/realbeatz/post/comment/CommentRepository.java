@@ -1,9 +1,52 @@
 package com.realbeatz.post.comment;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
 
+    String COMMENT_VIEW = "select new com.realbeatz.post.comment.CommentView(" +
+            "c.id, c.content, c.timePosted, c.post.id, u.id, u.username) " +
+            "from Comment c join c.user u ";
+
+    @Query(COMMENT_VIEW +
+            "where c.post.id = ?1 " +
+            "order by c.timePosted desc, c.id desc")
+    List<CommentView> findPageByPostId(Long postId, Pageable pageable);
+
+    @Query(COMMENT_VIEW +
+            "where c.post.id = ?1 " +
+            "and (c.timePosted < ?2 or (c.timePosted = ?2 and c.id < ?3)) " +
+            "order by c.timePosted desc, c.id desc")
+    List<CommentView> findPageByPostIdBefore(Long postId, LocalDateTime timePosted, Long commentId, Pageable pageable);
+
+    /**
+     * Finds the newest comments of every post passed in with a single query.
+     * Comments are numbered per post from newest to oldest, walking the
+     * (post_id, time_posted, comment_id) index once per post. Window
+     * functions need MySQL 8.0 or later
+     *
+     * @param postIds ids of the posts
+     * @param perPost max number of comments returned for each post
+     * @return ids of the comments
+     */
+    @Query(value = "select r.comment_id from (" +
+            "select c.comment_id, row_number() over (" +
+            "partition by c.post_id order by c.time_posted desc, c.comment_id desc) as position_in_post " +
+            "from comments c where c.post_id in ?1) r " +
+            "where r.position_in_post <= ?2",
+            nativeQuery = true)
+    List<Long> findLatestIdsByPostIdIn(Collection<Long> postIds, int perPost);
+
+    @Query(COMMENT_VIEW +
+            "where c.id in ?1 " +
+            "order by c.timePosted desc, c.id desc")
+    List<CommentView> findViewsByIdIn(Collection<Long> commentIds);
 }
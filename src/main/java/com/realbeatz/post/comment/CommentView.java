@@ -0,0 +1,24 @@
+package com.realbeatz.post.comment;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read model of a comment holding exactly the columns a {@link CommentDTO} is made of
+ */
+public record CommentView(Long id,
+                          String content,
+                          LocalDateTime timePosted,
+                          Long postId,
+                          Long userId,
+                          String username) {
+
+    public static CommentView of(Comment comment) {
+        return new CommentView(
+                comment.getId(),
+                comment.getContent(),
+                comment.getTimePosted(),
+                comment.getPost().getId(),
+                comment.getUser().getId(),
+                comment.getUser().getUsername());
+    }
+}
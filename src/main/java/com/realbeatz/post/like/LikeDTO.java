@@ -0,0 +1,12 @@
+package com.realbeatz.post.like;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class LikeDTO {
+    private Long postId;
+    private Integer likes;
+    private Boolean liked;
+}
@@ -0,0 +1,147 @@
+package com.realbeatz.post.like;
+
+import com.realbeatz.exceptions.InvalidLikeException;
+import com.realbeatz.exceptions.InvalidPostIdException;
+import com.realbeatz.exceptions.InvalidUserInputException;
+import com.realbeatz.exceptions.InvalidUsernameException;
+import com.realbeatz.post.PostRepository;
+import com.realbeatz.user.User;
+import com.realbeatz.user.UserIdentity;
+import com.realbeatz.user.UserRepository;
+import com.realbeatz.user.UserService;
+import com.realbeatz.user.UserView;
+import com.realbeatz.user.friends.FriendDTO;
+import com.realbeatz.utils.PaginationUtils.CursorPage;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.realbeatz.utils.PaginationUtils.pageSize;
+
+@Service
+@AllArgsConstructor
+public class LikeService {
+
+    private final PostRepository postRepository;
+    private final UserRepository userRepository;
+    private final LikerBitmaps likerBitmaps;
+    private final UserService userService;
+
+    public LikeDTO likePost(String username, Long postId) throws InvalidUsernameException, InvalidPostIdException, InvalidLikeException {
+        UserIdentity user = userService.getUserIdentity(username);
+        return likePost(user, postId);
+    }
+
+    public LikeDTO likePost(User user, Long postId) throws InvalidPostIdException, InvalidLikeException {
+        return likePost(UserIdentity.of(user), postId);
+    }
+
+    public LikeDTO likePost(UserIdentity user, Long postId) throws InvalidPostIdException, InvalidLikeException {
+        ensurePostExists(postId);
+
+        // a user can only be added to the liker set of a post once, its size is the like count
+        if (!likerBitmaps.addLiker(postId, user.id())) {
+            throw new InvalidLikeException(
+                    "User with username: " + user.username() +
+                            " already liked post with id: " + postId);
+        }
+
+        return getLikes(postId, true);
+    }
+
+    public LikeDTO unlikePost(String username, Long postId) throws InvalidUsernameException, InvalidPostIdException, InvalidLikeException {
+        UserIdentity user = userService.getUserIdentity(username);
+        return unlikePost(user, postId);
+    }
+
+    public LikeDTO unlikePost(User user, Long postId) throws InvalidPostIdException, InvalidLikeException {
+        return unlikePost(UserIdentity.of(user), postId);
+    }
+
+    public LikeDTO unlikePost(UserIdentity user, Long postId) throws InvalidPostIdException, InvalidLikeException {
+        ensurePostExists(postId);
+
+        if (!likerBitmaps.removeLiker(postId, user.id())) {
+            throw new InvalidLikeException(
+                    "User with username: " + user.username() +
+                            " hasn't liked post with id: " + postId);
+        }
+
+        return getLikes(postId, false);
+    }
+
+    /**
+     * Returns one page of the users who liked a post ordered by user id
+     *
+     * @param cursor id of the last user of the previous page, null for the first page
+     */
+    public CursorPage<FriendDTO> getLikers(Long postId,
+                                           String cursor,
+                                           Integer pageSize) throws InvalidPostIdException, InvalidUserInputException {
+        ensurePostExists(postId);
+
+        Long afterUserId;
+        try {
+            afterUserId = cursor == null || cursor.isBlank() ? null : Long.valueOf(cursor);
+        } catch (NumberFormatException e) {
+            throw new InvalidUserInputException("Cursor: " + cursor + " is not valid");
+        }
+
+        int size = pageSize(pageSize);
+        List<Long> userIds = likerBitmaps.getLikers(postId, afterUserId, size + 1);
+        String nextCursor = userIds.size() > size ?
+                String.valueOf(userIds.get(size - 1)) : null;
+        List<Long> page = userIds.subList(0, Math.min(size, userIds.size()));
+
+        Map<Long, UserView> users = userRepository.findViewsByIdIn(page).stream()
+                .collect(Collectors.toMap(UserView::id, Function.identity()));
+
+        // users deleted after liking the post are skipped
+        List<FriendDTO> likers = page.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(FriendDTO::map)
+                .toList();
+
+        return new CursorPage<>(likers, nextCursor);
+    }
+
+    /**
+     * Checks with a single lookup which of the posts passed in were liked by a user
+     *
+     * @return post id mapped to whether the user liked the post
+     */
+    public Map<Long, Boolean> likedBy(Long userId, Collection<Long> postIds) {
+        return likerBitmaps.likedBy(userId, postIds);
+    }
+
+    /**
+     * Returns the like count of a post including likes that
+     * haven't been flushed to the database yet
+     */
+    public int getLikeCount(Long postId, Integer persistedLikes) {
+        return likerBitmaps.getLikeCount(postId, persistedLikes);
+    }
+
+    private LikeDTO getLikes(Long postId, boolean liked) throws InvalidPostIdException {
+        Integer persistedLikes = postRepository.findLikesById(postId)
+                .orElseThrow(() -> new InvalidPostIdException(
+                        "Post with id: " + postId + " doesn't exist"));
+
+        return LikeDTO.builder()
+                .postId(postId)
+                .likes(getLikeCount(postId, persistedLikes))
+                .liked(liked)
+                .build();
+    }
+
+    private void ensurePostExists(Long postId) throws InvalidPostIdException {
+        if (!postRepository.existsById(postId)) {
+            throw new InvalidPostIdException(
+                    "Post with id: " + postId + " doesn't exist");
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.realbeatz.post.like;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the liker set of each post in memory as a compressed bitmap.
+ * Bitmaps are loaded lazily (in batches) from the post_likers table, kept
+ * in a size bounded cache, and changed bitmaps are written back periodically
+ * in batches, without locking the rows of the posts on every like.
+ * Changed bitmaps are pinned until they are written so they are never lost
+ * to cache eviction. A like on a pinned bitmap takes no lock of the map,
+ * only the lock of the stripe of the bitmap holding the user (see {@link LikerSet}).
+ * <p>
+ * The like count of a post is the size of its liker set, written to the
+ * posts table in the same transaction as the set so the two never drift
+ * apart. Sets are written only over the version of the row they are based
+ * on. When another writer (Ex. another instance) changed the row in the
+ * meantime, the set is reloaded with the changes not written yet replayed
+ * on top of it and written on the next flush.
+ */
+@Slf4j
+@Component
+public class LikerBitmaps {
+
+    private static final String INSERT_SQL =
+            "insert into post_likers (post_id, likers, version) values (?, ?, 0)";
+    private static final String UPDATE_SQL =
+            "update post_likers set likers = ?, version = version + 1 " +
+            "where post_id = ? and version = ?";
+    private static final String UPDATE_LIKES_SQL =
+            "update posts set likes = ? where post_id = ?";
+    // the likes of every post are shown in the UserDTO of its creator
+    private static final String TOUCH_CREATOR_SQL =
+            "update users set revision = revision + 1 " +
+            "where user_id = (select p.creator_id from posts p where p.post_id = ?)";
+
+    private final PostLikersRepository postLikersRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LoadingCache<Long, LikerSet> likerSets;
+    private final Map<Long, LikerSet> dirty = new ConcurrentHashMap<>();
+
+    public LikerBitmaps(PostLikersRepository postLikersRepository,
+                        JdbcTemplate jdbcTemplate,
+                        TransactionTemplate transactionTemplate,
+                        @Value("${application.likes.maxCachedLikerSets:10000}") long maxCachedLikerSets) {
+        this.postLikersRepository = postLikersRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.likerSets = CacheBuilder.newBuilder()
+                .maximumSize(maxCachedLikerSets)
+                .build(new CacheLoader<>() {
+                    @Override
+                    public LikerSet load(Long postId) {
+                        return loadAll(List.of(postId)).get(postId);
+                    }
+
+                    @Override
+                    public Map<Long, LikerSet> loadAll(Iterable<? extends Long> postIds) {
+                        return loadLikerSets(postIds);
+                    }
+                });
+    }
+
+    /**
+     * @return false if the user already liked the post
+     */
+    public boolean addLiker(Long postId, Long userId) {
+        return update(postId, likers -> likers.add(userId));
+    }
+
+    /**
+     * @return false if the user never liked the post
+     */
+    public boolean removeLiker(Long postId, Long userId) {
+        return update(postId, likers -> likers.remove(userId));
+    }
+
+    /**
+     * Returns the like count of a post including the likes that haven't
+     * been written to the database yet
+     *
+     * @param persistedLikes like count read from the posts table
+     */
+    public int getLikeCount(Long postId, Integer persistedLikes) {
+        LikerSet pinned = dirty.get(postId);
+        if (pinned != null) return (int) pinned.size();
+        return persistedLikes == null ? 0 : persistedLikes;
+    }
+
+    public boolean hasLiked(Long postId, Long userId) {
+        return get(postId).contains(userId);
+    }
+
+    /**
+     * Checks whether a user liked each of the posts passed in, loading
+     * every bitmap that isn't cached yet with a single query
+     *
+     * @return post id mapped to whether the user liked the post
+     */
+    public Map<Long, Boolean> likedBy(Long userId, Collection<Long> postIds) {
+        Map<Long, Boolean> liked = new HashMap<>();
+        getAll(postIds).forEach((postId, likers) -> {
+            LikerSet pinned = dirty.get(postId);
+            liked.put(postId, (pinned != null ? pinned : likers).contains(userId));
+        });
+        return liked;
+    }
+
+    /**
+     * Returns up to limit ids of users who liked a post in ascending order
+     *
+     * @param afterUserId last user id of the previous page, null for the first page
+     */
+    public List<Long> getLikers(Long postId, Long afterUserId, int limit) {
+        return get(postId).page(afterUserId, limit);
+    }
+
+    /**
+     * Writes every liker set changed since the last flush to the database,
+     * along with the like count of its post, in a single transaction
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${application.likes.flushIntervalMillis:1000}")
+    public synchronized void flush() {
+        if (dirty.isEmpty()) return;
+
+        Map<Long, LikerSet> flushing = new HashMap<>(dirty);
+        Map<Long, LikerSet.Snapshot> snapshots = new HashMap<>();
+        flushing.forEach((postId, likers) -> snapshots.put(postId, likers.snapshot()));
+        // sets are also pinned by likes that changed nothing (Ex. liking a post twice)
+        Map<Long, LikerSet.Snapshot> changed = new HashMap<>();
+        snapshots.forEach((postId, snapshot) -> {
+            if (!snapshot.changes().isEmpty()) changed.put(postId, snapshot);
+        });
+
+        List<Long> conflicts;
+        try {
+            conflicts = changed.isEmpty() ? List.of() : transactionTemplate.execute(status -> write(changed));
+        } catch (DataAccessException e) {
+            log.error("Error flushing liker sets of {} posts, retrying on next flush",
+                    changed.size(), e);
+            return;
+        }
+
+        flushing.forEach((postId, likers) -> {
+            if (conflicts.contains(postId)) return;
+            LikerSet.Snapshot snapshot = snapshots.get(postId);
+            if (changed.containsKey(postId)) {
+                likers.written(snapshot, snapshot.storedVersion() == null ? 0 : snapshot.storedVersion() + 1);
+            }
+            // unpin the sets that haven't changed since their snapshot was taken
+            likers.releaseIfUnchanged(snapshot, () -> dirty.remove(postId, likers));
+        });
+
+        if (!conflicts.isEmpty()) rebase(conflicts, flushing);
+        log.debug("Flushed liker sets of {} posts", changed.size() - conflicts.size());
+    }
+
+    /**
+     * @return ids of the posts whose row was changed by another writer, left as they are
+     */
+    private List<Long> write(Map<Long, LikerSet.Snapshot> snapshots) {
+        List<Long> conflicts = new ArrayList<>();
+        List<Object[]> likes = new ArrayList<>();
+
+        snapshots.forEach((postId, snapshot) -> {
+            if (!writeLikers(postId, snapshot)) {
+                conflicts.add(postId);
+                return;
+            }
+            likes.add(new Object[]{snapshot.likeCount(), postId});
+        });
+
+        if (!likes.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_LIKES_SQL, likes);
+            jdbcTemplate.batchUpdate(TOUCH_CREATOR_SQL, likes.stream()
+                    .map(row -> new Object[]{row[1]})
+                    .toList());
+        }
+        return conflicts;
+    }
+
+    /**
+     * Writes a set over the row it is based on, without reading the row first
+     *
+     * @return false if the row was changed or created by another writer
+     */
+    private boolean writeLikers(Long postId, LikerSet.Snapshot snapshot) {
+        if (snapshot.storedVersion() == null) {
+            try {
+                jdbcTemplate.update(INSERT_SQL, postId, snapshot.bytes());
+                return true;
+            } catch (DuplicateKeyException e) {
+                return false;
+            }
+        }
+        return jdbcTemplate.update(UPDATE_SQL, snapshot.bytes(), postId, snapshot.storedVersion()) == 1;
+    }
+
+    /**
+     * Reloads the sets another writer changed, replaying the changes not
+     * written yet on top of them, to be written on the next flush
+     */
+    private void rebase(List<Long> postIds, Map<Long, LikerSet> flushing) {
+        Map<Long, PostLikers> stored = new HashMap<>();
+        try {
+            postLikersRepository.findAllById(postIds).forEach(row -> stored.put(row.getPostId(), row));
+        } catch (DataAccessException e) {
+            log.error("Error reloading liker sets of {} posts changed by another writer", postIds.size(), e);
+            return;
+        }
+
+        for (Long postId : postIds) {
+            PostLikers row = stored.get(postId);
+            flushing.get(postId).rebase(
+                    row == null ? null : row.getLikers(),
+                    row == null ? null : row.getVersion());
+        }
+        log.info("Merged liker sets of {} posts changed by another writer", postIds.size());
+    }
+
+    private boolean update(Long postId, Predicate<LikerSet> change) {
+        LikerSet likers = dirty.get(postId);
+        if (likers == null) {
+            // loaded before pinning it, so no query runs under a lock of the map
+            LikerSet loaded = likerSets.getUnchecked(postId);
+            likers = dirty.computeIfAbsent(postId, id -> loaded);
+        }
+        if (!change.test(likers)) return false;
+
+        // a flush unpins a set before any change made after its snapshot, pin it again
+        if (dirty.get(postId) != likers) {
+            LikerSet pinned = dirty.putIfAbsent(postId, likers);
+            // the set was evicted and reloaded in between, the change goes to the pinned one
+            if (pinned != null && pinned != likers) change.test(pinned);
+        }
+        return true;
+    }
+
+    private LikerSet get(Long postId) {
+        LikerSet pinned = dirty.get(postId);
+        return pinned != null ? pinned : likerSets.getUnchecked(postId);
+    }
+
+    private Map<Long, LikerSet> getAll(Collection<Long> postIds) {
+        try {
+            return likerSets.getAll(postIds);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Map<Long, LikerSet> loadLikerSets(Iterable<? extends Long> postIds) {
+        Map<Long, LikerSet> loaded = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+
+        // sets waiting to be flushed are newer than what is in the database
+        for (Long postId : postIds) {
+            LikerSet pinned = dirty.get(postId);
+            if (pinned != null) {
+                loaded.put(postId, pinned);
+            } else {
+                missing.add(postId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            postLikersRepository.findAllById(missing).forEach(row ->
+                    loaded.put(row.getPostId(), LikerSet.deserialize(row.getLikers(), row.getVersion())));
+            missing.forEach(postId -> loaded.putIfAbsent(postId, LikerSet.empty()));
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,258 @@
+package com.realbeatz.post.like;
+
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Thread safe set of the ids of the users who liked a post, backed by
+ * compressed (roaring) bitmaps. The users are split by id over stripes,
+ * each with its own bitmap and lock, so likes on a viral post only wait for
+ * likes of users in the same stripe, and the size of the set is kept in a
+ * striped counter read without any lock. The version is bumped on every
+ * change so that a flush can tell whether the set changed while it was
+ * being saved.
+ * The set also remembers the version of the post_likers row it is based on
+ * and the likes and unlikes made since it was last written, so when another
+ * writer changed the row in between, the changes are replayed on the stored
+ * set instead of overwriting it.
+ */
+public class LikerSet {
+
+    private static final int STRIPES = 8;
+
+    private static final class Stripe {
+        private Roaring64NavigableMap likers = new Roaring64NavigableMap();
+        // user id -> whether the user likes the post, for the changes not written yet
+        private final Map<Long, Boolean> changes = new HashMap<>();
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder likeCount = new LongAdder();
+    // only bumped while holding the lock of a stripe, exact while holding all of them
+    private final LongAdder version = new LongAdder();
+    // version of the post_likers row the set was read from or last written as, null without a row
+    private volatile Long storedVersion;
+
+    /**
+     * @param likeCount     number of users in the set
+     * @param storedVersion version of the row the set is based on, null if there is none
+     * @param changes       changes the snapshot holds that weren't written yet
+     */
+    public record Snapshot(byte[] bytes,
+                           long likeCount,
+                           long version,
+                           Long storedVersion,
+                           Map<Long, Boolean> changes) {
+    }
+
+    private LikerSet(Roaring64NavigableMap likers, Long storedVersion) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        fill(likers);
+        this.storedVersion = storedVersion;
+    }
+
+    public static LikerSet empty() {
+        return new LikerSet(new Roaring64NavigableMap(), null);
+    }
+
+    /**
+     * @param storedVersion version of the row the bytes were read from
+     */
+    public static LikerSet deserialize(byte[] bytes, long storedVersion) {
+        return new LikerSet(read(bytes), storedVersion);
+    }
+
+    /**
+     * @return false if the user already liked the post
+     */
+    public boolean add(long userId) {
+        Stripe stripe = stripeOf(userId);
+        synchronized (stripe) {
+            if (stripe.likers.contains(userId)) return false;
+            stripe.likers.addLong(userId);
+            stripe.changes.put(userId, true);
+            likeCount.increment();
+            version.increment();
+            return true;
+        }
+    }
+
+    /**
+     * @return false if the user never liked the post
+     */
+    public boolean remove(long userId) {
+        Stripe stripe = stripeOf(userId);
+        synchronized (stripe) {
+            if (!stripe.likers.contains(userId)) return false;
+            stripe.likers.removeLong(userId);
+            stripe.changes.put(userId, false);
+            likeCount.decrement();
+            version.increment();
+            return true;
+        }
+    }
+
+    public boolean contains(long userId) {
+        Stripe stripe = stripeOf(userId);
+        synchronized (stripe) {
+            return stripe.likers.contains(userId);
+        }
+    }
+
+    public long size() {
+        return likeCount.sum();
+    }
+
+    public long version() {
+        return version.sum();
+    }
+
+    /**
+     * Returns up to limit user ids greater than afterUserId in ascending order
+     *
+     * @param afterUserId last user id of the previous page, null for the first page
+     */
+    public List<Long> page(Long afterUserId, int limit) {
+        // the first ids of the page are among the first limit ids of each stripe
+        List<Long> userIds = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                long size = stripe.likers.getLongCardinality();
+                // rankLong returns the number of ids smaller than or equal to the one passed in
+                long start = afterUserId == null ? 0 : stripe.likers.rankLong(afterUserId);
+                for (long i = start; i < size && i < start + limit; i++) {
+                    userIds.add(stripe.likers.select(i));
+                }
+            }
+        }
+        userIds.sort(null);
+        return new ArrayList<>(userIds.subList(0, Math.min(limit, userIds.size())));
+    }
+
+    public Snapshot snapshot() {
+        return locked(() -> {
+            Roaring64NavigableMap likers = new Roaring64NavigableMap();
+            Map<Long, Boolean> changes = new HashMap<>();
+            for (Stripe stripe : stripes) {
+                likers.or(stripe.likers);
+                changes.putAll(stripe.changes);
+            }
+            likers.runOptimize();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                likers.serializePortable(new DataOutputStream(bytes));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new Snapshot(bytes.toByteArray(), likers.getLongCardinality(),
+                    version.sum(), storedVersion, changes);
+        });
+    }
+
+    /**
+     * Records that a snapshot was written as the version of the row passed in,
+     * forgetting the changes it held unless they were made again since
+     */
+    public void written(Snapshot snapshot, long storedVersion) {
+        locked(() -> {
+            this.storedVersion = storedVersion;
+            snapshot.changes().forEach((userId, liked) -> stripeOf(userId).changes.remove(userId, liked));
+            return null;
+        });
+    }
+
+    /**
+     * Runs an action releasing the set (Ex. unpinning it once it is written)
+     * unless the set changed since the snapshot was taken. Changes made
+     * after the action wait for it, so they can tell the set was released
+     *
+     * @return whether the action ran
+     */
+    public boolean releaseIfUnchanged(Snapshot snapshot, Runnable release) {
+        return locked(() -> {
+            if (version.sum() != snapshot.version()) return false;
+            release.run();
+            return true;
+        });
+    }
+
+    /**
+     * Replaces the set with the one another writer stored, then replays the
+     * changes not written yet on top of it. A user who liked the post on both
+     * sides is only counted once
+     *
+     * @param bytes         the stored set, null if the row is gone
+     * @param storedVersion version of the stored row
+     */
+    public void rebase(byte[] bytes, Long storedVersion) {
+        locked(() -> {
+            Roaring64NavigableMap likers = bytes == null ? new Roaring64NavigableMap() : read(bytes);
+            for (Stripe stripe : stripes) {
+                stripe.changes.forEach((userId, liked) -> {
+                    if (liked) {
+                        likers.addLong(userId);
+                    } else {
+                        likers.removeLong(userId);
+                    }
+                });
+                stripe.likers = new Roaring64NavigableMap();
+            }
+            likeCount.reset();
+            fill(likers);
+            this.storedVersion = bytes == null ? null : storedVersion;
+            version.increment();
+            return null;
+        });
+    }
+
+    private Stripe stripeOf(long userId) {
+        return stripes[(int) (userId & (STRIPES - 1))];
+    }
+
+    /**
+     * Splits the likers over the stripes, which hold no one yet
+     */
+    private void fill(Roaring64NavigableMap likers) {
+        LongIterator userIds = likers.getLongIterator();
+        while (userIds.hasNext()) {
+            long userId = userIds.next();
+            stripeOf(userId).likers.addLong(userId);
+        }
+        likeCount.add(likers.getLongCardinality());
+    }
+
+    /**
+     * Runs an action holding the lock of every stripe, taken in order
+     */
+    private <T> T locked(Supplier<T> action) {
+        return locked(0, action);
+    }
+
+    private <T> T locked(int stripe, Supplier<T> action) {
+        if (stripe == STRIPES) return action.get();
+        synchronized (stripes[stripe]) {
+            return locked(stripe + 1, action);
+        }
+    }
+
+    private static Roaring64NavigableMap read(byte[] bytes) {
+        Roaring64NavigableMap likers = new Roaring64NavigableMap();
+        try {
+            likers.deserializePortable(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return likers;
+    }
+}
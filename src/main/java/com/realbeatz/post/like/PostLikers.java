@@ -0,0 +1,33 @@
+package com.realbeatz.post.like;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * The ids of every user who liked a post, stored as a
+ * serialized compressed bitmap (one row per post). The like count of
+ * the post is the size of this set, written along with it
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@ToString
+@AllArgsConstructor
+@RequiredArgsConstructor
+@Table(name = "post_likers")
+public class PostLikers {
+    @Id
+    @Column(name = "post_id", nullable = false)
+    private Long postId;
+
+    @Lob
+    @Column(nullable = false)
+    @ToString.Exclude
+    private byte[] likers;
+
+    // bumped on every write, a writer holding an older version merges its changes first
+    @Column(nullable = false)
+    private long version;
+}
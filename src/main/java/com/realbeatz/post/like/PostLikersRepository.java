@@ -0,0 +1,8 @@
+package com.realbeatz.post.like;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PostLikersRepository extends JpaRepository<PostLikers, Long> {
+}
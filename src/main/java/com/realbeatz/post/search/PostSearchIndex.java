@@ -0,0 +1,233 @@
+package com.realbeatz.post.search;
+
+import com.realbeatz.post.PostRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import static com.realbeatz.utils.PostUtils.*;
+import static com.realbeatz.utils.SearchUtils.*;
+
+/**
+ * In memory inverted index over the song title, artists and content of posts.
+ * Every term maps to a posting list of (post id, term frequency), where a term
+ * found in the song title or artists counts more than one found in the content.
+ * Results are ranked with BM25 and only the top K are kept.
+ */
+@Slf4j
+@Component
+public class PostSearchIndex {
+
+    // BM25 tuning parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // max number of indexed terms a single prefix query term expands to, the ones in the most posts
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final PostRepository postRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // term -> (post id -> weighted term frequency), sorted to answer prefix queries
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    // post id -> indexed terms, used to remove a post's postings when it changes
+    private final Map<Long, IndexedPost> indexedPosts = new HashMap<>();
+    private long totalLength = 0;
+
+    private record IndexedPost(Map<String, Integer> termFrequencies, int length) {
+    }
+
+    public PostSearchIndex(PostRepository postRepository) {
+        this.postRepository = postRepository;
+    }
+
+    /**
+     * Adds a post to the index, replacing its previous version if it was already indexed
+     */
+    public void index(SearchDocument document) {
+        IndexedPost indexedPost = analyze(document);
+
+        lock.writeLock().lock();
+        try {
+            removeFromIndex(document.postId());
+            addToIndex(document.postId(), indexedPost);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long postId) {
+        lock.writeLock().lock();
+        try {
+            removeFromIndex(postId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the posts matching a query best, highest score first.
+     * A post matches if it contains any of the query terms, and terms ending
+     * with '*' match every indexed term starting with them.
+     *
+     * @param query the search query (Ex. 'taylor swi*')
+     * @param limit max number of post ids returned (K)
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> queryTerms = tokenizeQuery(query);
+        if (queryTerms.isEmpty()) return List.of();
+
+        Map<Long, Double> scores = new HashMap<>();
+
+        lock.readLock().lock();
+        try {
+            int totalPosts = indexedPosts.size();
+            if (totalPosts == 0) return List.of();
+            double averageLength = (double) totalLength / totalPosts;
+
+            for (String queryTerm : queryTerms) {
+                // a post matching several expansions of a prefix only counts the best one
+                Map<Long, Double> termScores = new HashMap<>();
+
+                for (Map.Entry<String, Map<Long, Integer>> term : expand(queryTerm)) {
+                    Map<Long, Integer> postingList = term.getValue();
+                    double idf = Math.log(1 + (totalPosts - postingList.size() + 0.5) / (postingList.size() + 0.5));
+
+                    postingList.forEach((postId, frequency) -> {
+                        int length = indexedPosts.get(postId).length();
+                        double score = idf * frequency * (K1 + 1) /
+                                (frequency + K1 * (1 - B + B * length / averageLength));
+                        termScores.merge(postId, score, Math::max);
+                    });
+                }
+
+                termScores.forEach((postId, score) -> scores.merge(postId, score, Double::sum));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return topK(scores, limit);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return indexedPosts.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes every post by streaming only the searchable columns from the
+     * posts table, so posts are never loaded as entities all at once.
+     * Posts indexed while the rebuild is running are not overwritten.
+     */
+    @Transactional(readOnly = true)
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        log.info("Rebuilding post search index...");
+        long start = System.currentTimeMillis();
+
+        try (Stream<SearchDocument> documents = postRepository.streamSearchDocuments()) {
+            documents.forEach(document -> {
+                IndexedPost indexedPost = analyze(document);
+                lock.writeLock().lock();
+                try {
+                    if (!indexedPosts.containsKey(document.postId())) {
+                        addToIndex(document.postId(), indexedPost);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        }
+
+        log.info("Post search index rebuilt with {} posts in {}ms",
+                size(), System.currentTimeMillis() - start);
+    }
+
+    private IndexedPost analyze(SearchDocument document) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        int length = 0;
+
+        length += addTerms(termFrequencies, document.songTitle(), SONG_TITLE_SEARCH_WEIGHT);
+        length += addTerms(termFrequencies, document.artists(), ARTISTS_SEARCH_WEIGHT);
+        length += addTerms(termFrequencies, document.content(), CONTENT_SEARCH_WEIGHT);
+
+        return new IndexedPost(termFrequencies, length);
+    }
+
+    private int addTerms(Map<String, Integer> termFrequencies, String text, int weight) {
+        List<String> terms = tokenize(text);
+        terms.forEach(term -> termFrequencies.merge(term, weight, Integer::sum));
+        return terms.size();
+    }
+
+    private void addToIndex(Long postId, IndexedPost indexedPost) {
+        indexedPost.termFrequencies().forEach((term, frequency) ->
+                postings.computeIfAbsent(term, t -> new HashMap<>()).put(postId, frequency));
+        indexedPosts.put(postId, indexedPost);
+        totalLength += indexedPost.length();
+    }
+
+    private void removeFromIndex(Long postId) {
+        IndexedPost indexedPost = indexedPosts.remove(postId);
+        if (indexedPost == null) return;
+
+        indexedPost.termFrequencies().keySet().forEach(term -> {
+            Map<Long, Integer> postingList = postings.get(term);
+            postingList.remove(postId);
+            if (postingList.isEmpty()) postings.remove(term);
+        });
+        totalLength -= indexedPost.length();
+    }
+
+    private Collection<Map.Entry<String, Map<Long, Integer>>> expand(String queryTerm) {
+        if (!isPrefixTerm(queryTerm)) {
+            Map<Long, Integer> postingList = postings.get(queryTerm);
+            return postingList == null ? List.of() : List.of(Map.entry(queryTerm, postingList));
+        }
+
+        String prefix = queryTerm.substring(0, queryTerm.length() - PREFIX_MARKER.length());
+        // keeps the terms found in the most posts rather than the first ones in
+        // alphabetical order, rarer terms left out would only match a few posts
+        Comparator<Map.Entry<String, Map<Long, Integer>>> byPosts =
+                Comparator.comparingInt((Map.Entry<String, Map<Long, Integer>> term) -> term.getValue().size())
+                        .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+
+        // min heap holding the most common terms seen so far
+        PriorityQueue<Map.Entry<String, Map<Long, Integer>>> expansions =
+                new PriorityQueue<>(MAX_PREFIX_EXPANSIONS + 1, byPosts);
+        for (Map.Entry<String, Map<Long, Integer>> term :
+                postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).entrySet()) {
+            expansions.offer(term);
+            if (expansions.size() > MAX_PREFIX_EXPANSIONS) expansions.poll();
+        }
+        return expansions;
+    }
+
+    private static List<Long> topK(Map<Long, Double> scores, int k) {
+        Comparator<Map.Entry<Long, Double>> byScore = Map.Entry.<Long, Double>comparingByValue()
+                .thenComparing(Map.Entry.comparingByKey());
+
+        // min heap holding the best k results seen so far
+        PriorityQueue<Map.Entry<Long, Double>> best = new PriorityQueue<>(k + 1, byScore);
+        for (Map.Entry<Long, Double> score : scores.entrySet()) {
+            best.offer(score);
+            if (best.size() > k) best.poll();
+        }
+
+        List<Long> postIds = new ArrayList<>(best.size());
+        while (!best.isEmpty()) postIds.add(best.poll().getKey());
+        Collections.reverse(postIds);
+        return postIds;
+    }
+}
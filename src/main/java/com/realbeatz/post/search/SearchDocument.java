@@ -0,0 +1,17 @@
+package com.realbeatz.post.search;
+
+import com.realbeatz.post.Post;
+
+/**
+ * The searchable fields of a post
+ */
+public record SearchDocument(Long postId, String songTitle, String artists, String content) {
+
+    public static SearchDocument of(Post post) {
+        return new SearchDocument(
+                post.getId(),
+                post.getSongTitle(),
+                post.getArtists(),
+                post.getContent());
+    }
+}
@@ -0,0 +1,17 @@
+package com.realbeatz.post.timeline;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ToString
+@ConfigurationProperties(prefix = "application.timeline")
+public class TimelineConfig {
+    // users with more friends than this are read at request time instead of fanned out
+    private Integer fanOutThreshold = 500;
+    // number of recent posts copied into a timeline when a new friendship is made
+    private Integer backfillSize = 50;
+}
@@ -0,0 +1,41 @@
+package com.realbeatz.post.timeline;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A single post materialized into the home timeline of one user.
+ * Only ids and the post time are stored so that a feed read never
+ * has to touch the posts of every friend.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@ToString
+@AllArgsConstructor
+@RequiredArgsConstructor
+@IdClass(TimelineEntryId.class)
+@Table(
+        name = "timeline_entries",
+        indexes = {
+                @Index(name = "idx_timeline_owner_time", columnList = "owner_id, post_time, post_id"),
+                @Index(name = "idx_timeline_author", columnList = "author_id")
+        })
+public class TimelineEntry {
+    @Id
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Id
+    @Column(name = "post_id", nullable = false)
+    private Long postId;
+
+    @Column(name = "author_id", nullable = false)
+    private Long authorId;
+
+    @Column(name = "post_time", nullable = false)
+    private LocalDateTime postTime;
+}
@@ -0,0 +1,104 @@
+package com.realbeatz.post.timeline;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TimelineEntryRepository extends JpaRepository<TimelineEntry, TimelineEntryId> {
+
+    @Query("select new com.realbeatz.post.timeline.TimelineItem(e.postId, e.postTime) " +
+            "from TimelineEntry e where e.ownerId = ?1 " +
+            "order by e.postTime desc, e.postId desc")
+    List<TimelineItem> findItemsByOwnerId(Long ownerId, Pageable pageable);
+
+    @Query("select new com.realbeatz.post.timeline.TimelineItem(e.postId, e.postTime) " +
+            "from TimelineEntry e where e.ownerId = ?1 " +
+            "and (e.postTime < ?2 or (e.postTime = ?2 and e.postId < ?3)) " +
+            "order by e.postTime desc, e.postId desc")
+    List<TimelineItem> findItemsByOwnerIdBefore(Long ownerId, LocalDateTime postTime, Long postId, Pageable pageable);
+
+    /**
+     * Pushes a new post into the timeline of every friend of its author
+     */
+    @Modifying
+    @Query(value = "insert into timeline_entries (owner_id, post_id, author_id, post_time) " +
+            "select f.user_id, ?2, ?1, ?3 from friends_of f where f.friend_id = ?1",
+            nativeQuery = true)
+    int fanOutToFriends(Long authorId, Long postId, LocalDateTime postTime);
+
+    /**
+     * Adds imported posts to the timeline of their author
+     */
+    @Modifying
+    @Query(value = "insert into timeline_entries (owner_id, post_id, author_id, post_time) " +
+            "select p.creator_id, p.post_id, p.creator_id, p.post_time from posts p " +
+            "where p.post_id in ?1",
+            nativeQuery = true)
+    int insertOwnPosts(Collection<Long> postIds);
+
+    /**
+     * Pushes imported posts into the timeline of every friend of their author
+     */
+    @Modifying
+    @Query(value = "insert into timeline_entries (owner_id, post_id, author_id, post_time) " +
+            "select f.user_id, p.post_id, p.creator_id, p.post_time from posts p " +
+            "join friends_of f on f.friend_id = p.creator_id " +
+            "where p.post_id in ?1",
+            nativeQuery = true)
+    int fanOutPostsToFriends(Collection<Long> postIds);
+
+    /**
+     * Copies the most recent posts of an author into the timeline of a new friend
+     */
+    @Modifying
+    @Query(value = "insert into timeline_entries (owner_id, post_id, author_id, post_time) " +
+            "select ?1, p.post_id, p.creator_id, p.post_time from posts p " +
+            "where p.creator_id = ?2 and not exists (" +
+            "select 1 from timeline_entries t where t.owner_id = ?1 and t.post_id = p.post_id) " +
+            "order by p.post_time desc limit ?3",
+            nativeQuery = true)
+    int backfillFromAuthor(Long ownerId, Long authorId, int limit);
+
+    /**
+     * Copies the most recent posts of an author into the timelines of all
+     * their friends, skipping the posts a timeline already holds
+     */
+    @Modifying
+    @Query(value = "insert into timeline_entries (owner_id, post_id, author_id, post_time) " +
+            "select f.user_id, p.post_id, p.creator_id, p.post_time from (" +
+            "select r.post_id, r.creator_id, r.post_time from posts r where r.creator_id = ?1 " +
+            "order by r.post_time desc limit ?2) p " +
+            "join friends_of f on f.friend_id = p.creator_id " +
+            "where not exists (" +
+            "select 1 from timeline_entries t where t.owner_id = f.user_id and t.post_id = p.post_id)",
+            nativeQuery = true)
+    int backfillFriendsFromAuthor(Long authorId, int limit);
+
+    @Modifying
+    @Query("delete from TimelineEntry e where e.ownerId = ?1 and e.authorId = ?2")
+    int deleteByOwnerIdAndAuthorId(Long ownerId, Long authorId);
+
+    @Modifying
+    @Query("delete from TimelineEntry e where e.ownerId = ?1 or e.authorId = ?1")
+    int deleteAllInvolvingUser(Long userId);
+
+    @Modifying
+    @Query(value = "insert into timeline_entries (owner_id, post_id, author_id, post_time) " +
+            "select p.creator_id, p.post_id, p.creator_id, p.post_time from posts p",
+            nativeQuery = true)
+    int rebuildOwnPosts();
+
+    @Modifying
+    @Query(value = "insert into timeline_entries (owner_id, post_id, author_id, post_time) " +
+            "select f.user_id, p.post_id, p.creator_id, p.post_time from posts p " +
+            "join friends_of f on f.friend_id = p.creator_id",
+            nativeQuery = true)
+    int rebuildFriendPosts();
+}
@@ -0,0 +1,10 @@
+package com.realbeatz.post.timeline;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lightweight (post id, post time) pair used to merge pushed
+ * and pulled timeline entries without loading any posts
+ */
+public record TimelineItem(Long postId, LocalDateTime postTime) {
+}
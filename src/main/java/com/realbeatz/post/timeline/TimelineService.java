@@ -0,0 +1,199 @@
+package com.realbeatz.post.timeline;
+
+import com.realbeatz.post.Post;
+import com.realbeatz.post.PostRepository;
+import com.realbeatz.user.friends.FriendGraph;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+import static com.realbeatz.utils.PaginationUtils.*;
+
+/**
+ * Maintains a materialized home timeline for every user (fan-out on write).
+ * Posts by users with more friends than the configured fan-out threshold are
+ * not pushed to their friends, instead they are pulled and merged in when
+ * a timeline is read (hybrid mode).
+ */
+@Slf4j
+@Service
+@AllArgsConstructor
+public class TimelineService {
+
+    private static final Comparator<TimelineItem> NEWEST_FIRST =
+            Comparator.comparing(TimelineItem::postTime)
+                    .thenComparing(TimelineItem::postId)
+                    .reversed();
+
+    private final TimelineEntryRepository timelineEntryRepository;
+    private final PostRepository postRepository;
+    private final FriendGraph friendGraph;
+    private final TimelineConfig timelineConfig;
+
+    /**
+     * Returns one page of the home timeline of a user ordered
+     * from newest to oldest
+     *
+     * @param userId   owner of the timeline
+     * @param cursor   position of the last item of the previous page, null for the first page
+     * @param pageSize number of items in the page
+     * @return a page of (post id, post time) items
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<TimelineItem> getTimeline(Long userId, @Nullable Cursor cursor, int pageSize) {
+        Pageable limit = lookAhead(pageSize);
+
+        List<TimelineItem> items = new ArrayList<>(cursor == null ?
+                timelineEntryRepository.findItemsByOwnerId(userId, limit) :
+                timelineEntryRepository.findItemsByOwnerIdBefore(
+                        userId, cursor.time(), cursor.id(), limit));
+
+        // pull posts of friends that are too popular to be fanned out
+        List<Long> pulledAuthorIds = friendGraph.getFriendIdsWithMoreFriendsThan(
+                userId, timelineConfig.getFanOutThreshold());
+        if (!pulledAuthorIds.isEmpty()) {
+            items.addAll(cursor == null ?
+                    postRepository.findItemsByCreatorIdIn(pulledAuthorIds, limit) :
+                    postRepository.findItemsByCreatorIdInBefore(
+                            pulledAuthorIds, cursor.time(), cursor.id(), limit));
+        }
+
+        Set<Long> seen = new HashSet<>();
+        List<TimelineItem> merged = items.stream()
+                .sorted(NEWEST_FIRST)
+                .filter(item -> seen.add(item.postId()))
+                .limit(limit.getPageSize())
+                .toList();
+
+        return toPage(merged, pageSize, TimelineItem::postTime, TimelineItem::postId);
+    }
+
+    @Transactional
+    public void onPostCreated(Post post) {
+        Long authorId = post.getCreator().getId();
+
+        timelineEntryRepository.save(TimelineEntry.builder()
+                .ownerId(authorId)
+                .postId(post.getId())
+                .authorId(authorId)
+                .postTime(post.getPostTime())
+                .build());
+
+        if (isHighFanOut(authorId)) {
+            log.debug("Skipping fan-out of post: {}, author: {} is read at request time",
+                    post.getId(), authorId);
+            return;
+        }
+
+        int pushed = timelineEntryRepository.fanOutToFriends(
+                authorId, post.getId(), post.getPostTime());
+        log.debug("Post: {} pushed to {} timelines", post.getId(), pushed);
+    }
+
+    /**
+     * Same as {@link #onPostCreated(Post)} for a batch of imported posts
+     * of one author, using one statement per batch instead of per post
+     */
+    @Transactional
+    public void onPostsImported(Long authorId, List<Long> postIds) {
+        if (postIds.isEmpty()) return;
+
+        timelineEntryRepository.insertOwnPosts(postIds);
+        if (isHighFanOut(authorId)) return;
+
+        int pushed = timelineEntryRepository.fanOutPostsToFriends(postIds);
+        log.debug("{} imported posts of author: {} pushed to {} timeline entries",
+                postIds.size(), authorId, pushed);
+    }
+
+    /**
+     * Backfills the timelines of two new friends with each other's recent
+     * posts. Called by the transaction making the friendship, once it is
+     * written to friends_of
+     */
+    @Transactional
+    public void onFriendshipCreated(Long userId, Long friendId) {
+        // counted with the friendship, the friend graph only applies it on commit
+        if (!exceedsFanOutThreshold(friendGraph.countFriendsOnCommit(friendId, 1))) {
+            timelineEntryRepository.backfillFromAuthor(
+                    userId, friendId, timelineConfig.getBackfillSize());
+        }
+        if (!exceedsFanOutThreshold(friendGraph.countFriendsOnCommit(userId, 1))) {
+            timelineEntryRepository.backfillFromAuthor(
+                    friendId, userId, timelineConfig.getBackfillSize());
+        }
+    }
+
+    /**
+     * Drops each other's posts from the timelines of two former friends.
+     * Called by the transaction dropping the friendship, once it is deleted
+     * from friends_of
+     */
+    @Transactional
+    public void onFriendshipRemoved(Long userId, Long friendId) {
+        timelineEntryRepository.deleteByOwnerIdAndAuthorId(userId, friendId);
+        timelineEntryRepository.deleteByOwnerIdAndAuthorId(friendId, userId);
+        onFriendLost(userId);
+        onFriendLost(friendId);
+    }
+
+    /**
+     * Drops the timeline of a user and their posts from every other timeline.
+     * Called by the transaction deleting the user, once their friendships
+     * are deleted from friends_of
+     *
+     * @param friendIds ids of the friends the user had
+     */
+    @Transactional
+    public void removeUser(Long userId, long[] friendIds) {
+        timelineEntryRepository.deleteAllInvolvingUser(userId);
+        for (long friendId : friendIds) {
+            onFriendLost(friendId);
+        }
+    }
+
+    /**
+     * Materializes the timelines of all users from the posts and
+     * friends_of tables when the timeline store is empty
+     */
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        if (timelineEntryRepository.count() > 0) return;
+
+        int own = timelineEntryRepository.rebuildOwnPosts();
+        int friends = timelineEntryRepository.rebuildFriendPosts();
+        log.info("Rebuilt home timelines with {} entries", own + friends);
+    }
+
+    /**
+     * An author dropping to the fan-out threshold is no longer pulled into
+     * the timelines of their friends, so their recent posts are pushed into
+     * them instead, including those written while they were pulled
+     */
+    private void onFriendLost(Long authorId) {
+        // counted without the friendship lost, the friend graph only drops it on commit
+        long friends = friendGraph.countFriendsOnCommit(authorId, -1);
+        if (friends != timelineConfig.getFanOutThreshold()) return;
+
+        int pushed = timelineEntryRepository.backfillFriendsFromAuthor(
+                authorId, timelineConfig.getBackfillSize());
+        log.debug("Author: {} dropped to the fan-out threshold, {} recent posts pushed to their friends",
+                authorId, pushed);
+    }
+
+    private boolean isHighFanOut(Long userId) {
+        return exceedsFanOutThreshold(friendGraph.countFriends(userId));
+    }
+
+    private boolean exceedsFanOutThreshold(long friends) {
+        return friends > timelineConfig.getFanOutThreshold();
+    }
+}
@@ -0,0 +1,66 @@
+package com.realbeatz.post.trending;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Fixed size frequency table that never under counts a key and over counts
+ * it by at most a small fraction of the total, no matter how many distinct
+ * keys are added. Not thread safe.
+ */
+public class CountMinSketch {
+    private final int width;
+    private final int[][] counts;
+
+    public CountMinSketch(int width, int depth) {
+        this.width = width;
+        this.counts = new int[depth][width];
+    }
+
+    public void add(String key) {
+        long[] hashes = hash(key);
+        for (int row = 0; row < counts.length; row++) {
+            counts[row][column(hashes, row)]++;
+        }
+    }
+
+    public long estimate(String key) {
+        long[] hashes = hash(key);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counts.length; row++) {
+            estimate = Math.min(estimate, counts[row][column(hashes, row)]);
+        }
+        return estimate;
+    }
+
+    public void clear() {
+        for (int[] row : counts) {
+            Arrays.fill(row, 0);
+        }
+    }
+
+    private static long[] hash(String key) {
+        HashCode hashCode = Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8);
+        byte[] bytes = hashCode.asBytes();
+        long h1 = 0, h2 = 0;
+        for (int i = 0; i < 8; i++) {
+            h1 = (h1 << 8) | (bytes[i] & 0xff);
+            h2 = (h2 << 8) | (bytes[i + 8] & 0xff);
+        }
+        return new long[]{h1, h2};
+    }
+
+    // derives the hash of each row from two independent hashes, mixed so every
+    // bit picks the column (with a power of two width only the low bits would,
+    // and keys sharing them would collide in every row)
+    private int column(long[] hashes, int row) {
+        long h = hashes[0] + row * hashes[1];
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) Math.floorMod(h, (long) width);
+    }
+}
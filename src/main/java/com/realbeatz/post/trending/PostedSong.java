@@ -0,0 +1,18 @@
+package com.realbeatz.post.trending;
+
+import com.realbeatz.post.Post;
+
+import java.time.LocalDateTime;
+
+/**
+ * The song named by a post and when it was posted
+ */
+public record PostedSong(String songTitle, String artists, LocalDateTime postTime) {
+
+    public static PostedSong of(Post post) {
+        return new PostedSong(
+                post.getSongTitle(),
+                post.getArtists(),
+                post.getPostTime());
+    }
+}
@@ -0,0 +1,97 @@
+package com.realbeatz.post.trending;
+
+import java.util.*;
+
+/**
+ * Approximate most frequent keys over a sliding time window. The window is a
+ * ring of buckets, each holding a space saving summary that names the heavy
+ * hitters and a count min sketch that bounds how often they were seen, so the
+ * memory used only depends on the number of buckets and their capacity.
+ *
+ * @param <T> the item each key stands for
+ */
+public class SlidingTopK<T> {
+
+    public record Ranked<T>(T item, long count) {
+    }
+
+    private static final class Bucket<T> {
+        private long index = Long.MIN_VALUE;
+        private final SpaceSaving<T> summary;
+        private final CountMinSketch sketch;
+
+        private Bucket(int capacity, int sketchWidth, int sketchDepth) {
+            this.summary = new SpaceSaving<>(capacity);
+            this.sketch = new CountMinSketch(sketchWidth, sketchDepth);
+        }
+
+        private void reset(long index) {
+            this.index = index;
+            summary.clear();
+            sketch.clear();
+        }
+    }
+
+    private final long bucketMillis;
+    private final List<Bucket<T>> buckets;
+
+    public SlidingTopK(TrendingWindow window, int capacity, int sketchWidth, int sketchDepth) {
+        this.bucketMillis = window.getBucketMillis();
+        this.buckets = new ArrayList<>(window.getBuckets());
+        for (int i = 0; i < window.getBuckets(); i++) {
+            buckets.add(new Bucket<>(capacity, sketchWidth, sketchDepth));
+        }
+    }
+
+    /**
+     * Counts one occurrence of a key at the given time, ignored if the time
+     * already slid out of the window
+     */
+    public synchronized void add(String key, T item, long timeMillis, long nowMillis) {
+        long index = timeMillis / bucketMillis;
+        if (index <= nowMillis / bucketMillis - buckets.size()) return;
+
+        Bucket<T> bucket = buckets.get((int) Math.floorMod(index, (long) buckets.size()));
+        if (bucket.index > index) return;
+        if (bucket.index < index) bucket.reset(index);
+
+        bucket.summary.add(key, item);
+        bucket.sketch.add(key);
+    }
+
+    /**
+     * Returns the most frequent keys of the window ending now, most frequent first
+     */
+    public synchronized List<Ranked<T>> top(int k, long nowMillis) {
+        long newest = nowMillis / bucketMillis;
+        List<Bucket<T>> live = buckets.stream()
+                .filter(bucket -> bucket.index > newest - buckets.size() && bucket.index <= newest)
+                .sorted(Comparator.comparingLong((Bucket<T> bucket) -> bucket.index).reversed())
+                .toList();
+
+        // any key frequent over the whole window is a heavy hitter of at least one bucket
+        Map<String, T> candidates = new HashMap<>();
+        for (Bucket<T> bucket : live) {
+            for (SpaceSaving.Counter<T> counter : bucket.summary.counters()) {
+                // newest buckets come first so the latest item of each key is kept
+                candidates.putIfAbsent(counter.getKey(), counter.getItem());
+            }
+        }
+
+        PriorityQueue<Ranked<T>> best = new PriorityQueue<>(
+                k + 1, Comparator.comparingLong(Ranked<T>::count));
+        candidates.forEach((key, item) -> {
+            long count = 0;
+            for (Bucket<T> bucket : live) {
+                // both structures over count, the smaller estimate is the tighter one
+                count += Math.min(bucket.sketch.estimate(key), bucket.summary.upperBound(key));
+            }
+            best.offer(new Ranked<>(item, count));
+            if (best.size() > k) best.poll();
+        });
+
+        List<Ranked<T>> ranked = new ArrayList<>(best);
+        ranked.sort(Comparator.comparingLong(Ranked<T>::count).reversed());
+        return ranked;
+    }
+}
@@ -0,0 +1,92 @@
+package com.realbeatz.post.trending;
+
+import java.util.*;
+
+/**
+ * Keeps the most frequent keys of a stream with a fixed number of counters
+ * (space saving algorithm). When all counters are taken, the key with the
+ * lowest count is replaced and the new key inherits its count, so counts are
+ * upper bounds and any key seen more often than total / capacity is kept.
+ * Not thread safe.
+ *
+ * @param <T> the item each key stands for, the latest one seen is kept
+ */
+public class SpaceSaving<T> {
+
+    public static final class Counter<T> {
+        private final String key;
+        private T item;
+        private long count;
+
+        private Counter(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    private static final Comparator<Counter<?>> BY_COUNT =
+            Comparator.<Counter<?>>comparingLong(counter -> counter.count)
+                    .thenComparing(counter -> counter.key);
+
+    private final int capacity;
+    private final Map<String, Counter<T>> counters;
+    // ordered by count to find the counter to replace in log time
+    private final TreeSet<Counter<T>> byCount = new TreeSet<>(BY_COUNT);
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 4 / 3 + 1);
+    }
+
+    public void add(String key, T item) {
+        Counter<T> counter = counters.get(key);
+
+        if (counter == null) {
+            if (counters.size() < capacity) {
+                counter = new Counter<>(key);
+            } else {
+                Counter<T> smallest = byCount.pollFirst();
+                counters.remove(smallest.key);
+                counter = new Counter<>(key);
+                counter.count = smallest.count;
+            }
+            counters.put(key, counter);
+        } else {
+            byCount.remove(counter);
+        }
+
+        counter.item = item;
+        counter.count++;
+        byCount.add(counter);
+    }
+
+    /**
+     * Upper bound of the number of times a key was added
+     */
+    public long upperBound(String key) {
+        Counter<T> counter = counters.get(key);
+        if (counter != null) return counter.count;
+        // a key that isn't tracked was seen at most as often as the smallest counter
+        return counters.size() < capacity ? 0 : byCount.first().count;
+    }
+
+    public Collection<Counter<T>> counters() {
+        return Collections.unmodifiableCollection(counters.values());
+    }
+
+    public void clear() {
+        counters.clear();
+        byCount.clear();
+    }
+}
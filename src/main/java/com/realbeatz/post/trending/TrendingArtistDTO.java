@@ -0,0 +1,12 @@
+package com.realbeatz.post.trending;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class TrendingArtistDTO {
+    private String artist;
+    // approximate number of posts naming the artist in the window
+    private Long posts;
+}
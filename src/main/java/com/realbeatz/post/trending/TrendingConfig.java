@@ -0,0 +1,18 @@
+package com.realbeatz.post.trending;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ToString
+@ConfigurationProperties(prefix = "application.trending")
+public class TrendingConfig {
+    // number of songs or artists tracked per bucket of a window
+    private Integer capacity = 1000;
+    // size of the count min sketch of each bucket
+    private Integer sketchWidth = 2048;
+    private Integer sketchDepth = 4;
+}
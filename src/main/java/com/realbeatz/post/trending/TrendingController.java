@@ -0,0 +1,66 @@
+package com.realbeatz.post.trending;
+
+import com.realbeatz.exceptions.InvalidUserInputException;
+import com.realbeatz.payloads.responses.ErrorMessage;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@CrossOrigin(origins = "*", originPatterns = "*")
+@RestController
+@Slf4j
+@AllArgsConstructor
+@RequestMapping("/api/trending")
+public class TrendingController {
+
+    private final TrendingService trendingService;
+
+    @GetMapping("/songs")
+    @PreAuthorize("hasAnyAuthority('user:read', 'admin:read')")
+    public ResponseEntity<?> getTrendingSongs(
+            @RequestParam(value = "window", required = false) String window,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+
+        log.info("Getting trending songs, window: {}, limit: {}", window, limit);
+
+        List<TrendingSongDTO> trendingSongs;
+
+        try {
+            trendingSongs = trendingService.getTrendingSongs(window, limit);
+        } catch (InvalidUserInputException e) {
+            log.error("Error getting trending songs, window: {}", window, e);
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(ErrorMessage.of(e.getMessage()));
+        }
+
+        return ResponseEntity.ok(trendingSongs);
+    }
+
+    @GetMapping("/artists")
+    @PreAuthorize("hasAnyAuthority('user:read', 'admin:read')")
+    public ResponseEntity<?> getTrendingArtists(
+            @RequestParam(value = "window", required = false) String window,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+
+        log.info("Getting trending artists, window: {}, limit: {}", window, limit);
+
+        List<TrendingArtistDTO> trendingArtists;
+
+        try {
+            trendingArtists = trendingService.getTrendingArtists(window, limit);
+        } catch (InvalidUserInputException e) {
+            log.error("Error getting trending artists, window: {}", window, e);
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(ErrorMessage.of(e.getMessage()));
+        }
+
+        return ResponseEntity.ok(trendingArtists);
+    }
+}
@@ -0,0 +1,133 @@
+package com.realbeatz.post.trending;
+
+import com.realbeatz.exceptions.InvalidUserInputException;
+import com.realbeatz.post.Post;
+import com.realbeatz.post.PostRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static com.realbeatz.utils.SearchUtils.tokenize;
+
+/**
+ * Keeps the songs and artists posted about the most over the last hour, day
+ * and week, fed by every new post instead of grouping the whole posts table
+ */
+@Slf4j
+@Service
+public class TrendingService {
+    public static final int DEFAULT_TRENDING_SIZE = 10;
+    public static final int MAX_TRENDING_SIZE = 100;
+
+    // separators between the artists of a song (Ex. 'Drake, Rihanna', 'Eminem feat. Dido')
+    private static final Pattern ARTIST_SEPARATORS = Pattern.compile(
+            "\\s*(?:,|&|;|/|\\bfeat\\.?|\\bft\\.?|\\bfeaturing\\b)\\s*",
+            Pattern.CASE_INSENSITIVE);
+
+    private final PostRepository postRepository;
+    private final Map<TrendingWindow, SlidingTopK<PostedSong>> songs = new EnumMap<>(TrendingWindow.class);
+    private final Map<TrendingWindow, SlidingTopK<String>> artists = new EnumMap<>(TrendingWindow.class);
+
+    public TrendingService(PostRepository postRepository, TrendingConfig config) {
+        this.postRepository = postRepository;
+        for (TrendingWindow window : TrendingWindow.values()) {
+            songs.put(window, new SlidingTopK<>(
+                    window, config.getCapacity(), config.getSketchWidth(), config.getSketchDepth()));
+            artists.put(window, new SlidingTopK<>(
+                    window, config.getCapacity(), config.getSketchWidth(), config.getSketchDepth()));
+        }
+    }
+
+    public void onPostCreated(Post post) {
+        record(PostedSong.of(post), System.currentTimeMillis());
+    }
+
+    public List<TrendingSongDTO> getTrendingSongs(String window, Integer limit) throws InvalidUserInputException {
+        return songs.get(parseWindow(window))
+                .top(trendingSize(limit), System.currentTimeMillis()).stream()
+                .map(ranked -> TrendingSongDTO.builder()
+                        .songTitle(ranked.item().songTitle())
+                        .artists(ranked.item().artists())
+                        .posts(ranked.count())
+                        .build())
+                .toList();
+    }
+
+    public List<TrendingArtistDTO> getTrendingArtists(String window, Integer limit) throws InvalidUserInputException {
+        return artists.get(parseWindow(window))
+                .top(trendingSize(limit), System.currentTimeMillis()).stream()
+                .map(ranked -> TrendingArtistDTO.builder()
+                        .artist(ranked.item())
+                        .posts(ranked.count())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Replays the posts of the longest window so trends survive a restart
+     */
+    @Transactional(readOnly = true)
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long now = System.currentTimeMillis();
+        LocalDateTime since = LocalDateTime.now().minus(TrendingWindow.WEEK.getLength());
+
+        try (Stream<PostedSong> postedSongs = postRepository.streamPostedSongsSince(since)) {
+            postedSongs.forEach(postedSong -> record(postedSong, now));
+        }
+        log.info("Trending songs and artists rebuilt from posts since {}", since);
+    }
+
+    private void record(PostedSong postedSong, long now) {
+        if (postedSong.postTime() == null) return;
+        long postTime = postedSong.postTime()
+                .atZone(ZoneId.systemDefault())
+                .toInstant()
+                .toEpochMilli();
+
+        String songKey = normalize(postedSong.songTitle());
+        if (!songKey.isEmpty()) {
+            songKey += "|" + normalize(postedSong.artists());
+            for (SlidingTopK<PostedSong> window : songs.values()) {
+                window.add(songKey, postedSong, postTime, now);
+            }
+        }
+
+        if (postedSong.artists() == null) return;
+        for (String artist : ARTIST_SEPARATORS.split(postedSong.artists().trim())) {
+            String artistKey = normalize(artist);
+            if (artistKey.isEmpty()) continue;
+            for (SlidingTopK<String> window : artists.values()) {
+                window.add(artistKey, artist, postTime, now);
+            }
+        }
+    }
+
+    // songs and artists written with different case or accents count as the same
+    private static String normalize(String text) {
+        return String.join(" ", tokenize(text));
+    }
+
+    private static int trendingSize(Integer limit) {
+        if (limit == null) return DEFAULT_TRENDING_SIZE;
+        return Math.max(1, Math.min(limit, MAX_TRENDING_SIZE));
+    }
+
+    private static TrendingWindow parseWindow(String window) throws InvalidUserInputException {
+        if (window == null) return TrendingWindow.DAY;
+        try {
+            return TrendingWindow.valueOf(window.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidUserInputException(
+                    "Window: " + window + " is not valid");
+        }
+    }
+}
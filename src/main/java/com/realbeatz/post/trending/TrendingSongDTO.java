@@ -0,0 +1,13 @@
+package com.realbeatz.post.trending;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class TrendingSongDTO {
+    private String songTitle;
+    private String artists;
+    // approximate number of posts naming the song in the window
+    private Long posts;
+}
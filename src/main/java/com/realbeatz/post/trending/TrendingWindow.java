@@ -0,0 +1,33 @@
+package com.realbeatz.post.trending;
+
+import java.time.Duration;
+
+/**
+ * The sliding time windows trends are computed over. Each window is split into
+ * buckets that expire one at a time as the window slides forward.
+ */
+public enum TrendingWindow {
+    HOUR(Duration.ofHours(1), 12),
+    DAY(Duration.ofDays(1), 24),
+    WEEK(Duration.ofDays(7), 28);
+
+    private final Duration length;
+    private final int buckets;
+
+    TrendingWindow(Duration length, int buckets) {
+        this.length = length;
+        this.buckets = buckets;
+    }
+
+    public Duration getLength() {
+        return length;
+    }
+
+    public int getBuckets() {
+        return buckets;
+    }
+
+    public long getBucketMillis() {
+        return length.toMillis() / buckets;
+    }
+}
@@ -8,19 +8,27 @@ import com.realbeatz.payloads.requests.RegisterUserRequest;
 import com.realbeatz.payloads.responses.ErrorMessage;
 import com.realbeatz.user.UserDTO;
 import com.realbeatz.user.UserService;
+import com.realbeatz.user.profile.ProfilePicturePipeline;
+import com.realbeatz.user.profile.ProfilePicturePipeline.StagedPicture;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.tomcat.util.http.fileupload.FileItemIterator;
+import org.apache.tomcat.util.http.fileupload.FileItemStream;
+import org.apache.tomcat.util.http.fileupload.servlet.ServletFileUpload;
+import org.apache.tomcat.util.http.fileupload.servlet.ServletRequestContext;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.InputStream;
 
 import static com.realbeatz.utils.CustomHeaders.ACCESS_TOKEN;
 import static com.realbeatz.utils.CustomHeaders.REFRESH_TOKEN;
+import static com.realbeatz.utils.FileUtils.MAX_PROFILE_PIC_BYTE_SIZE;
 
 @CrossOrigin(origins = "*")
 @Slf4j
@@ -31,33 +39,60 @@ public class AuthController {
 
     // Login is taken care of by JwtUsernameAndPasswordAuthenticationFilter
 
+    // size of a registration request apart from its profile picture
+    private static final long MAX_REGISTRATION_BYTE_SIZE = 64 * 1024;
+
     private final UserService userService;
     private final AuthService authService;
+    private final ProfilePicturePipeline profilePicturePipeline;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * Registers a new user from a multipart request with a 'userProfile' part
+     * and an optional 'profilePicture' part. The parts are read as they are
+     * streamed instead of being buffered by the servlet container first, so a
+     * picture that isn't a valid image or is too large is rejected after
+     * reading only as much of it as needed
+     */
     @PostMapping(value = "/register", consumes = "multipart/form-data")
-    public ResponseEntity<?> registerNewUser(
-            @RequestPart("userProfile") RegisterUserRequest request,
-            @RequestPart(value = "profilePicture", required = false) MultipartFile profilePicture,
-            HttpServletRequest servletRequest) {
+    public ResponseEntity<?> registerNewUser(HttpServletRequest servletRequest) {
 
         log.info("Request ip: {}:{}", servletRequest.getRemoteAddr(), servletRequest.getRemotePort());
 
-        log.info("Request to register user with username: {}", request.getUsername());
-
+        RegisterUserRequest request = null;
+        StagedPicture profilePicture = null;
         UserDTO userDTO;
 
         try {
-            userDTO = userService.registerUser(
-                    request.getUsername(),
-                    request.getPassword(),
-                    request.getLastName(),
-                    request.getFirstName(),
-                    request.getDob(),
-                    request.getBio(),
-                    profilePicture);
+            ServletFileUpload upload = new ServletFileUpload();
+            // the picture has its own limit, the rest of the request is small
+            upload.setSizeMax(MAX_PROFILE_PIC_BYTE_SIZE + MAX_REGISTRATION_BYTE_SIZE);
+            FileItemIterator parts = upload.getItemIterator(new ServletRequestContext(servletRequest));
+            while (parts.hasNext()) {
+                FileItemStream part = parts.next();
+                try (InputStream content = part.openStream()) {
+                    if (part.getFieldName().equals("userProfile")) {
+                        request = objectMapper.readValue(content, RegisterUserRequest.class);
+                    } else if (part.getFieldName().equals("profilePicture") && profilePicture == null) {
+                        profilePicture = profilePicturePipeline.stage(content, part.getName());
+                    }
+                }
+            }
+            if (request == null) {
+                throw new InvalidUserInputException("Part: 'userProfile' is required");
+            }
+
+            log.info("Request to register user with username: {}", request.getUsername());
+            // the picture is now handed over, registerUser discards it if the user isn't registered
+            StagedPicture staged = profilePicture;
+            profilePicture = null;
+            userDTO = userService.registerUser(request, staged);
         } catch (DuplicateUsernameException | InvalidUserInputException | IllegalFileTypeException | IOException e) {
             log.error("Error processing request to register new user with username: {}, Error Message: '{}'",
-                    request.getUsername(), e.getMessage(), e);
+                    request == null ? null : request.getUsername(), e.getMessage(), e);
+            if (profilePicture != null) {
+                profilePicturePipeline.discard(profilePicture);
+            }
 
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
@@ -0,0 +1,9 @@
+package com.realbeatz.user;
+
+/**
+ * Name of something a user is related to (Ex. username of a friend, name of
+ * a group chat the user is a member of), used to fetch the names related to
+ * many users with a single query
+ */
+public record NamedRelation(Long userId, String name) {
+}
@@ -35,7 +35,7 @@ public class User {
             name = "users_gen",
             sequenceName = "users_seq",
             initialValue = 1000,
-            allocationSize = 1)
+            allocationSize = 50)
     @Column(name = "user_id", nullable = false)
     private Long id;
 
@@ -123,4 +123,11 @@ public class User {
     @Column(length = 20)
     private UserRole role;
 
+    // bumped with UserRepository.touch whenever anything shown in the user's
+    // UserDTO changes, never written by saving the entity
+    @Setter(AccessLevel.NONE)
+    @Column(nullable = false, updatable = false)
+    @Builder.Default
+    private Long revision = 0L;
+
 }
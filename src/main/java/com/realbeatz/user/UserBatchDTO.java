@@ -0,0 +1,18 @@
+package com.realbeatz.user;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Users looked up together, with the ids and usernames that don't match any user
+ */
+@Data
+@Builder
+public class UserBatchDTO {
+    private Map<Long, UserSummaryDTO> users;
+    private List<Long> missingIds;
+    private List<String> missingUsernames;
+}
@@ -1,26 +1,51 @@
 package com.realbeatz.user;
 
 import com.realbeatz.exceptions.InvalidUserIdException;
+import com.realbeatz.exceptions.InvalidUserInputException;
 import com.realbeatz.exceptions.InvalidUsernameException;
+import com.realbeatz.payloads.requests.UserBatchRequest;
 import com.realbeatz.payloads.responses.ErrorMessage;
 import com.realbeatz.post.PostDTO;
 import com.realbeatz.post.PostService;
+import com.realbeatz.user.profile.ProfilePictureCache;
+import com.realbeatz.user.profile.ProfilePictureCache.CachedPicture;
+import com.realbeatz.user.profile.ProfilePictureCacheStats;
+import com.realbeatz.user.profile.ProfilePictureThumbnails;
+import com.realbeatz.utils.ETagUtils;
+import com.realbeatz.utils.ETagUtils.Tagged;
 import com.realbeatz.utils.FileUtils;
+import com.realbeatz.utils.PaginationUtils.CursorPage;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
-
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.realbeatz.configs.FileUploadConfig.getDefaultProfilePicFullName;
+import static com.realbeatz.user.profile.ProfilePictureThumbnails.thumbnailPath;
+import static com.realbeatz.utils.CustomHeaders.NEXT_CURSOR;
+import static com.realbeatz.utils.FileResponseUtils.IMMUTABLE;
+import static com.realbeatz.utils.FileResponseUtils.toBufferResponse;
+import static com.realbeatz.utils.FileResponseUtils.toFileResponse;
 import static com.realbeatz.utils.HttpRequestUtils.getUsernameFromRequest;
+import static com.realbeatz.utils.PaginationUtils.toResponse;
+import static com.realbeatz.utils.StreamingUtils.toNdjsonResponse;
 
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {NEXT_CURSOR, HttpHeaders.ETAG})
 @RestController
 @AllArgsConstructor
 @Slf4j
@@ -29,28 +54,118 @@ public class UserController {
 
     private final UserService userService;
     private final PostService postService;
+    private final ObjectMapper objectMapper;
+    private final ProfilePictureThumbnails thumbnails;
+    private final ProfilePictureCache pictureCache;
 
 
     // todo: move to admin controller
     @GetMapping("/all")
     @PreAuthorize("hasAnyAuthority('user:read','admin:read')")
-    public ResponseEntity<?> getAllUsers() {
-        log.info("Fetching all users");
-        return ResponseEntity.ok(userService.getAllUserDTOs());
+    public ResponseEntity<?> getAllUsers(
+            @RequestParam(value = "view", required = false) String view,
+            @RequestParam(value = "fields", required = false) String fields) {
+        log.info("Fetching all users, view: {}, fields: {}", view, fields);
+        try {
+            return ResponseEntity.ok(userService.getAllUserDTOs(UserField.parse(view, fields)));
+        } catch (InvalidUserInputException e) {
+            log.error("Error fetching all users", e);
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(ErrorMessage.of(e.getMessage()));
+        }
+    }
+
+    /**
+     * Streams every user as newline delimited JSON, used instead of
+     * getAllUsers when the client accepts application/x-ndjson
+     */
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAnyAuthority('user:read','admin:read')")
+    public ResponseEntity<?> streamAllUsers(
+            @RequestParam(value = "view", required = false) String view,
+            @RequestParam(value = "fields", required = false) String fields) {
+        log.info("Streaming all users, view: {}, fields: {}", view, fields);
+        try {
+            Set<UserField> userFields = UserField.parse(view, fields);
+            return toNdjsonResponse(objectMapper,
+                    consumer -> userService.streamAllUserDTOs(userFields, consumer));
+        } catch (InvalidUserInputException e) {
+            log.error("Error streaming all users", e);
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(ErrorMessage.of(e.getMessage()));
+        }
+    }
+
+    /**
+     * Returns the hit and miss counts of the cache used to identify users by username or id
+     */
+    @GetMapping("/identity-cache/stats")
+    @PreAuthorize("hasAuthority('admin:read')")
+    public ResponseEntity<UserIdentityCacheStats> getUserIdentityCacheStats() {
+        return ResponseEntity.ok(userService.getUserIdentityCacheStats());
+    }
+
+    /**
+     * Suggests users while a name is being typed
+     *
+     * @param prefix start of a username, first name, last name or full name (Ex. 'taylor sw')
+     * @param limit  max number of users returned
+     */
+    @GetMapping("/search")
+    @PreAuthorize("hasAnyAuthority('user:read','admin:read')")
+    public ResponseEntity<?> searchUsers(
+            @RequestParam(value = "prefix") String prefix,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        log.info("Searching users with prefix: {}, limit: {}", prefix, limit);
+        try {
+            return ResponseEntity.ok(userService.searchUsers(prefix, limit));
+        } catch (InvalidUserInputException e) {
+            log.error("Error searching users with prefix: {}", prefix, e);
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(ErrorMessage.of(e.getMessage()));
+        }
+    }
+
+    /**
+     * Returns the summary of every user requested keyed by id, used instead of
+     * fetching unknown users one by one (Ex. the members of a group chat).
+     * Ids and usernames not found are listed apart in the response
+     */
+    @PostMapping("/batch")
+    @PreAuthorize("hasAnyAuthority('user:read','admin:read')")
+    public ResponseEntity<?> getUsersInBatch(@RequestBody UserBatchRequest requestBody) {
+        log.info("Fetching users with ids: {} and usernames: {}",
+                requestBody.getIds(), requestBody.getUsernames());
+        try {
+            return ResponseEntity.ok(userService.getUserSummaries(requestBody));
+        } catch (InvalidUserInputException e) {
+            log.error("Error fetching users in batch", e);
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(ErrorMessage.of(e.getMessage()));
+        }
     }
 
     @GetMapping
     @PreAuthorize("hasAnyAuthority('user:read','admin:read')")
-    public ResponseEntity<?> getUserByJwtCredentials(HttpServletRequest request) {
+    public ResponseEntity<?> getUserByJwtCredentials(
+            HttpServletRequest request,
+            @RequestParam(value = "view", required = false) String view,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         String username = getUsernameFromRequest(request);
         log.info("Fetching user with username: {}", username);
 
         // return dto version of user if indicated
         try {
 
-            return ResponseEntity.ok(userService.getUserDTObyUsername(username));
+            Set<UserField> userFields = UserField.parse(view, fields);
+            return ETagUtils.toResponse(userService.getUserDTObyUsername(username, userFields, ifNoneMatch));
 
-        } catch (InvalidUsernameException e) {
+        } catch (InvalidUsernameException | InvalidUserInputException e) {
             log.error("Error getting user with username: {}", username, e);
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
@@ -63,6 +178,8 @@ public class UserController {
      *
      * @param userInfo   username or user id
      * @param isUsername flag to determine whether username or user id is being requested
+     * @param view       'summary' for only the user and profile, 'full' (default) for every collection
+     * @param fields     comma separated collections to include (Ex. 'friends,posts'), overrides the view
      * @return UserDTO requested
      */
     @GetMapping("/{userInfo}")
@@ -72,15 +189,19 @@ public class UserController {
             @RequestParam(
                     value = "isUsername",
                     defaultValue = "false",
-                    required = false) Boolean isUsername) {
+                    required = false) Boolean isUsername,
+            @RequestParam(value = "view", required = false) String view,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         // Get UserDTO by username
         if (isUsername) {
             log.info("Fetching user with username: {}", userInfo);
             try {
-                UserDTO userDTO = userService.getUserDTObyUsername(userInfo);
-                return ResponseEntity.ok(userDTO);
-            } catch (InvalidUsernameException e) {
+                Set<UserField> userFields = UserField.parse(view, fields);
+                Tagged<UserDTO> userDTO = userService.getUserDTObyUsername(userInfo, userFields, ifNoneMatch);
+                return ETagUtils.toResponse(userDTO);
+            } catch (InvalidUsernameException | InvalidUserInputException e) {
                 log.error("Error fetching user with username: {}", userInfo, e);
                 return ResponseEntity
                         .status(HttpStatus.BAD_REQUEST)
@@ -91,9 +212,10 @@ public class UserController {
             Long userId = Long.valueOf(userInfo);
             log.info("Fetching user with id: {}", userId);
             try {
-                UserDTO userDTO = userService.getUserDTOById(userId);
-                return ResponseEntity.ok(userDTO);
-            } catch (InvalidUserIdException e) {
+                Set<UserField> userFields = UserField.parse(view, fields);
+                Tagged<UserDTO> userDTO = userService.getUserDTOById(userId, userFields, ifNoneMatch);
+                return ETagUtils.toResponse(userDTO);
+            } catch (InvalidUserIdException | InvalidUserInputException e) {
                 log.error("Error fetching user with id: {}", userId, e);
                 return ResponseEntity
                         .status(HttpStatus.BAD_REQUEST)
@@ -172,17 +294,20 @@ public class UserController {
     @GetMapping("/posts")
     @PreAuthorize("hasAnyAuthority('user:read', 'admin:read')")
     public ResponseEntity<?> getAllPostsByUser(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
             HttpServletRequest request) {
 
         String username = getUsernameFromRequest(request);
 
-        log.info("Getting all posts by user with id: {}", username);
+        log.info("Getting posts by user with username: {}, cursor: {}, limit: {}",
+                username, cursor, limit);
 
-        List<PostDTO> posts;
+        CursorPage<PostDTO> posts;
 
         try {
-            posts = postService.getAllPostsByUser(username);
-        } catch (InvalidUsernameException e) {
+            posts = postService.getPostsByUser(username, cursor, limit);
+        } catch (InvalidUsernameException | InvalidUserInputException e) {
             log.error("Error getting all posts by user with username: {}", username, e);
 
             return ResponseEntity
@@ -190,15 +315,76 @@ public class UserController {
                     .body(ErrorMessage.of(e.getMessage()));
         }
 
-        return ResponseEntity.ok(posts);
+        return toResponse(posts);
     }
 
-    @GetMapping(value = "/profile-pictures/{fileFullName}", produces = "multipart/form-data")
+    /**
+     * Serves a profile picture or one of its square thumbnails. Uploaded pictures
+     * never change since they are named after the hash of their content, so they
+     * may be cached for as long as clients want. The most requested pictures are
+     * served from memory
+     *
+     * @param fileFullName the file name (Ex. '<sha-256 of the picture>.png')
+     * @param size         width of the thumbnail wanted in pixels (Ex. 48), the original if absent
+     */
+    @GetMapping("/profile-pictures/{fileFullName}")
     public ResponseEntity<?> getProfilePic(
-            @PathVariable String fileFullName) throws IOException {
-        log.info("Fetching profile picture with file code: {}", fileFullName);
-        byte[] bytes = FileUtils.getProfilePictureAsBinary(fileFullName);
-        return ResponseEntity.ok(bytes);
+            @PathVariable String fileFullName,
+            @RequestParam(value = "size", required = false) Integer size,
+            HttpServletRequest request) throws IOException {
+        log.info("Fetching profile picture with file code: {}, size: {}", fileFullName, size);
+        Optional<Path> picture = FileUtils.getProfilePicturePath(fileFullName);
+        if (picture.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (size != null) {
+            try {
+                ProfilePictureThumbnails.checkSize(size);
+            } catch (InvalidUserInputException e) {
+                log.error("Error fetching profile picture: {} with size: {}", fileFullName, size, e);
+                return ResponseEntity
+                        .status(HttpStatus.BAD_REQUEST)
+                        .body(ErrorMessage.of(e.getMessage()));
+            }
+        }
+
+        // the default picture keeps its name when it is replaced
+        String cacheControl = fileFullName.equals(getDefaultProfilePicFullName()) ?
+                CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic().getHeaderValue() :
+                IMMUTABLE;
+
+        Path file = size == null ? picture.get() : thumbnailPath(picture.get(), size);
+        Optional<CachedPicture> cached = pictureCache.getIfPresent(file);
+        if (cached.isEmpty()) {
+            if (!Files.isRegularFile(picture.get())) {
+                return ResponseEntity.notFound().build();
+            }
+            if (size != null) {
+                try {
+                    file = thumbnails.getThumbnail(picture.get(), size);
+                } catch (IOException e) {
+                    log.error("Error generating thumbnail of profile picture: {}, serving the original", fileFullName, e);
+                    file = picture.get();
+                    // revalidated so clients get the thumbnail once it can be made
+                    cacheControl = CacheControl.noCache().getHeaderValue();
+                }
+            }
+            cached = pictureCache.load(file);
+        }
+
+        if (cached.isEmpty()) {
+            return toFileResponse(file, cacheControl, request);
+        }
+        return toBufferResponse(cached.get().content(), file.getFileName().toString(),
+                cached.get().lastModified(), cacheControl, request);
     }
-}
 
+    /**
+     * Returns the hit and miss counts and the memory used by the cache of profile pictures
+     */
+    @GetMapping("/profile-picture-cache/stats")
+    @PreAuthorize("hasAuthority('admin:read')")
+    public ResponseEntity<ProfilePictureCacheStats> getProfilePictureCacheStats() {
+        return ResponseEntity.ok(pictureCache.getStats());
+    }
+}
@@ -1,9 +1,12 @@
 package com.realbeatz.user;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.realbeatz.groupchat.GroupChat;
 import com.realbeatz.post.PostDTO;
+import com.realbeatz.post.PostView;
 import com.realbeatz.user.friends.FriendRequestDTO;
-import com.realbeatz.user.profile.UserProfile;
+import com.realbeatz.user.friends.FriendRequestView;
+import com.realbeatz.user.profile.ProfileDTO;
 import lombok.Builder;
 import lombok.Data;
 
@@ -16,15 +19,24 @@ public class UserDTO {
     private Long id;
     private String username;
     private LocalDate registrationDate;
-    private UserProfile profile;
+    private ProfileDTO profile;
+    // collections are left out of the json when they weren't requested
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<String> friends;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<String> groupChats;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<PostDTO> posts;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<FriendRequestDTO> friendRequestsSent;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<FriendRequestDTO> friendRequestsReceived;
 
+    /**
+     * Maps a user by walking its associations, only use when the user entity
+     * and its associations are already loaded (Ex. members of a group chat)
+     */
     public static UserDTO map(User user) {
-        // todo: change into something that includes user ids
         List<String> friendUsernames = user.getFriends().stream()
                 .map(User::getUsername)
                 .toList();
@@ -34,29 +46,42 @@ public class UserDTO {
                 .toList();
 
         List<PostDTO> posts = user.getPosts().stream()
-                .map(PostDTO::map)
+                .map(post -> PostDTO.map(PostView.of(post)))
                 .toList();
 
-        List<FriendRequestDTO> friendRequestsSentDTOs =
-                user.getFriendRequestsSent().stream()
-                        .map(FriendRequestDTO::map)
-                        .toList();
+        List<FriendRequestDTO> friendRequestsSent = user.getFriendRequestsSent().stream()
+                .map(request -> FriendRequestDTO.map(FriendRequestView.of(request)))
+                .toList();
+
+        List<FriendRequestDTO> friendRequestsReceived = user.getFriendRequestsReceived().stream()
+                .map(request -> FriendRequestDTO.map(FriendRequestView.of(request)))
+                .toList();
 
-        List<FriendRequestDTO> friendRequestsReceivedDTOs =
-                user.getFriendRequestsReceived().stream()
-                        .map(FriendRequestDTO::map)
-                        .toList();
+        return map(UserView.of(user), friendUsernames, groupChatNames,
+                posts, friendRequestsSent, friendRequestsReceived);
+    }
 
+    /**
+     * Maps a user along with everything related to them, each
+     * already fetched and mapped, or null when not requested
+     */
+    public static UserDTO map(UserView user,
+                              List<String> friendUsernames,
+                              List<String> groupChatNames,
+                              List<PostDTO> posts,
+                              List<FriendRequestDTO> friendRequestsSent,
+                              List<FriendRequestDTO> friendRequestsReceived) {
+        // todo: change friends into something that includes user ids
         return UserDTO.builder()
-                .id(user.getId())
-                .username(user.getUsername())
-                .registrationDate(user.getRegistrationDate())
-                .profile(user.getProfile())
+                .id(user.id())
+                .username(user.username())
+                .registrationDate(user.registrationDate())
+                .profile(ProfileDTO.map(user))
                 .friends(friendUsernames)
                 .groupChats(groupChatNames)
                 .posts(posts)
-                .friendRequestsSent(friendRequestsSentDTOs)
-                .friendRequestsReceived(friendRequestsReceivedDTOs)
+                .friendRequestsSent(friendRequestsSent)
+                .friendRequestsReceived(friendRequestsReceived)
                 .build();
     }
 }
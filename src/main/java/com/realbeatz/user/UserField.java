@@ -0,0 +1,65 @@
+package com.realbeatz.user;
+
+import com.realbeatz.exceptions.InvalidUserInputException;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The collections of a {@link UserDTO} that can be left out of a response.
+ * Collections that aren't requested are neither queried nor mapped
+ */
+public enum UserField {
+    FRIENDS("friends"),
+    GROUP_CHATS("groupChats"),
+    POSTS("posts"),
+    FRIEND_REQUESTS_SENT("friendRequestsSent"),
+    FRIEND_REQUESTS_RECEIVED("friendRequestsReceived");
+
+    public static final Set<UserField> SUMMARY = Collections.unmodifiableSet(EnumSet.noneOf(UserField.class));
+    public static final Set<UserField> FULL = Collections.unmodifiableSet(EnumSet.allOf(UserField.class));
+
+    // name of the field in the json of a UserDTO
+    private final String jsonName;
+
+    UserField(String jsonName) {
+        this.jsonName = jsonName;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    /**
+     * Returns the collections requested through the view and fields parameters.
+     * A comma separated list of fields (Ex. 'friends,posts') is used as is,
+     * otherwise the view is either 'summary' with no collections or 'full' with all
+     *
+     * @param view   'summary' or 'full', defaults to 'full'
+     * @param fields json names of the collections wanted, overrides the view
+     */
+    public static Set<UserField> parse(String view, String fields) throws InvalidUserInputException {
+        if (fields != null) {
+            Set<UserField> requested = EnumSet.noneOf(UserField.class);
+            for (String name : fields.split(",")) {
+                if (name.isBlank()) continue;
+                requested.add(fromJsonName(name.trim()));
+            }
+            return requested;
+        }
+
+        if (view == null || view.equalsIgnoreCase("full")) return FULL;
+        if (view.equalsIgnoreCase("summary")) return SUMMARY;
+        throw new InvalidUserInputException(
+                "View: " + view + " is not valid");
+    }
+
+    private static UserField fromJsonName(String name) throws InvalidUserInputException {
+        for (UserField field : values()) {
+            if (field.jsonName.equals(name)) return field;
+        }
+        throw new InvalidUserInputException(
+                "Field: " + name + " is not valid");
+    }
+}
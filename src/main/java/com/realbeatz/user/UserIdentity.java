@@ -0,0 +1,21 @@
+package com.realbeatz.user;
+
+import com.realbeatz.security.auth.roles.UserRole;
+
+/**
+ * The few columns of a user most requests need to identify them,
+ * small enough to be cached for every active user
+ */
+public record UserIdentity(Long id,
+                           String username,
+                           UserRole role,
+                           String profilePictureFullName) {
+
+    public static UserIdentity of(User user) {
+        return new UserIdentity(
+                user.getId(),
+                user.getUsername(),
+                user.getRole(),
+                user.getProfile().getProfilePictureFullName());
+    }
+}
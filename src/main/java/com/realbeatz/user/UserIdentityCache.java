@@ -0,0 +1,105 @@
+package com.realbeatz.user;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of {@link UserIdentity} by username and by user id.
+ * Entries are evicted once the cache is full or after a fixed time, and
+ * are invalidated whenever the user is updated or deleted.
+ */
+@Component
+public class UserIdentityCache {
+
+    private final UserRepository userRepository;
+    private final Cache<String, UserIdentity> byUsername;
+    private final Cache<Long, UserIdentity> byId;
+    // bumped by every invalidation so lookups racing with it don't cache what they read
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public UserIdentityCache(UserRepository userRepository,
+                             @Value("${application.user-cache.maximumSize:10000}") long maximumSize,
+                             @Value("${application.user-cache.expireAfterWriteSeconds:300}") long expireAfterWriteSeconds) {
+        this.userRepository = userRepository;
+        this.byUsername = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(expireAfterWriteSeconds))
+                .recordStats()
+                .build();
+        this.byId = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(expireAfterWriteSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public Optional<UserIdentity> getByUsername(String username) {
+        UserIdentity cached = byUsername.getIfPresent(username);
+        if (cached != null) return Optional.of(cached);
+        return load(() -> userRepository.findIdentityByUsername(username));
+    }
+
+    public Optional<UserIdentity> getById(Long userId) {
+        UserIdentity cached = byId.getIfPresent(userId);
+        if (cached != null) return Optional.of(cached);
+        return load(() -> userRepository.findIdentityById(userId));
+    }
+
+    /**
+     * Drops a user from the cache now and again once the current
+     * transaction (if any) completes, so a lookup made before the
+     * change is committed can't put the old identity back
+     *
+     * @param username the user's username before the change
+     */
+    public void invalidate(Long userId, String username) {
+        evict(userId, username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(userId, username);
+                }
+            });
+        }
+    }
+
+    public UserIdentityCacheStats getStats() {
+        CacheStats stats = byUsername.stats().plus(byId.stats());
+        return UserIdentityCacheStats.builder()
+                .hits(stats.hitCount())
+                .misses(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictions(stats.evictionCount())
+                .usernameEntries(byUsername.size())
+                .idEntries(byId.size())
+                .build();
+    }
+
+    private Optional<UserIdentity> load(Supplier<Optional<UserIdentity>> query) {
+        long before = invalidations.get();
+        Optional<UserIdentity> identity = query.get();
+        identity.ifPresent(loaded -> {
+            if (invalidations.get() != before) return;
+            byUsername.put(loaded.username(), loaded);
+            byId.put(loaded.id(), loaded);
+        });
+        return identity;
+    }
+
+    private void evict(Long userId, String username) {
+        invalidations.incrementAndGet();
+        byUsername.invalidate(username);
+        byId.invalidate(userId);
+    }
+}
@@ -0,0 +1,16 @@
+package com.realbeatz.user;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class UserIdentityCacheStats {
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+    // identities cached by username and by id
+    private long usernameEntries;
+    private long idEntries;
+}
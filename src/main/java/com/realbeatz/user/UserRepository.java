@@ -1,22 +1,145 @@
 package com.realbeatz.user;
 
+import com.realbeatz.user.friends.Friendship;
+import com.realbeatz.user.search.FriendCount;
+import com.realbeatz.user.search.UserSearchDocument;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static com.realbeatz.utils.StreamingUtils.STREAM_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    String USER_VIEW = "select new com.realbeatz.user.UserView(" +
+            "u.id, u.username, u.registrationDate, " +
+            "p.id, p.lastName, p.firstName, p.dob, p.bio, p.profilePictureFullName) ";
+
+    String USER_IDENTITY = "select new com.realbeatz.user.UserIdentity(" +
+            "u.id, u.username, u.role, p.profilePictureFullName) " +
+            "from User u join u.profile p ";
+
+    String USER_SEARCH_DOCUMENT = "select new com.realbeatz.user.search.UserSearchDocument(" +
+            "u.id, u.username, p.firstName, p.lastName, p.profilePictureFullName) " +
+            "from User u join u.profile p ";
+
     Optional<User> findByUsername(String username);
 
+    @Query("select u.id from User u where u.username = ?1")
+    Optional<Long> findIdByUsername(String username);
+
+    @Query(USER_IDENTITY + "where u.username = ?1")
+    Optional<UserIdentity> findIdentityByUsername(String username);
+
+    @Query(USER_IDENTITY + "where u.id = ?1")
+    Optional<UserIdentity> findIdentityById(Long userId);
+
     Boolean existsByUsername(String username);
 
+    @Query(USER_VIEW + "from User u join u.profile p where u.id = ?1")
+    Optional<UserView> findViewById(Long userId);
+
+    @Query(USER_VIEW + "from User u join u.profile p where u.username = ?1")
+    Optional<UserView> findViewByUsername(String username);
+
+    @Query(USER_VIEW + "from User u join u.profile p where u.id in ?1")
+    List<UserView> findViewsByIdIn(Collection<Long> userIds);
+
+    @Query(USER_VIEW + "from User u join u.profile p")
+    List<UserView> findAllViews();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(USER_VIEW + "from User u join u.profile p order by u.id")
+    Stream<UserView> streamAllViews();
+
+    // the friends are aliased as u to reuse the user view
+    @Query(USER_VIEW + "from User f join f.friends u join u.profile p where f.id = ?1")
+    List<UserView> findFriendViewsByUserId(Long userId);
+
+    @Query("select f.id from User u join u.friends f where u.id = ?1")
+    List<Long> findFriendIds(Long userId);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(USER_SEARCH_DOCUMENT)
+    Stream<UserSearchDocument> streamSearchDocuments();
+
+    @Query(USER_SEARCH_DOCUMENT + "where u.id in ?1")
+    List<UserSearchDocument> findSearchDocumentsByIdIn(Collection<Long> userIds);
+
+    @Query(USER_SEARCH_DOCUMENT + "where u.username in ?1")
+    List<UserSearchDocument> findSearchDocumentsByUsernameIn(Collection<String> usernames);
+
+    @Query("select new com.realbeatz.user.search.FriendCount(u.id, count(f)) " +
+            "from User u join u.friends f group by u.id")
+    List<FriendCount> findFriendCounts();
+
+    @Query("select new com.realbeatz.user.NamedRelation(u.id, f.username) " +
+            "from User u join u.friends f where u.id in ?1")
+    List<NamedRelation> findFriendUsernamesByUserIdIn(Collection<Long> userIds);
+
+    @Query("select u.revision from User u where u.id = ?1")
+    Optional<Long> findRevisionById(Long userId);
+
+    @Query("select u.revision from User u where u.username = ?1")
+    Optional<Long> findRevisionByUsername(String username);
+
+    @Transactional
+    @Modifying
+    @Query("update User u set u.revision = u.revision + 1 where u.id in ?1")
+    int touch(Collection<Long> userIds);
+
+    /**
+     * Bumps the revision of a user and of everyone whose UserDTO shows the
+     * user's name or picture, their friends and the users they sent requests to
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update users set revision = revision + 1 where user_id = ?1 " +
+            "or user_id in (select f.friend_id from friends_of f where f.user_id = ?1) " +
+            "or user_id in (select r.new_friend_id from friend_requests r where r.requester_id = ?1)",
+            nativeQuery = true)
+    int touchWithRelated(Long userId);
+
     @Modifying
     @Query(value = "insert into friends_of values (?1, ?2);", nativeQuery = true)
     void addFriends(Long userId1, Long userId2);
 
+    @Modifying
+    @Query(value = "delete from friends_of where user_id = ?1 and friend_id = ?2", nativeQuery = true)
+    void deleteFriends(Long userId, Long friendId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from friends_of where user_id = ?1 or friend_id = ?1", nativeQuery = true)
+    int deleteAllFriendships(Long userId);
+
     void deleteByUsername(String username);
+
+    @Query(value = "select count(*) from friends_of where user_id = ?1", nativeQuery = true)
+    long countFriends(Long userId);
+
+    @Query("select case when count(f) > 0 then true else false end " +
+            "from User u join u.friends f where u.id = ?1 and f.id = ?2")
+    boolean existsFriendship(Long userId, Long friendId);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select new com.realbeatz.user.friends.Friendship(u.id, f.id) " +
+            "from User u join u.friends f order by u.id, f.id")
+    Stream<Friendship> streamFriendships();
+
+    @Query(value = "select f.friend_id from friends_of f where f.user_id = ?1 and " +
+            "(select count(*) from friends_of g where g.user_id = f.friend_id) > ?2",
+            nativeQuery = true)
+    List<Long> findFriendIdsWithMoreFriendsThan(Long userId, long threshold);
 }
@@ -1,31 +1,52 @@
 package com.realbeatz.user;
 
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.realbeatz.exceptions.*;
+import com.realbeatz.groupchat.GroupChatRepository;
+import com.realbeatz.post.PostDTO;
+import com.realbeatz.post.PostMapper;
+import com.realbeatz.post.PostRepository;
+import com.realbeatz.payloads.requests.RegisterUserRequest;
+import com.realbeatz.payloads.requests.UserBatchRequest;
+import com.realbeatz.post.timeline.TimelineService;
 import com.realbeatz.security.auth.AuthUserDetails;
+import com.realbeatz.user.friends.FriendGraph;
+import com.realbeatz.user.friends.FriendRequestDTO;
+import com.realbeatz.user.friends.FriendRequestRepository;
+import com.realbeatz.user.friends.FriendRequestView;
+import com.realbeatz.user.profile.ProfilePicturePipeline;
+import com.realbeatz.user.profile.ProfilePicturePipeline.StagedPicture;
+import com.realbeatz.user.profile.ProfilePictureStore;
 import com.realbeatz.user.profile.UserProfile;
-import com.realbeatz.utils.UserUtils;
+import com.realbeatz.user.search.UserSearchDocument;
+import com.realbeatz.user.search.UserSearchIndex;
+import com.realbeatz.utils.ETagUtils.Tagged;
+import com.realbeatz.utils.FieldUpdaters;
 import lombok.AllArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.ReflectionUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.io.InputStream;
 import java.time.LocalDate;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.function.Predicate;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.realbeatz.configs.FileUploadConfig.getDefaultProfilePicFullName;
-import static com.realbeatz.configs.FileUploadConfig.getProfilePictureUploadDirectory;
 import static com.realbeatz.security.auth.roles.UserRole.USER;
-import static com.realbeatz.utils.FileUtils.saveProfilePicture;
-import static com.realbeatz.utils.ValidationUtils.validateField;
+import static com.realbeatz.user.UserField.*;
+import static com.realbeatz.utils.ETagUtils.matches;
+import static com.realbeatz.utils.ETagUtils.strongETag;
+import static com.realbeatz.utils.SearchUtils.*;
+import static com.realbeatz.utils.UserUtils.MAX_USERS_PER_BATCH;
+import static com.realbeatz.utils.UserUtils.USER_ACCOUNT_SCHEMA;
 
 @Service
 @AllArgsConstructor
@@ -33,22 +54,55 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TimelineService timelineService;
+    private final PostRepository postRepository;
+    private final PostMapper postMapper;
+    private final FriendRequestRepository friendRequestRepository;
+    private final GroupChatRepository groupChatRepository;
+    private final UserIdentityCache userIdentityCache;
+    private final UserSearchIndex userSearchIndex;
+    private final FriendGraph friendGraph;
+    private final ProfilePicturePipeline profilePicturePipeline;
+    private final ProfilePictureStore profilePictureStore;
     private final List<String> UPDATABLE_USER_FIELDS =
             List.of("username", "password");
     private final List<String> UPDATABLE_USER_PROFILE_FIELDS =
             List.of("lastName", "firstName", "dob", "bio");
+    private final FieldUpdaters<User> userUpdaters =
+            FieldUpdaters.of(User.class, UPDATABLE_USER_FIELDS);
+    private final FieldUpdaters<UserProfile> userProfileUpdaters =
+            FieldUpdaters.of(UserProfile.class, UPDATABLE_USER_PROFILE_FIELDS);
 
-    private final Map<String, Predicate<Object>> userAccountChecks =
-            UserUtils.getUserAccountChecks();
+    // max number of users whose related data is fetched with a single query
+    private static final int MAX_USERS_PER_QUERY = 500;
 
     public List<User> getAllUsers() {
         return userRepository.findAll();
     }
 
     public List<UserDTO> getAllUserDTOs() {
-        return userRepository.findAll().stream()
-                .map(UserDTO::map)
-                .toList();
+        return getAllUserDTOs(UserField.FULL);
+    }
+
+    /**
+     * Returns every user with only the collections requested
+     *
+     * @param fields collections included in each UserDTO
+     */
+    public List<UserDTO> getAllUserDTOs(Set<UserField> fields) {
+        return mapUsers(userRepository.findAllViews(), fields);
+    }
+
+    /**
+     * Same as {@link #getAllUserDTOs(Set)} but reads the users in chunks while they are
+     * being handed to the consumer, so only one chunk is held in memory at a time
+     */
+    @Transactional(readOnly = true)
+    public void streamAllUserDTOs(Set<UserField> fields, Consumer<? super UserDTO> consumer) {
+        try (Stream<UserView> users = userRepository.streamAllViews()) {
+            Iterators.partition(users.iterator(), MAX_USERS_PER_QUERY)
+                    .forEachRemaining(chunk -> mapUsers(chunk, fields).forEach(consumer));
+        }
     }
 
     public User getUserById(Long userId) throws InvalidUserIdException {
@@ -58,12 +112,35 @@ public class UserService {
                 ));
     }
 
+    /**
+     * Returns a user tagged with an ETag, or only the ETag when it matches the
+     * one the client sent, computed from the user's revision before any mapping
+     *
+     * @param fields      collections included in the UserDTO
+     * @param ifNoneMatch value of the If-None-Match header, null if absent
+     */
+    public Tagged<UserDTO> getUserDTOById(Long userId,
+                                          Set<UserField> fields,
+                                          @Nullable String ifNoneMatch) throws InvalidUserIdException {
+        Long revision = userRepository.findRevisionById(userId)
+                .orElseThrow(() -> new InvalidUserIdException(
+                        "User with id: " + userId + " doesn't exist"));
+
+        String etag = userETag(userId, revision, fields);
+        if (matches(ifNoneMatch, etag)) return Tagged.notModified(etag);
+        return new Tagged<>(etag, getUserDTOById(userId, fields));
+    }
+
     public UserDTO getUserDTOById(Long userId) throws InvalidUserIdException {
-        User user = userRepository
-                .findById(userId)
+        return getUserDTOById(userId, UserField.FULL);
+    }
+
+    public UserDTO getUserDTOById(Long userId, Set<UserField> fields) throws InvalidUserIdException {
+        UserView user = userRepository
+                .findViewById(userId)
                 .orElseThrow(() -> new InvalidUserIdException(
                         "User with id: " + userId + " doesn't exist"));
-        return UserDTO.map(user);
+        return mapUsers(List.of(user), fields).get(0);
     }
 
     public User getUserByUsername(String username) throws InvalidUsernameException {
@@ -72,12 +149,140 @@ public class UserService {
                         "User with username: " + username + " doesn't exist"));
     }
 
+    public Long getUserIdByUsername(String username) throws InvalidUsernameException {
+        return getUserIdentity(username).id();
+    }
+
+    /**
+     * Returns the id, username, role and profile picture of a user,
+     * usually from the cache without touching the database
+     */
+    public UserIdentity getUserIdentity(String username) throws InvalidUsernameException {
+        return userIdentityCache.getByUsername(username)
+                .orElseThrow(() -> new InvalidUsernameException(
+                        "User with username: " + username + " doesn't exist"));
+    }
+
+    public UserIdentity getUserIdentity(Long userId) throws InvalidUserIdException {
+        return userIdentityCache.getById(userId)
+                .orElseThrow(() -> new InvalidUserIdException(
+                        "User with id: " + userId + " doesn't exist"));
+    }
+
+    /**
+     * Suggests users whose username, first name, last name or full name
+     * starts with the prefix, users with the most friends first.
+     * Answered from memory without querying the database
+     *
+     * @param prefix what has been typed so far (Ex. 'tay')
+     * @param limit  max number of users returned
+     */
+    public List<UserSummaryDTO> searchUsers(String prefix, Integer limit) throws InvalidUserInputException {
+        if (normalize(prefix).isEmpty()) {
+            throw new InvalidUserInputException(
+                    "Search prefix: " + prefix + " is not valid");
+        }
+
+        int size = limit == null ?
+                DEFAULT_USER_SEARCH_RESULTS :
+                Math.max(1, Math.min(limit, MAX_USER_SEARCH_RESULTS));
+
+        return userSearchIndex.search(prefix, size).stream()
+                .map(UserSummaryDTO::map)
+                .toList();
+    }
+
+    /**
+     * Looks up many users at once, taking them from the user search index when
+     * indexed and fetching the rest with a single query for the ids and one for
+     * the usernames. Ids and usernames that don't match any user are returned
+     * apart instead of failing the whole lookup
+     *
+     * @param request ids and usernames of the users, at most {@link com.realbeatz.utils.UserUtils#MAX_USERS_PER_BATCH} in total
+     */
+    public UserBatchDTO getUserSummaries(UserBatchRequest request) throws InvalidUserInputException {
+        List<Long> userIds = distinct(request.getIds());
+        List<String> usernames = distinct(request.getUsernames());
+        if (userIds.size() + usernames.size() > MAX_USERS_PER_BATCH) {
+            throw new InvalidUserInputException(
+                    "Cannot look up more than " + MAX_USERS_PER_BATCH + " users at once");
+        }
+
+        Map<Long, UserSummaryDTO> users = new LinkedHashMap<>();
+        Consumer<UserSearchDocument> found = user -> users.put(user.userId(), UserSummaryDTO.map(user));
+
+        List<Long> notIndexedIds = new ArrayList<>();
+        for (Long userId : userIds) {
+            userSearchIndex.get(userId).ifPresentOrElse(found, () -> notIndexedIds.add(userId));
+        }
+        List<String> notIndexedUsernames = new ArrayList<>();
+        for (String username : usernames) {
+            userSearchIndex.get(username).ifPresentOrElse(found, () -> notIndexedUsernames.add(username));
+        }
+
+        if (!notIndexedIds.isEmpty()) {
+            userRepository.findSearchDocumentsByIdIn(notIndexedIds).forEach(found);
+        }
+        if (!notIndexedUsernames.isEmpty()) {
+            userRepository.findSearchDocumentsByUsernameIn(notIndexedUsernames).forEach(found);
+        }
+
+        Set<String> foundUsernames = users.values().stream()
+                .map(UserSummaryDTO::getUsername)
+                .collect(Collectors.toSet());
+
+        return UserBatchDTO.builder()
+                .users(users)
+                .missingIds(userIds.stream()
+                        .filter(userId -> !users.containsKey(userId))
+                        .toList())
+                .missingUsernames(usernames.stream()
+                        .filter(username -> !foundUsernames.contains(username))
+                        .toList())
+                .build();
+    }
+
+    private static <T> List<T> distinct(@Nullable List<T> values) {
+        if (values == null) return List.of();
+        return values.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+    }
+
+    public void checkUserExists(Long userId) throws InvalidUserIdException {
+        getUserIdentity(userId);
+    }
+
+    public UserIdentityCacheStats getUserIdentityCacheStats() {
+        return userIdentityCache.getStats();
+    }
+
+    /**
+     * Same as {@link #getUserDTOById(Long, Set, String)} for a user found by username
+     */
+    public Tagged<UserDTO> getUserDTObyUsername(String username,
+                                                Set<UserField> fields,
+                                                @Nullable String ifNoneMatch) throws InvalidUsernameException {
+        Long revision = userRepository.findRevisionByUsername(username)
+                .orElseThrow(() -> new InvalidUsernameException(
+                        "User with username: " + username + " doesn't exist"));
+
+        String etag = userETag(username, revision, fields);
+        if (matches(ifNoneMatch, etag)) return Tagged.notModified(etag);
+        return new Tagged<>(etag, getUserDTObyUsername(username, fields));
+    }
+
     public UserDTO getUserDTObyUsername(String username) throws InvalidUsernameException {
-        User user = userRepository.findByUsername(username)
+        return getUserDTObyUsername(username, UserField.FULL);
+    }
+
+    public UserDTO getUserDTObyUsername(String username, Set<UserField> fields) throws InvalidUsernameException {
+        UserView user = userRepository.findViewByUsername(username)
                 .orElseThrow(() -> new InvalidUsernameException(
                         "User with username: " + username + " doesn't exist"));
 
-        return UserDTO.map(user);
+        return mapUsers(List.of(user), fields).get(0);
     }
 
     public UserDTO registerUser(String username,
@@ -88,47 +293,63 @@ public class UserService {
                                 String bio,
                                 @Nullable MultipartFile profilePictureFile) throws DuplicateUsernameException, InvalidUserInputException, IllegalFileTypeException, IOException {
 
-        if (userRepository.existsByUsername(username)) {
-            throw new DuplicateUsernameException(
-                    "Username: " + username + " is already taken");
+        RegisterUserRequest request =
+                new RegisterUserRequest(username, password, lastName, firstName, dob, bio);
+        StagedPicture profilePicture = null;
+        if (profilePictureFile != null) {
+            try (InputStream content = profilePictureFile.getInputStream()) {
+                profilePicture = profilePicturePipeline.stage(content, profilePictureFile.getOriginalFilename());
+            }
         }
+        return registerUser(request, profilePicture);
+    }
 
-        Map<String, Object> userInputs = new HashMap<>();
-        userInputs.put("username", username);
-        userInputs.put("password", password);
-        userInputs.put("lastName", lastName);
-        userInputs.put("firstName", firstName);
-        userInputs.put("dob", dob);
-        userInputs.put("bio", bio);
-
-        for (Map.Entry<String, Object> entry : userInputs.entrySet()) {
-            String field = entry.getKey();
-            Object value = entry.getValue();
-            validateField(field, value, userAccountChecks);
+    /**
+     * Registers a new user. The user starts with the default profile picture,
+     * the one uploaded is swapped in once processed in the background, or
+     * discarded when the user can't be registered
+     *
+     * @param profilePicture the picture uploaded, staged while it was streamed
+     */
+    public UserDTO registerUser(RegisterUserRequest request,
+                                @Nullable StagedPicture profilePicture) throws DuplicateUsernameException, InvalidUserInputException {
+        boolean registered = false;
+        try {
+            UserDTO user = createUser(request);
+            if (profilePicture != null) {
+                profilePicturePipeline.submit(user.getId(), profilePicture);
+            }
+            registered = true;
+            return user;
+        } finally {
+            if (!registered && profilePicture != null) {
+                profilePicturePipeline.discard(profilePicture);
+            }
         }
+    }
 
-        String profilePictureFullName;
-        // save the picture uploaded if exists else set to default profile picture
-        if (profilePictureFile != null) {
-            profilePictureFullName = saveProfilePicture(profilePictureFile, getProfilePictureUploadDirectory());
-        } else {
-            profilePictureFullName = getDefaultProfilePicFullName();
+    private UserDTO createUser(RegisterUserRequest request) throws DuplicateUsernameException, InvalidUserInputException {
+        USER_ACCOUNT_SCHEMA.check(request);
+
+        if (userRepository.existsByUsername(request.getUsername())) {
+            throw new DuplicateUsernameException(
+                    "Username: " + request.getUsername() + " is already taken");
         }
 
         User newUser = User.builder()
-                .username(username)
-                .password(passwordEncoder.encode(password))
+                .username(request.getUsername())
+                .password(passwordEncoder.encode(request.getPassword()))
                 .registrationDate(LocalDate.now())
                 .role(USER)
                 .build();
 
         UserProfile newUserProfile = UserProfile.builder()
                 .user(newUser)
-                .lastName(lastName)
-                .firstName(firstName)
-                .dob(dob)
-                .bio((bio == null) ? "" : bio)
-                .profilePictureFullName(profilePictureFullName)
+                .lastName(request.getLastName())
+                .firstName(request.getFirstName())
+                .dob(request.getDob())
+                .bio((request.getBio() == null) ? "" : request.getBio())
+                .profilePictureFullName(getDefaultProfilePicFullName())
                 .build();
 
         AuthUserDetails authUserDetails = AuthUserDetails.builder()
@@ -139,27 +360,52 @@ public class UserService {
         newUser.setAuthUserDetails(authUserDetails);
 
         userRepository.save(newUser);
-        return UserDTO.map(newUser);
+        userSearchIndex.index(UserSearchDocument.of(newUser));
+        return mapUser(UserView.of(newUser));
     }
 
+    @Transactional
     public void deleteUser(Long userId) throws InvalidUserIdException {
-        if (!userRepository.existsById(userId)) {
-            throw new InvalidUserIdException(
-                    "User with id: " + userId + " doesn't exist");
-        }
+        UserIdentity user = userRepository.findIdentityById(userId)
+                .orElseThrow(() -> new InvalidUserIdException(
+                        "User with id: " + userId + " doesn't exist"));
+        userIdentityCache.invalidate(userId, user.username());
+        userRepository.touchWithRelated(userId);
+        removeRelations(userId);
         userRepository.deleteById(userId);
+        profilePictureStore.release(user.profilePictureFullName());
     }
 
     @Transactional
     public void deleteUser(String username) throws InvalidUserIdException {
-        if (!userRepository.existsByUsername(username)) {
-            throw new InvalidUserIdException(
-                    "User with username: " + username + " doesn't exist");
-        }
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new InvalidUserIdException(
+                        "User with username: " + username + " doesn't exist"));
+        userIdentityCache.invalidate(user.getId(), username);
+        userRepository.touchWithRelated(user.getId());
+        removeRelations(user.getId());
         userRepository.deleteByUsername(username);
+        profilePictureStore.release(user.getProfile().getProfilePictureFullName());
+    }
+
+    /**
+     * Drops the friendships and timeline entries of a user about to be
+     * deleted, along with the user's place in the in memory indexes
+     */
+    private void removeRelations(Long userId) {
+        long[] friendIds = friendGraph.getFriendIds(userId);
+        userRepository.deleteAllFriendships(userId);
+        timelineService.removeUser(userId, friendIds);
+
+        // the friends of the user lose a friend along with the user
+        for (long friendId : friendIds) {
+            userSearchIndex.onFriendshipRemoved(userId, friendId);
+        }
+        userSearchIndex.remove(userId);
+        friendGraph.onUserDeleted(userId);
     }
 
-    public UserDTO updateUser(String username, Map<String, String> updates) throws InvalidUsernameException {
+    public UserDTO updateUser(String username, Map<String, String> updates) throws InvalidUsernameException, InvalidUserInputException {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new InvalidUsernameException(
                         "User with username: " + username + " doesn't exist"));
@@ -167,7 +413,7 @@ public class UserService {
         return updateUser(user, updates);
     }
 
-    public UserDTO updateUser(Long userId, Map<String, String> updates) throws InvalidUserIdException {
+    public UserDTO updateUser(Long userId, Map<String, String> updates) throws InvalidUserIdException, InvalidUserInputException {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new InvalidUserIdException(
                         "User with id: " + userId + " doesn't exist"));
@@ -175,30 +421,33 @@ public class UserService {
         return updateUser(user, updates);
     }
 
-    public UserDTO updateUser(User user, Map<String, String> updates) {
+    public UserDTO updateUser(User user, Map<String, String> updates) throws InvalidUserInputException {
 
         // filter out all fields that are not allowed or doesn't exist
         List<String> validKeys = updates.keySet().stream()
-                .filter(UPDATABLE_USER_FIELDS::contains)
+                .filter(userUpdaters::isUpdatable)
                 .toList();
+        USER_ACCOUNT_SCHEMA.checkUpdates(updates, validKeys);
+        // the username may be changed, drop the identity cached under the old one
+        userIdentityCache.invalidate(user.getId(), user.getUsername());
 
         // update values for each field
-        validKeys.forEach(key -> {
-            Field field = ReflectionUtils.findField(User.class, key);
-            Objects.requireNonNull(field).setAccessible(true);
-
+        for (String key : validKeys) {
             String value = updates.get(key);
             if (key.equals("password")) {
                 value = passwordEncoder.encode(value);
             }
-            ReflectionUtils.setField(field, user, value);
-        });
+            userUpdaters.update(user, key, value);
+        }
 
         userRepository.save(user);
-        return UserDTO.map(user);
+        userRepository.touchWithRelated(user.getId());
+        userIdentityCache.invalidate(user.getId(), user.getUsername());
+        userSearchIndex.index(UserSearchDocument.of(user));
+        return mapUser(UserView.of(user));
     }
 
-    public UserDTO updateUserProfile(String username, Map<String, String> updates) throws InvalidUsernameException {
+    public UserDTO updateUserProfile(String username, Map<String, String> updates) throws InvalidUsernameException, InvalidUserInputException {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new InvalidUsernameException(
                         "User with username: " + username + " doesn't exist"));
@@ -206,7 +455,7 @@ public class UserService {
         return updateUserProfile(user, updates);
     }
 
-    public UserDTO updateUserProfile(Long userId, Map<String, String> updates) throws InvalidUserIdException {
+    public UserDTO updateUserProfile(Long userId, Map<String, String> updates) throws InvalidUserIdException, InvalidUserInputException {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new InvalidUserIdException(
                         "User with id: " + userId + " doesn't exist"));
@@ -214,32 +463,119 @@ public class UserService {
         return updateUserProfile(user, updates);
     }
 
-    public UserDTO updateUserProfile(User user, Map<String, String> updates) {
+    public UserDTO updateUserProfile(User user, Map<String, String> updates) throws InvalidUserInputException {
 
         UserProfile profile = user.getProfile();
 
         // filter out all fields that are not allowed or doesn't exist
         List<String> validKeys = updates.keySet().stream()
-                .filter(UPDATABLE_USER_PROFILE_FIELDS::contains)
+                .filter(userProfileUpdaters::isUpdatable)
                 .toList();
+        USER_ACCOUNT_SCHEMA.checkUpdates(updates, validKeys);
 
-        // update values for each field
-        validKeys.forEach(key -> {
-            Field field = ReflectionUtils.findField(UserProfile.class, key);
-            Objects.requireNonNull(field).setAccessible(true);
-            String value = updates.get(key);
-            // todo: make this look less disgusting
-            if (key.equals("dob")) {
-                ReflectionUtils.setField(field, profile, LocalDate.parse(value));
-            } else {
-                ReflectionUtils.setField(field, profile, value);
-            }
-        });
+        // update values for each field, converted to the type of the field (Ex. dob)
+        for (String key : validKeys) {
+            userProfileUpdaters.update(profile, key, updates.get(key));
+        }
 
         userRepository.save(user);
-        return UserDTO.map(user);
+        userRepository.touchWithRelated(user.getId());
+        userIdentityCache.invalidate(user.getId(), user.getUsername());
+        userSearchIndex.index(UserSearchDocument.of(user));
+        return mapUser(UserView.of(user));
+    }
+
+
+    /**
+     * Bumps the revision of users whose UserDTO changed, so
+     * the ETags handed out for them stop matching
+     */
+    public void touchUsers(Collection<Long> userIds) {
+        if (userIds.isEmpty()) return;
+        userRepository.touch(userIds);
+    }
+
+    private static String userETag(Object userKey, Long revision, Set<UserField> fields) {
+        // the age shown in the profile changes with the date
+        return strongETag("user", userKey, revision, fields, LocalDate.now());
+    }
+
+    /**
+     * Returns every friend of a user, mapped the same way as the user
+     */
+    public List<UserDTO> getFriendDTOs(Long userId) {
+        return mapUsers(userRepository.findFriendViewsByUserId(userId));
     }
 
+    private UserDTO mapUser(UserView user) {
+        return mapUsers(List.of(user), UserField.FULL).get(0);
+    }
+
+    private List<UserDTO> mapUsers(List<UserView> users) {
+        return mapUsers(users, UserField.FULL);
+    }
+
+    /**
+     * Maps users along with the friends, group chats, posts and friend requests
+     * requested, fetching each of those for a whole chunk of users with a single
+     * query instead of walking the associations of every user. Collections not
+     * requested are never queried and left null
+     */
+    private List<UserDTO> mapUsers(List<UserView> users, Set<UserField> fields) {
+        return Lists.partition(users, MAX_USERS_PER_QUERY).stream()
+                .flatMap(chunk -> {
+                    List<Long> userIds = chunk.stream()
+                            .map(UserView::id)
+                            .toList();
+
+                    Map<Long, List<String>> friendUsernames = fields.contains(FRIENDS) ?
+                            groupNames(userRepository.findFriendUsernamesByUserIdIn(userIds)) : null;
+                    Map<Long, List<String>> groupChatNames = fields.contains(GROUP_CHATS) ?
+                            groupNames(groupChatRepository.findChatNamesByMemberIdIn(userIds)) : null;
+                    // posts are mapped as in the feed, with their newest comments and unflushed likes
+                    Map<Long, List<PostDTO>> posts = fields.contains(POSTS) ?
+                            groupBy(postMapper.map(postRepository.findViewsByCreatorIdIn(userIds), null),
+                                    PostDTO::getUserId, Function.identity()) : null;
+                    Map<Long, List<FriendRequestDTO>> friendRequestsSent = fields.contains(FRIEND_REQUESTS_SENT) ?
+                            groupBy(friendRequestRepository.findViewsByRequesterIdIn(userIds),
+                                    FriendRequestView::requesterId, FriendRequestDTO::map) : null;
+                    Map<Long, List<FriendRequestDTO>> friendRequestsReceived = fields.contains(FRIEND_REQUESTS_RECEIVED) ?
+                            groupBy(friendRequestRepository.findViewsByNewFriendIdIn(userIds),
+                                    FriendRequestView::newFriendId, FriendRequestDTO::map) : null;
+
+                    return chunk.stream()
+                            .map(user -> UserDTO.map(
+                                    user,
+                                    related(friendUsernames, user.id()),
+                                    related(groupChatNames, user.id()),
+                                    related(posts, user.id()),
+                                    related(friendRequestsSent, user.id()),
+                                    related(friendRequestsReceived, user.id())));
+                })
+                .toList();
+    }
+
+    /**
+     * Returns what is related to a user, null if it wasn't requested
+     */
+    @Nullable
+    private static <T> List<T> related(@Nullable Map<Long, List<T>> byUserId, Long userId) {
+        if (byUserId == null) return null;
+        return byUserId.getOrDefault(userId, List.of());
+    }
+
+    private static Map<Long, List<String>> groupNames(List<NamedRelation> relations) {
+        return groupBy(relations, NamedRelation::userId, NamedRelation::name);
+    }
+
+    private static <T, R> Map<Long, List<R>> groupBy(List<T> items,
+                                                     Function<T, Long> userId,
+                                                     Function<T, R> mapper) {
+        return items.stream()
+                .collect(Collectors.groupingBy(
+                        userId,
+                        Collectors.mapping(mapper, Collectors.toList())));
+    }
 
     @SuppressWarnings("all")
     public User save(User user) {
@@ -0,0 +1,28 @@
+package com.realbeatz.user;
+
+import com.realbeatz.user.search.UserSearchDocument;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The few fields needed to show a user in a list (Ex. search suggestions)
+ */
+@Data
+@Builder
+public class UserSummaryDTO {
+    private Long id;
+    private String username;
+    private String firstName;
+    private String lastName;
+    private String profilePictureFullName;
+
+    public static UserSummaryDTO map(UserSearchDocument user) {
+        return UserSummaryDTO.builder()
+                .id(user.userId())
+                .username(user.username())
+                .firstName(user.firstName())
+                .lastName(user.lastName())
+                .profilePictureFullName(user.profilePictureFullName())
+                .build();
+    }
+}
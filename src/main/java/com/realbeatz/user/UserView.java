@@ -0,0 +1,34 @@
+package com.realbeatz.user;
+
+import com.realbeatz.user.profile.UserProfile;
+
+import java.time.LocalDate;
+
+/**
+ * Read model of a user and their profile, fetched with a single query
+ * instead of loading the user entity along with its eager associations
+ */
+public record UserView(Long id,
+                       String username,
+                       LocalDate registrationDate,
+                       Long profileId,
+                       String lastName,
+                       String firstName,
+                       LocalDate dob,
+                       String bio,
+                       String profilePictureFullName) {
+
+    public static UserView of(User user) {
+        UserProfile profile = user.getProfile();
+        return new UserView(
+                user.getId(),
+                user.getUsername(),
+                user.getRegistrationDate(),
+                profile.getId(),
+                profile.getLastName(),
+                profile.getFirstName(),
+                profile.getDob(),
+                profile.getBio(),
+                profile.getProfilePictureFullName());
+    }
+}
@@ -0,0 +1,187 @@
+package com.realbeatz.user.friends;
+
+import java.util.Arrays;
+
+/**
+ * Adjacency lists of the friend graph held in primitive arrays: an open
+ * addressing table from a user id to the sorted ids of their friends, so
+ * neither ids nor lists are boxed and a membership test is a binary search.
+ * Not thread safe, guarded by the lock of {@link FriendGraph}.
+ */
+final class FriendAdjacency {
+
+    // user ids are generated starting from 1, 0 marks a free slot
+    private static final long FREE = 0;
+    private static final long[] NO_FRIENDS = new long[0];
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] userIds;
+    private long[][] friendIds;
+    // number of friends of each user, the end of the used part of their list
+    private int[] degrees;
+    private int users;
+    private long friendships;
+
+    FriendAdjacency(long expectedUsers) {
+        allocate(capacityFor(expectedUsers));
+    }
+
+    boolean contains(long userId, long friendId) {
+        int slot = slotOf(userId);
+        return slot >= 0 && Arrays.binarySearch(friendIds[slot], 0, degrees[slot], friendId) >= 0;
+    }
+
+    int degree(long userId) {
+        int slot = slotOf(userId);
+        return slot < 0 ? 0 : degrees[slot];
+    }
+
+    /**
+     * @return the ids of the friends of the user in ascending order
+     */
+    long[] friendsOf(long userId) {
+        int slot = slotOf(userId);
+        return slot < 0 ? NO_FRIENDS : Arrays.copyOf(friendIds[slot], degrees[slot]);
+    }
+
+    /**
+     * @return false if the user already had the friend
+     */
+    boolean add(long userId, long friendId) {
+        if (userId <= 0 || friendId <= 0) {
+            throw new IllegalArgumentException("Not a user id: " + (userId <= 0 ? userId : friendId));
+        }
+        int slot = slotOrInsert(userId);
+        long[] friends = friendIds[slot];
+        int degree = degrees[slot];
+
+        // friendships are mostly loaded in ascending order, appended without searching
+        int i = degree == 0 || friends[degree - 1] < friendId ?
+                -degree - 1 : Arrays.binarySearch(friends, 0, degree, friendId);
+        if (i >= 0) return false;
+
+        int insertAt = -i - 1;
+        if (degree == friends.length) {
+            friends = Arrays.copyOf(friends, Math.max(4, degree + (degree >> 1)));
+            friendIds[slot] = friends;
+        }
+        System.arraycopy(friends, insertAt, friends, insertAt + 1, degree - insertAt);
+        friends[insertAt] = friendId;
+        degrees[slot] = degree + 1;
+        friendships++;
+        return true;
+    }
+
+    /**
+     * @return false if the user didn't have the friend
+     */
+    boolean remove(long userId, long friendId) {
+        int slot = slotOf(userId);
+        if (slot < 0) return false;
+        long[] friends = friendIds[slot];
+        int degree = degrees[slot];
+        int i = Arrays.binarySearch(friends, 0, degree, friendId);
+        if (i < 0) return false;
+
+        System.arraycopy(friends, i + 1, friends, i, degree - i - 1);
+        degrees[slot] = degree - 1;
+        friendships--;
+        return true;
+    }
+
+    /**
+     * Drops every friend of a user. The user keeps their slot, emptied,
+     * since removing keys from a linear probing table means moving others
+     *
+     * @return the ids of the friends the user had
+     */
+    long[] removeAll(long userId) {
+        int slot = slotOf(userId);
+        if (slot < 0) return NO_FRIENDS;
+
+        long[] friends = Arrays.copyOf(friendIds[slot], degrees[slot]);
+        friendIds[slot] = NO_FRIENDS;
+        degrees[slot] = 0;
+        friendships -= friends.length;
+        return friends;
+    }
+
+    /**
+     * Frees the room lists kept to grow, once they are all loaded
+     */
+    void trim() {
+        for (int slot = 0; slot < userIds.length; slot++) {
+            if (friendIds[slot] != null && friendIds[slot].length > degrees[slot]) {
+                friendIds[slot] = degrees[slot] == 0 ? NO_FRIENDS : Arrays.copyOf(friendIds[slot], degrees[slot]);
+            }
+        }
+    }
+
+    int users() {
+        return users;
+    }
+
+    long friendships() {
+        return friendships;
+    }
+
+    private int slotOf(long userId) {
+        // would match the first free slot probed
+        if (userId == FREE) return -1;
+        int mask = userIds.length - 1;
+        for (int slot = hash(userId) & mask; ; slot = (slot + 1) & mask) {
+            if (userIds[slot] == userId) return slot;
+            if (userIds[slot] == FREE) return -1;
+        }
+    }
+
+    private int slotOrInsert(long userId) {
+        int slot = slotOf(userId);
+        if (slot >= 0) return slot;
+
+        // kept at most half full so probes stay short
+        if ((users + 1) * 2 > userIds.length) rehash(userIds.length * 2);
+        int mask = userIds.length - 1;
+        slot = hash(userId) & mask;
+        while (userIds[slot] != FREE) slot = (slot + 1) & mask;
+        userIds[slot] = userId;
+        friendIds[slot] = NO_FRIENDS;
+        users++;
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldUserIds = userIds;
+        long[][] oldFriendIds = friendIds;
+        int[] oldDegrees = degrees;
+        allocate(capacity);
+
+        int mask = capacity - 1;
+        for (int old = 0; old < oldUserIds.length; old++) {
+            if (oldUserIds[old] == FREE) continue;
+            int slot = hash(oldUserIds[old]) & mask;
+            while (userIds[slot] != FREE) slot = (slot + 1) & mask;
+            userIds[slot] = oldUserIds[old];
+            friendIds[slot] = oldFriendIds[old];
+            degrees[slot] = oldDegrees[old];
+        }
+    }
+
+    private void allocate(int capacity) {
+        userIds = new long[capacity];
+        friendIds = new long[capacity][];
+        degrees = new int[capacity];
+    }
+
+    private static int capacityFor(long expectedUsers) {
+        long capacity = MIN_CAPACITY;
+        while (capacity < expectedUsers * 2) capacity <<= 1;
+        return (int) Math.min(capacity, 1 << 30);
+    }
+
+    // ids are sequential, mixed so they don't fill runs of neighboring slots
+    private static int hash(long userId) {
+        long h = userId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
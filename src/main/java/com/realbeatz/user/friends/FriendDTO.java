@@ -1,7 +1,6 @@
 package com.realbeatz.user.friends;
 
-import com.realbeatz.user.User;
-import com.realbeatz.user.profile.UserProfile;
+import com.realbeatz.user.UserView;
 import lombok.Builder;
 import lombok.Data;
 
@@ -16,15 +15,14 @@ public class FriendDTO {
     String profilePictureFullName;
 
 
-    public static FriendDTO map(User user) {
-        UserProfile profile = user.getProfile();
+    public static FriendDTO map(UserView user) {
         return FriendDTO.builder()
-                .id(user.getId())
-                .username(user.getUsername())
-                .firstName(profile.getFirstName())
-                .lastName(profile.getLastName())
-                .bio(profile.getBio())
-                .profilePictureFullName(profile.getProfilePictureFullName())
+                .id(user.id())
+                .username(user.username())
+                .firstName(user.firstName())
+                .lastName(user.lastName())
+                .bio(user.bio())
+                .profilePictureFullName(user.profilePictureFullName())
                 .build();
     }
 }
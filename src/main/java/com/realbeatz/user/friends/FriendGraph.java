@@ -0,0 +1,221 @@
+package com.realbeatz.user.friends;
+
+import com.realbeatz.user.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In memory copy of the friends_of table, answering whether two users are
+ * friends, how many friends a user has and who they are without loading
+ * the friends of a user as entities. Friendships are kept as sorted arrays
+ * of ids per user (see {@link FriendAdjacency}), loaded by streaming the
+ * table once the application is ready and changed once the transaction
+ * making a friend or losing one commits. Until the graph is loaded the
+ * questions are answered by the database.
+ */
+@Slf4j
+@Component
+public class FriendGraph {
+
+    private final UserRepository userRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FriendAdjacency adjacency = new FriendAdjacency(0);
+    private boolean loaded = false;
+    // changes committed while a rebuild is running, replayed on the rebuilt graph
+    private List<Consumer<FriendAdjacency>> changesDuringRebuild;
+
+    public FriendGraph(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * @return whether the friend is one of the friends of the user
+     */
+    public boolean areFriends(Long userId, Long friendId) {
+        lock.readLock().lock();
+        try {
+            if (loaded) return adjacency.contains(userId, friendId);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return userRepository.existsFriendship(userId, friendId);
+    }
+
+    public long countFriends(Long userId) {
+        lock.readLock().lock();
+        try {
+            if (loaded) return adjacency.degree(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return userRepository.countFriends(userId);
+    }
+
+    /**
+     * Returns how many friends a user will have once the current transaction
+     * commits, for a transaction that already wrote a change to the user's
+     * friendships, which the graph only applies after the commit
+     *
+     * @param change 1 when the transaction made a friendship of the user, -1 when it dropped one
+     */
+    public long countFriendsOnCommit(Long userId, int change) {
+        lock.readLock().lock();
+        try {
+            if (loaded) return adjacency.degree(userId) + change;
+        } finally {
+            lock.readLock().unlock();
+        }
+        // the database already sees the rows written by the transaction
+        return userRepository.countFriends(userId);
+    }
+
+    /**
+     * @return the ids of the friends of the user in ascending order
+     */
+    public long[] getFriendIds(Long userId) {
+        lock.readLock().lock();
+        try {
+            if (loaded) return adjacency.friendsOf(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return userRepository.findFriendIds(userId).stream()
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * Returns the friends of a user who have more friends than the threshold
+     * (Ex. the authors too popular to have their posts fanned out)
+     */
+    public List<Long> getFriendIdsWithMoreFriendsThan(Long userId, long threshold) {
+        lock.readLock().lock();
+        try {
+            if (loaded) {
+                List<Long> friendIds = new ArrayList<>();
+                for (long friendId : adjacency.friendsOf(userId)) {
+                    if (adjacency.degree(friendId) > threshold) friendIds.add(friendId);
+                }
+                return friendIds;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return userRepository.findFriendIdsWithMoreFriendsThan(userId, threshold);
+    }
+
+    /**
+     * Records a friendship, both ways, once the current transaction (if any) commits
+     */
+    public void onFriendshipCreated(Long userId, Long friendId) {
+        afterCommit(graph -> {
+            graph.add(userId, friendId);
+            graph.add(friendId, userId);
+        });
+    }
+
+    /**
+     * Drops a friendship, both ways, once the current transaction (if any) commits
+     */
+    public void onFriendshipRemoved(Long userId, Long friendId) {
+        afterCommit(graph -> {
+            graph.remove(userId, friendId);
+            graph.remove(friendId, userId);
+        });
+    }
+
+    /**
+     * Drops every friendship of a deleted user once the current transaction (if any) commits
+     */
+    public void onUserDeleted(Long userId) {
+        afterCommit(graph -> {
+            for (long friendId : graph.removeAll(userId)) {
+                graph.remove(friendId, userId);
+            }
+        });
+    }
+
+    /**
+     * Loads the graph by streaming the friends_of table, ordered so every
+     * list is filled by appending. Friendships changed while the table is
+     * read are applied again on the loaded graph before it replaces the
+     * current one, so none are lost
+     */
+    @Transactional(readOnly = true)
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        log.info("Rebuilding friend graph...");
+        long start = System.currentTimeMillis();
+
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        FriendAdjacency rebuilt = new FriendAdjacency(userRepository.count());
+        try (Stream<Friendship> friendships = userRepository.streamFriendships()) {
+            friendships.forEach(friendship -> rebuilt.add(friendship.userId(), friendship.friendId()));
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        rebuilt.trim();
+
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild.forEach(change -> change.accept(rebuilt));
+            changesDuringRebuild = null;
+            adjacency = rebuilt;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("Friend graph rebuilt with {} users and {} friendships in {}ms",
+                rebuilt.users(), rebuilt.friendships() / 2, System.currentTimeMillis() - start);
+    }
+
+    private void afterCommit(Consumer<FriendAdjacency> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(change);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) apply(change);
+            }
+        });
+    }
+
+    private void apply(Consumer<FriendAdjacency> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(adjacency);
+            if (changesDuringRebuild != null) changesDuringRebuild.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
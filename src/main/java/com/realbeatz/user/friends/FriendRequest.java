@@ -16,7 +16,7 @@ import javax.persistence.*;
 public class FriendRequest {
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "friend_request_gen")
-    @SequenceGenerator(name = "friend_request_gen", sequenceName = "friend_request_seq", initialValue = 6000, allocationSize = 1)
+    @SequenceGenerator(name = "friend_request_gen", sequenceName = "friend_request_seq", initialValue = 6000, allocationSize = 50)
     @Column(name = "friend_request_id", nullable = false)
     private Long id;
 
@@ -14,19 +14,18 @@ public class FriendRequestDTO {
     private String requesterProfilePictureFullName;
     private FriendRequestStatus status;
 
-    public static FriendRequestDTO map(FriendRequest friendRequest) {
+    public static FriendRequestDTO map(FriendRequestView friendRequest) {
         String requesterName =
-                friendRequest.getRequester().getProfile().getFirstName() + " " +
-                friendRequest.getRequester().getProfile().getLastName();
-        String profilePictureFullName = friendRequest.getRequester().getProfile().getProfilePictureFullName();
+                friendRequest.requesterFirstName() + " " +
+                friendRequest.requesterLastName();
         return FriendRequestDTO.builder()
-                .id(friendRequest.getId())
-                .requesterId(friendRequest.getRequester().getId())
+                .id(friendRequest.id())
+                .requesterId(friendRequest.requesterId())
                 .requesterName(requesterName)
-                .newFriendId(friendRequest.getNewFriend().getId())
-                .requesterProfilePictureFullName(profilePictureFullName)
-                .message(friendRequest.getMessage())
-                .status(friendRequest.getStatus())
+                .newFriendId(friendRequest.newFriendId())
+                .requesterProfilePictureFullName(friendRequest.requesterProfilePictureFullName())
+                .message(friendRequest.message())
+                .status(friendRequest.status())
                 .build();
     }
 }
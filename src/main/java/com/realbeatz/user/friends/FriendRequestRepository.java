@@ -1,6 +1,21 @@
 package com.realbeatz.user.friends;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface FriendRequestRepository extends JpaRepository<FriendRequest, Long> {
+
+    String FRIEND_REQUEST_VIEW = "select new com.realbeatz.user.friends.FriendRequestView(" +
+            "r.id, q.id, p.firstName, p.lastName, p.profilePictureFullName, " +
+            "r.newFriend.id, r.message, r.status) " +
+            "from FriendRequest r join r.requester q join q.profile p ";
+
+    @Query(FRIEND_REQUEST_VIEW + "where q.id in ?1")
+    List<FriendRequestView> findViewsByRequesterIdIn(Collection<Long> requesterIds);
+
+    @Query(FRIEND_REQUEST_VIEW + "where r.newFriend.id in ?1")
+    List<FriendRequestView> findViewsByNewFriendIdIn(Collection<Long> newFriendIds);
 }
@@ -0,0 +1,30 @@
+package com.realbeatz.user.friends;
+
+import com.realbeatz.user.profile.UserProfile;
+
+/**
+ * Read model of a friend request holding exactly the columns a
+ * {@link FriendRequestDTO} is made of
+ */
+public record FriendRequestView(Long id,
+                                Long requesterId,
+                                String requesterFirstName,
+                                String requesterLastName,
+                                String requesterProfilePictureFullName,
+                                Long newFriendId,
+                                String message,
+                                FriendRequestStatus status) {
+
+    public static FriendRequestView of(FriendRequest friendRequest) {
+        UserProfile requesterProfile = friendRequest.getRequester().getProfile();
+        return new FriendRequestView(
+                friendRequest.getId(),
+                friendRequest.getRequester().getId(),
+                requesterProfile.getFirstName(),
+                requesterProfile.getLastName(),
+                requesterProfile.getProfilePictureFullName(),
+                friendRequest.getNewFriend().getId(),
+                friendRequest.getMessage(),
+                friendRequest.getStatus());
+    }
+}
@@ -4,16 +4,17 @@ import com.realbeatz.exceptions.InvalidDeleteFriendException;
 import com.realbeatz.exceptions.InvalidFriendRequestException;
 import com.realbeatz.exceptions.InvalidUserIdException;
 import com.realbeatz.exceptions.InvalidUsernameException;
+import com.realbeatz.post.timeline.TimelineService;
 import com.realbeatz.user.User;
 import com.realbeatz.user.UserDTO;
 import com.realbeatz.user.UserRepository;
 import com.realbeatz.user.UserService;
+import com.realbeatz.user.search.UserSearchIndex;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.Set;
 
 import static com.realbeatz.user.friends.FriendRequestStatus.*;
 
@@ -24,34 +25,38 @@ public class FriendsService {
     private final UserService userService;
     private final UserRepository userRepository;
     private final FriendRequestRepository friendRequestRepository;
+    private final TimelineService timelineService;
+    private final UserSearchIndex userSearchIndex;
+    private final FriendGraph friendGraph;
 
     public List<UserDTO> getAllFriends(Long userId) throws InvalidUserIdException {
-        User user = userService.getUserById(userId);
-        return getAllFriends(user);
+        userService.checkUserExists(userId);
+        return userService.getFriendDTOs(userId);
     }
 
     public List<UserDTO> getAllFriends(String username) throws InvalidUserIdException, InvalidUsernameException {
-        User user = userService.getUserByUsername(username);
-        return getAllFriends(user);
+        Long userId = userService.getUserIdByUsername(username);
+        return userService.getFriendDTOs(userId);
     }
 
     public List<UserDTO> getAllFriends(User user) {
-        return user.getFriends().stream()
-                .map(UserDTO::map)
-                .toList();
+        return userService.getFriendDTOs(user.getId());
     }
 
+    @Transactional
     public void addNewFriend(Long userId, Long friendId) throws InvalidUserIdException, InvalidFriendRequestException {
         User user = userService.getUserById(userId);
         addNewFriend(user, friendId);
     }
 
+    @Transactional
     public void addNewFriend(String username, Long friendId) throws InvalidUserIdException, InvalidFriendRequestException, InvalidUsernameException {
         User user = userService.getUserByUsername(username);
         addNewFriend(user, friendId);
     }
 
 
+    @Transactional
     public void addNewFriend(User user, Long friendId) throws InvalidUserIdException, InvalidFriendRequestException {
         // check if user is adding oneself as friend
         if (user.getId().equals(friendId)) {
@@ -59,29 +64,28 @@ public class FriendsService {
                     "User cannot add oneself as friend");
         }
 
-        User friend = userService.getUserById(friendId);
-
-        Set<User> userFriends = user.getFriends();
-        Set<User> friendFriends = friend.getFriends();
+        userService.checkUserExists(friendId);
 
         // check if friendship has already been established
-        if (userFriends.contains(friend)) {
+        if (friendGraph.areFriends(user.getId(), friendId)) {
             throw new InvalidFriendRequestException(
                     "User with id: " + user.getId() +
                             " already is friends with id : " + friendId);
         }
-        if (friendFriends.contains(user)) {
+        if (friendGraph.areFriends(friendId, user.getId())) {
             throw new InvalidFriendRequestException(
                     "User with id: " + friendId +
                             " already is friends with id : " + user.getId());
         }
 
         // establish friendship
-        userFriends.add(friend);
-        friendFriends.add(user);
+        userRepository.addFriends(user.getId(), friendId);
+        userRepository.addFriends(friendId, user.getId());
+        userService.touchUsers(List.of(user.getId(), friendId));
 
-        userService.save(user);
-        userService.save(friend);
+        timelineService.onFriendshipCreated(user.getId(), friendId);
+        userSearchIndex.onFriendshipCreated(user.getId(), friendId);
+        friendGraph.onFriendshipCreated(user.getId(), friendId);
     }
 
     // adding friend relationship using native sql (works)
@@ -89,8 +93,13 @@ public class FriendsService {
     public void addNewFriend2(Long userId, Long friendId) {
         userRepository.addFriends(userId, friendId);
         userRepository.addFriends(friendId, userId);
+        userService.touchUsers(List.of(userId, friendId));
+        timelineService.onFriendshipCreated(userId, friendId);
+        userSearchIndex.onFriendshipCreated(userId, friendId);
+        friendGraph.onFriendshipCreated(userId, friendId);
     }
 
+    @Transactional
     public void deleteFriend(Long userId, Long friendId) throws InvalidUserIdException, InvalidDeleteFriendException {
         if (userId.equals(friendId)) {
             throw new InvalidUserIdException(
@@ -103,6 +112,7 @@ public class FriendsService {
         deleteFriend(user, friend);
     }
 
+    @Transactional
     public void deleteFriend(String username, Long friendId) throws InvalidUserIdException, InvalidDeleteFriendException, InvalidUsernameException {
         User user = userService.getUserByUsername(username);
         User friend = userService.getUserById(friendId);
@@ -115,29 +125,29 @@ public class FriendsService {
     }
 
 
+    @Transactional
     public void deleteFriend(User user, User friend) throws InvalidUserIdException, InvalidDeleteFriendException {
 
-        Set<User> userFriends = user.getFriends();
-        Set<User> friendFriends = friend.getFriends();
-
         // check if friendship exists
-        if (!userFriends.contains(friend)) {
+        if (!friendGraph.areFriends(user.getId(), friend.getId())) {
             throw new InvalidDeleteFriendException(
                     "User with username: " + user.getUsername() + " doesn't have a friend " +
                             "with username: " + friend.getUsername());
         }
-        if (!friendFriends.contains(user)) {
+        if (!friendGraph.areFriends(friend.getId(), user.getId())) {
             throw new InvalidDeleteFriendException(
                     "User with username: " + user.getUsername() + " doesn't have a friend " +
                             "with username: " + friend.getUsername());
         }
 
 
-        userFriends.remove(friend);
-        friendFriends.remove(user);
+        userRepository.deleteFriends(user.getId(), friend.getId());
+        userRepository.deleteFriends(friend.getId(), user.getId());
+        userService.touchUsers(List.of(user.getId(), friend.getId()));
 
-        userService.save(user);
-        userService.save(friend);
+        timelineService.onFriendshipRemoved(user.getId(), friend.getId());
+        userSearchIndex.onFriendshipRemoved(user.getId(), friend.getId());
+        friendGraph.onFriendshipRemoved(user.getId(), friend.getId());
     }
 
     public void createNewFriendRequest(Long userId, Long newFriendId, String message) throws InvalidUserIdException, InvalidFriendRequestException {
@@ -159,7 +169,7 @@ public class FriendsService {
     public void createNewFriendRequest(User user, User newFriend, String message) throws InvalidUserIdException, InvalidFriendRequestException {
 
 
-        boolean friendAdded = user.getFriends().contains(newFriend);
+        boolean friendAdded = friendGraph.areFriends(user.getId(), newFriend.getId());
 
         // check if the two ids are the same
         if (user.getId().equals(newFriend.getId())) {
@@ -204,12 +214,10 @@ public class FriendsService {
                 .build();
 
         friendRequestRepository.save(friendRequest);
-
-        System.out.println("\n".repeat(10));
-        System.out.println(UserDTO.map(userService.getUserById(user.getId())));
-        System.out.println(UserDTO.map(userService.getUserById(newFriend.getId())));
+        userService.touchUsers(List.of(user.getId(), newFriend.getId()));
     }
 
+    @Transactional
     public void confirmFriendRequest(Long userId, Long requesterId) throws InvalidUserIdException, InvalidFriendRequestException {
         User user = userService.getUserById(userId);
         User requester = userService.getUserById(requesterId);
@@ -217,6 +225,7 @@ public class FriendsService {
         confirmFriendRequest(user, requester);
     }
 
+    @Transactional
     public void confirmFriendRequest(String username, Long requesterId) throws InvalidUserIdException, InvalidFriendRequestException, InvalidUsernameException {
         User user = userService.getUserByUsername(username);
         User requester = userService.getUserById(requesterId);
@@ -224,6 +233,7 @@ public class FriendsService {
         confirmFriendRequest(user, requester);
     }
 
+    @Transactional
     public void confirmFriendRequest(User user, User requester) throws InvalidUserIdException, InvalidFriendRequestException {
 
         // check if request exists or has already been processed
@@ -244,12 +254,24 @@ public class FriendsService {
                 .findFirst()
                 .ifPresent(request -> request.setStatus(CONFIRMED));
 
-        // establish friendship between two users
-        user.getFriends().add(requester);
-        requester.getFriends().add(user);
-
         userService.save(user);
         userService.save(requester);
+
+        // establish friendship between two users, unless they already are friends
+        boolean userHasRequester = friendGraph.areFriends(user.getId(), requester.getId());
+        boolean requesterHasUser = friendGraph.areFriends(requester.getId(), user.getId());
+        if (!userHasRequester) {
+            userRepository.addFriends(user.getId(), requester.getId());
+        }
+        if (!requesterHasUser) {
+            userRepository.addFriends(requester.getId(), user.getId());
+        }
+        userService.touchUsers(List.of(user.getId(), requester.getId()));
+        if (userHasRequester && requesterHasUser) return;
+
+        timelineService.onFriendshipCreated(user.getId(), requester.getId());
+        userSearchIndex.onFriendshipCreated(user.getId(), requester.getId());
+        friendGraph.onFriendshipCreated(user.getId(), requester.getId());
     }
 
     public void refuseFriendRequest(Long userId, Long requesterId) throws InvalidUserIdException, InvalidFriendRequestException {
@@ -288,6 +310,7 @@ public class FriendsService {
 
         userService.save(user);
         userService.save(requester);
+        userService.touchUsers(List.of(user.getId(), requester.getId()));
     }
 
     public void deleteFriendRequestSent(Long userId, Long newFriendId) throws InvalidUserIdException, InvalidFriendRequestException {
@@ -320,6 +343,7 @@ public class FriendsService {
         user.getFriendRequestsSent().remove(friendRequest);
 
         userService.save(user);
+        userService.touchUsers(List.of(user.getId(), newFriendId));
     }
 
     private List<FriendRequest> getUnprocessedFriendRequestsReceived(User user, Long requesterId) throws InvalidFriendRequestException {
@@ -369,9 +393,8 @@ public class FriendsService {
     }
 
     public List<FriendRequestDTO> getAllFriendRequestsReceived(String username) throws InvalidUsernameException {
-        User user = userService.getUserByUsername(username);
-        Set<FriendRequest> friendRequestsReceived = user.getFriendRequestsReceived();
-        return friendRequestsReceived.stream()
+        Long userId = userService.getUserIdByUsername(username);
+        return friendRequestRepository.findViewsByNewFriendIdIn(List.of(userId)).stream()
                 .map(FriendRequestDTO::map)
                 .toList();
     }
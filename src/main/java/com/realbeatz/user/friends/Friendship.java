@@ -0,0 +1,8 @@
+package com.realbeatz.user.friends;
+
+/**
+ * One row of friends_of, the user has the friend. Every friendship is
+ * stored as two rows, one in each direction
+ */
+public record Friendship(Long userId, Long friendId) {
+}
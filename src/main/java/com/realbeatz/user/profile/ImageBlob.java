@@ -0,0 +1,38 @@
+package com.realbeatz.user.profile;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * An image stored once under the hash of its content, however many
+ * profiles show it, with the number of profiles referencing it
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@ToString
+@AllArgsConstructor
+@RequiredArgsConstructor
+@Table(name = "image_blobs")
+public class ImageBlob {
+    // hex SHA-256 of the image followed by its extension (Ex. 'abcd...ef.png')
+    @Id
+    @Column(name = "name", length = 80, nullable = false)
+    private String name;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(name = "reference_count", nullable = false)
+    private Long referenceCount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // when a reference was last added, before the profile showing the image is saved
+    @Column(name = "last_referenced_at")
+    private LocalDateTime lastReferencedAt;
+}
@@ -0,0 +1,33 @@
+package com.realbeatz.user.profile;
+
+import com.realbeatz.user.UserView;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+import static com.realbeatz.utils.UserUtils.calculateAge;
+
+@Data
+@Builder
+public class ProfileDTO {
+    private Long id;
+    private String lastName;
+    private String firstName;
+    private LocalDate dob;
+    private Integer age;
+    private String bio;
+    private String profilePictureFullName;
+
+    public static ProfileDTO map(UserView user) {
+        return ProfileDTO.builder()
+                .id(user.profileId())
+                .lastName(user.lastName())
+                .firstName(user.firstName())
+                .dob(user.dob())
+                .age(calculateAge(user.dob()))
+                .bio(user.bio())
+                .profilePictureFullName(user.profilePictureFullName())
+                .build();
+    }
+}
@@ -0,0 +1,142 @@
+package com.realbeatz.user.profile;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.realbeatz.user.profile.ProfilePictureThumbnails.THUMBNAIL_SIZES;
+import static com.realbeatz.user.profile.ProfilePictureThumbnails.thumbnailPath;
+
+/**
+ * Keeps the most requested profile pictures and thumbnails in memory, so the
+ * few pictures most pages show (popular users, the default picture) are
+ * served without touching the disk. Files are held in direct buffers, outside
+ * of the heap the garbage collector scans, up to a maximum number of bytes,
+ * and the least recently used ones are evicted first. Only small files are
+ * cached, larger ones are still sent straight from the disk. A file is only
+ * cached the second time it is requested, so pictures viewed once don't
+ * evict the popular ones, and it is read by a single request however many
+ * ask for it at once.
+ */
+@Component
+public class ProfilePictureCache {
+
+    // files requested once, remembered to be cached if they are requested again
+    private static final int MAXIMUM_REQUESTED_ONCE = 10_000;
+
+    private final Cache<Path, CachedPicture> pictures;
+    private final Cache<Path, Boolean> requestedOnce;
+    private final long maximumBytes;
+    private final long maximumEntryBytes;
+    private final AtomicLong residentBytes = new AtomicLong();
+
+    /**
+     * @param content      the bytes of the file, read only, shared by every request
+     * @param lastModified when the file was last modified, in milliseconds
+     */
+    public record CachedPicture(ByteBuffer content, long lastModified) {
+    }
+
+    public ProfilePictureCache(@Value("${application.profile-picture.cacheMaximumBytes:67108864}") long maximumBytes,
+                               @Value("${application.profile-picture.cacheMaximumEntryBytes:262144}") long maximumEntryBytes,
+                               @Value("${application.profile-picture.cacheExpireAfterWriteSeconds:600}") long expireAfterWriteSeconds) {
+        this.maximumBytes = maximumBytes;
+        this.maximumEntryBytes = maximumEntryBytes;
+        // direct buffers of evicted pictures are freed once they are collected
+        RemovalListener<Path, CachedPicture> onRemoval = removal ->
+                residentBytes.addAndGet(-removal.getValue().content().capacity());
+        this.pictures = CacheBuilder.newBuilder()
+                .maximumWeight(maximumBytes)
+                .<Path, CachedPicture>weigher((file, picture) -> picture.content().capacity())
+                // pictures that keep their name when replaced (Ex. the default picture) are reloaded
+                .expireAfterWrite(Duration.ofSeconds(expireAfterWriteSeconds))
+                .removalListener(onRemoval)
+                .recordStats()
+                .build();
+        this.requestedOnce = CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_REQUESTED_ONCE)
+                .expireAfterWrite(Duration.ofSeconds(expireAfterWriteSeconds))
+                .build();
+    }
+
+    public Optional<CachedPicture> getIfPresent(Path file) {
+        return Optional.ofNullable(pictures.getIfPresent(file));
+    }
+
+    /**
+     * Reads a file into the cache if it was already requested recently and
+     * isn't too large to be cached. Requests for a file being read wait for
+     * it instead of reading it again
+     *
+     * @param file a profile picture or thumbnail
+     * @return the file cached, empty if it is requested for the first time or too large
+     * @throws IOException when the file can't be read
+     */
+    public Optional<CachedPicture> load(Path file) throws IOException {
+        if (Files.size(file) > maximumEntryBytes) return Optional.empty();
+        if (requestedOnce.asMap().putIfAbsent(file, Boolean.TRUE) == null) return Optional.empty();
+
+        try {
+            return Optional.of(pictures.get(file, () -> read(file)));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) throw ioException;
+            throw new IOException("Error reading profile picture: " + file.getFileName(), e.getCause());
+        }
+    }
+
+    private CachedPicture read(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        ByteBuffer content = ByteBuffer.allocateDirect((int) attributes.size());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (content.hasRemaining()) {
+                if (channel.read(content) == -1) break;
+            }
+        }
+        content.flip();
+
+        CachedPicture picture = new CachedPicture(content.asReadOnlyBuffer(),
+                attributes.lastModifiedTime().toMillis());
+        residentBytes.addAndGet(content.capacity());
+        return picture;
+    }
+
+    /**
+     * Drops a picture and its thumbnails from the cache
+     *
+     * @param picture the original picture
+     */
+    public void invalidateAll(Path picture) {
+        pictures.invalidate(picture);
+        for (int size : THUMBNAIL_SIZES) {
+            pictures.invalidate(thumbnailPath(picture, size));
+        }
+    }
+
+    public ProfilePictureCacheStats getStats() {
+        CacheStats stats = pictures.stats();
+        return ProfilePictureCacheStats.builder()
+                .hits(stats.hitCount())
+                .misses(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictions(stats.evictionCount())
+                .entries(pictures.size())
+                .residentBytes(residentBytes.get())
+                .maximumBytes(maximumBytes)
+                .build();
+    }
+}
@@ -0,0 +1,17 @@
+package com.realbeatz.user.profile;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ProfilePictureCacheStats {
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+    private long entries;
+    // bytes of pictures held off heap, out of the maximum allowed
+    private long residentBytes;
+    private long maximumBytes;
+}
@@ -0,0 +1,267 @@
+package com.realbeatz.user.profile;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.realbeatz.exceptions.IllegalFileTypeException;
+import com.realbeatz.user.UserIdentity;
+import com.realbeatz.user.UserIdentityCache;
+import com.realbeatz.user.UserRepository;
+import com.realbeatz.user.search.UserSearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static com.realbeatz.configs.FileUploadConfig.getProfilePictureStagingDirectory;
+import static com.realbeatz.utils.FileUtils.getProfilePictureExtension;
+import static com.realbeatz.utils.FileUtils.openProfilePicture;
+
+/**
+ * Processes uploaded profile pictures in the background so requests don't wait
+ * for them. An upload is validated and hashed while the request streams it to
+ * disk, then stored in the {@link ProfilePictureStore} and swapped in as the
+ * user's profile picture by a bounded pool of workers, which then queue its
+ * thumbnails. When the queue is full the request thread processes the upload
+ * itself, slowing down uploads instead of dropping them. Failed stores and
+ * swaps are retried with an increasing delay.
+ */
+@Slf4j
+@Component
+public class ProfilePicturePipeline {
+
+    private final UserRepository userRepository;
+    private final UserProfileRepository userProfileRepository;
+    private final UserIdentityCache userIdentityCache;
+    private final UserSearchIndex userSearchIndex;
+    private final ProfilePictureThumbnails thumbnails;
+    private final ProfilePictureStore store;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor workers;
+    // hands failed uploads back to the workers once their retry delay is over
+    private final ScheduledExecutorService retries;
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+
+    /**
+     * A picture staged by a request, waiting to be submitted
+     *
+     * @param name name the picture is stored under, made of the hash of its content
+     */
+    public record StagedPicture(Path file, String name) {
+    }
+
+    /**
+     * An upload going through the pipeline
+     *
+     * @param stored whether the picture was stored, holding a reference to it
+     */
+    private record Upload(Long userId,
+                          StagedPicture picture,
+                          boolean stored,
+                          int attempt) {
+
+        Upload asStored() {
+            return new Upload(userId, picture, true, attempt);
+        }
+
+        Upload nextAttempt() {
+            return new Upload(userId, picture, stored, attempt + 1);
+        }
+    }
+
+    public ProfilePicturePipeline(UserRepository userRepository,
+                                  UserProfileRepository userProfileRepository,
+                                  UserIdentityCache userIdentityCache,
+                                  UserSearchIndex userSearchIndex,
+                                  ProfilePictureThumbnails thumbnails,
+                                  ProfilePictureStore store,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${application.profile-picture.workers:2}") int workers,
+                                  @Value("${application.profile-picture.queueCapacity:100}") int queueCapacity,
+                                  @Value("${application.profile-picture.maxAttempts:3}") int maxAttempts,
+                                  @Value("${application.profile-picture.retryDelayMillis:1000}") long retryDelayMillis) {
+        this.userRepository = userRepository;
+        this.userProfileRepository = userProfileRepository;
+        this.userIdentityCache = userIdentityCache;
+        this.userSearchIndex = userSearchIndex;
+        this.thumbnails = thumbnails;
+        this.store = store;
+        this.transactionTemplate = transactionTemplate;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMillis = retryDelayMillis;
+        this.workers = new ThreadPoolExecutor(
+                workers, workers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("profile-picture-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.retries = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("profile-picture-retry-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Writes an uploaded picture to the staging directory as the request streams
+     * it, checking that it is an image and hashing it along the way. An invalid
+     * picture is rejected as soon as it is detected, without reading the rest
+     *
+     * @param content          the picture as it is uploaded
+     * @param originalFilename name of the file as uploaded
+     * @throws IllegalFileTypeException when the file isn't a PNG or JPEG image
+     * @throws IOException when the upload can't be staged or is larger than the maximum upload size
+     */
+    public StagedPicture stage(InputStream content, String originalFilename) throws IllegalFileTypeException, IOException {
+        InputStream picture = openProfilePicture(content, originalFilename);
+        Path stagedFile = getProfilePictureStagingDirectory()
+                .resolve(UUID.randomUUID() + ".upload");
+
+        try (HashingOutputStream out = new HashingOutputStream(Hashing.sha256(),
+                new BufferedOutputStream(Files.newOutputStream(stagedFile)))) {
+            picture.transferTo(out);
+            return new StagedPicture(stagedFile, out.hash() + getProfilePictureExtension(originalFilename));
+        } catch (IOException e) {
+            Files.deleteIfExists(stagedFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Queues a staged picture to become the user's profile picture. Inside a
+     * transaction, it is only queued once the transaction commits so the
+     * workers can find the user, and dropped if it rolls back
+     *
+     * @param userId id of the user the picture belongs to
+     */
+    public void submit(Long userId, StagedPicture picture) {
+        Upload upload = new Upload(userId, picture, false, 1);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(upload);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    enqueue(upload);
+                } else {
+                    discard(upload.picture());
+                }
+            }
+        });
+    }
+
+    /**
+     * Deletes a staged picture that won't be submitted
+     */
+    public void discard(StagedPicture picture) {
+        try {
+            Files.deleteIfExists(picture.file());
+        } catch (IOException e) {
+            log.error("Error deleting staged profile picture {}", picture.file(), e);
+        }
+    }
+
+    /**
+     * Stops taking new uploads and lets the workers finish the ones queued.
+     * Uploads waiting for a retry are left in the staging directory
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        retries.shutdownNow();
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Stopped with {} profile pictures left unprocessed", workers.getQueue().size());
+            workers.shutdownNow();
+        }
+    }
+
+    private void enqueue(Upload upload) {
+        try {
+            workers.execute(() -> process(upload));
+        } catch (RejectedExecutionException e) {
+            log.warn("Profile picture of user with id: {} not processed, shutting down", upload.userId());
+        }
+    }
+
+    private void process(Upload upload) {
+        try {
+            if (!upload.stored()) {
+                store.put(upload.picture().file(), upload.picture().name());
+                upload = upload.asStored();
+            }
+            swap(upload);
+        } catch (Exception e) {
+            retryOrGiveUp(upload, e);
+        }
+    }
+
+    /**
+     * Points the user's profile at the stored picture, bumping the revisions of
+     * everyone showing it and dropping the user from the caches holding it.
+     * The reference to the picture it replaces is released
+     */
+    private void swap(Upload upload) {
+        Optional<UserIdentity> swapped = transactionTemplate.execute(status -> {
+            Optional<UserIdentity> user = userRepository.findIdentityById(upload.userId());
+            user.ifPresent(identity -> {
+                userProfileRepository.updateProfilePictureFullName(identity.id(), upload.picture().name());
+                userRepository.touchWithRelated(identity.id());
+                userIdentityCache.invalidate(identity.id(), identity.username());
+            });
+            return user;
+        });
+
+        if (swapped == null || swapped.isEmpty()) {
+            log.info("User with id: {} was deleted before their profile picture was processed", upload.userId());
+            discard(upload);
+            return;
+        }
+
+        store.release(swapped.get().profilePictureFullName());
+        userSearchIndex.get(upload.userId()).ifPresent(document ->
+                userSearchIndex.index(document.withProfilePictureFullName(upload.picture().name())));
+        thumbnails.generateAll(store.pathOf(upload.picture().name()));
+        log.debug("Profile picture of user with id: {} set to {}", upload.userId(), upload.picture().name());
+    }
+
+    private void retryOrGiveUp(Upload upload, Exception e) {
+        if (upload.attempt() >= maxAttempts) {
+            log.error("Giving up on profile picture of user with id: {} after {} attempts",
+                    upload.userId(), upload.attempt(), e);
+            discard(upload);
+            return;
+        }
+
+        long delay = retryDelayMillis << (upload.attempt() - 1);
+        log.warn("Error processing profile picture of user with id: {}, retrying in {}ms",
+                upload.userId(), delay, e);
+        try {
+            retries.schedule(() -> enqueue(upload.nextAttempt()), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException rejected) {
+            log.warn("Profile picture of user with id: {} not retried, shutting down", upload.userId());
+        }
+    }
+
+    /**
+     * Deletes whatever an upload left on disk and releases the picture it stored
+     */
+    private void discard(Upload upload) {
+        discard(upload.picture());
+        if (upload.stored()) {
+            store.release(upload.picture().name());
+        }
+    }
+}
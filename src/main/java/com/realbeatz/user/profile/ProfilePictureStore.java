@@ -0,0 +1,207 @@
+package com.realbeatz.user.profile;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static com.realbeatz.configs.FileUploadConfig.getProfilePictureUploadDirectory;
+import static com.realbeatz.utils.FileUtils.isContentAddressed;
+import static com.realbeatz.utils.FileUtils.resolveProfilePicture;
+
+/**
+ * Content addressed store of the uploaded profile pictures. A picture is named
+ * after the SHA-256 of its bytes, hashed while it is uploaded, so identical
+ * uploads are stored once. Every profile showing a picture holds a reference
+ * to it, counted in the database, and the file is deleted along with its
+ * thumbnails once the last reference is released.
+ */
+@Slf4j
+@Component
+public class ProfilePictureStore {
+
+    private final ImageBlobRepository imageBlobRepository;
+    private final UserProfileRepository userProfileRepository;
+    private final ProfilePictureThumbnails thumbnails;
+    private final ProfilePictureCache cache;
+    private final TransactionTemplate transactionTemplate;
+
+    public ProfilePictureStore(ImageBlobRepository imageBlobRepository,
+                               UserProfileRepository userProfileRepository,
+                               ProfilePictureThumbnails thumbnails,
+                               ProfilePictureCache cache,
+                               PlatformTransactionManager transactionManager) {
+        this.imageBlobRepository = imageBlobRepository;
+        this.userProfileRepository = userProfileRepository;
+        this.thumbnails = thumbnails;
+        this.cache = cache;
+        // references are also released after another transaction completed, while it is still bound
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Stores a picture and adds a reference to it. The file is moved into
+     * place, or dropped when the same picture is already stored
+     *
+     * @param file a picture staged on the same file system as the store
+     * @param name the name of the picture, the hex SHA-256 of its content
+     *             followed by its extension (Ex. 'abcd...ef.png')
+     * @throws IOException when the picture can't be moved into place
+     */
+    public void put(Path file, String name) throws IOException {
+        if (!isContentAddressed(name)) {
+            throw new IllegalArgumentException("Not a content addressed name: " + name);
+        }
+        Path target = pathOf(name);
+
+        try {
+            // the row lock orders this with a release of the last reference deleting the file
+            transactionTemplate.executeWithoutResult(status -> {
+                Optional<ImageBlob> blob = imageBlobRepository.findByNameForUpdate(name);
+                moveIntoPlace(file, target);
+                if (blob.isPresent()) {
+                    blob.get().setReferenceCount(blob.get().getReferenceCount() + 1);
+                    blob.get().setLastReferencedAt(LocalDateTime.now());
+                    return;
+                }
+                LocalDateTime now = LocalDateTime.now();
+                imageBlobRepository.save(ImageBlob.builder()
+                        .name(name)
+                        .size(sizeOf(target))
+                        .referenceCount(1L)
+                        .createdAt(now)
+                        .lastReferencedAt(now)
+                        .build());
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        // still there when the same picture was already stored, unless the
+        // stored one was just swept as an orphan before this reference was added
+        if (Files.exists(file) && !Files.exists(target)) {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.deleteIfExists(file);
+        log.debug("Stored profile picture {}", name);
+    }
+
+    /**
+     * Releases a reference to a picture once the current transaction (if any)
+     * commits, deleting the picture when nothing references it anymore. Pictures
+     * that aren't content addressed (Ex. the default picture) are never deleted
+     *
+     * @param name name of the stored picture
+     */
+    public void release(String name) {
+        if (!isContentAddressed(name)) return;
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            releaseNow(name);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) releaseNow(name);
+            }
+        });
+    }
+
+    /**
+     * Deletes a content addressed picture no profile shows, found by a sweep.
+     * A picture may still have references counted (Ex. a reference added by
+     * an upload that failed before its profile was saved), which are dropped
+     * once no reference was added since the cutoff. Checked under the same
+     * row lock as {@link #put}, so a reference being added to the picture keeps it
+     *
+     * @param name   name of the stored picture
+     * @param cutoff references added since then may not be on their profile yet
+     * @return whether the picture was deleted
+     */
+    public boolean deleteIfUnreferenced(String name, LocalDateTime cutoff) {
+        if (!isContentAddressed(name)) return false;
+
+        Boolean deleted = transactionTemplate.execute(status -> {
+            Optional<ImageBlob> blob = imageBlobRepository.findByNameForUpdate(name);
+            if (blob.isPresent()) {
+                LocalDateTime lastReferencedAt = Optional.ofNullable(blob.get().getLastReferencedAt())
+                        .orElse(blob.get().getCreatedAt());
+                if (!lastReferencedAt.isBefore(cutoff) ||
+                        userProfileRepository.existsByProfilePictureFullName(name)) {
+                    return false;
+                }
+                log.warn("Profile picture {} has {} references but no profile shows it, deleting it",
+                        name, blob.get().getReferenceCount());
+                imageBlobRepository.delete(blob.get());
+            }
+            delete(name);
+            return true;
+        });
+        return Boolean.TRUE.equals(deleted);
+    }
+
+    public Path pathOf(String name) {
+        return resolveProfilePicture(getProfilePictureUploadDirectory(), name);
+    }
+
+    private void releaseNow(String name) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    imageBlobRepository.findByNameForUpdate(name).ifPresent(blob -> {
+                        if (blob.getReferenceCount() > 1) {
+                            blob.setReferenceCount(blob.getReferenceCount() - 1);
+                            return;
+                        }
+                        imageBlobRepository.delete(blob);
+                        delete(name);
+                    }));
+        } catch (RuntimeException e) {
+            log.error("Error releasing profile picture {}", name, e);
+        }
+    }
+
+    private static void moveIntoPlace(Path file, Path target) {
+        try {
+            if (Files.exists(target)) return;
+            Files.createDirectories(target.getParent());
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Deletes a picture along with its thumbnails, whether it is referenced or not
+     */
+    void delete(String name) {
+        Path picture = pathOf(name);
+        try {
+            Files.deleteIfExists(picture);
+            thumbnails.deleteAll(picture);
+            cache.invalidateAll(picture);
+            log.debug("Deleted profile picture {}, no longer referenced", name);
+        } catch (IOException e) {
+            log.error("Error deleting profile picture {}", name, e);
+        }
+    }
+}
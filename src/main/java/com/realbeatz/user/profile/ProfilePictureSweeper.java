@@ -0,0 +1,234 @@
+package com.realbeatz.user.profile;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+import static com.realbeatz.configs.FileUploadConfig.*;
+import static com.realbeatz.utils.FileUtils.isContentAddressed;
+import static com.realbeatz.utils.FileUtils.resolveProfilePicture;
+
+/**
+ * Deletes the files no profile picture needs anymore: pictures nothing
+ * references (Ex. left behind by a crash), thumbnails of deleted pictures
+ * and uploads that were staged but never processed. The directories are
+ * walked lazily, a small batch of files at a time so the sweep never holds
+ * millions of paths in memory nor competes with serving pictures for I/O,
+ * and each batch is checked against the database with a single query.
+ * A picture is needed as long as a profile shows it, whatever the number
+ * of references counted for it. Files modified, and pictures referenced,
+ * within the grace period are always kept, so uploads under way are never
+ * mistaken for orphans.
+ */
+@Slf4j
+@Component
+public class ProfilePictureSweeper {
+
+    private final UserProfileRepository userProfileRepository;
+    private final ProfilePictureStore store;
+    private final int batchSize;
+    private final Duration sweepEvery;
+    private final Duration gracePeriod;
+
+    // the sweep under way, null between sweeps
+    private Sweep sweep;
+    private Instant lastSweepStarted;
+
+    public ProfilePictureSweeper(UserProfileRepository userProfileRepository,
+                                 ProfilePictureStore store,
+                                 @Value("${application.profile-picture.sweepBatchSize:500}") int batchSize,
+                                 @Value("${application.profile-picture.sweepEveryMinutes:360}") long sweepEveryMinutes,
+                                 @Value("${application.profile-picture.orphanGracePeriodMinutes:1440}") long gracePeriodMinutes) {
+        this.userProfileRepository = userProfileRepository;
+        this.store = store;
+        this.batchSize = batchSize;
+        this.sweepEvery = Duration.ofMinutes(sweepEveryMinutes);
+        this.gracePeriod = Duration.ofMinutes(gracePeriodMinutes);
+    }
+
+    /**
+     * Sweeps the next batch of files, starting a new sweep once the previous
+     * one is old enough. At most one batch of files is examined per interval,
+     * which caps the files examined per second
+     */
+    @Scheduled(fixedDelayString = "${application.profile-picture.sweepIntervalMillis:1000}")
+    public synchronized void sweepNextBatch() {
+        try {
+            if (sweep == null) {
+                if (lastSweepStarted != null && lastSweepStarted.plus(sweepEvery).isAfter(Instant.now())) return;
+                lastSweepStarted = Instant.now();
+                sweep = new Sweep(lastSweepStarted.minus(gracePeriod));
+            }
+
+            sweep(sweep.next(batchSize));
+            if (sweep.isDone()) finish();
+        } catch (IOException | DirectoryIteratorException | DataAccessException e) {
+            log.error("Error sweeping orphaned profile pictures, stopping this sweep", e);
+            finish();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (sweep != null) sweep.close();
+    }
+
+    private void sweep(List<Path> files) throws IOException {
+        Path uploadDirectory = getProfilePictureUploadDirectory();
+        Path thumbnailDirectory = getProfilePictureThumbnailDirectory();
+        Path stagingDirectory = getProfilePictureStagingDirectory();
+        // stored pictures also have their references counted, older uploads only exist for their profiles
+        List<String> stored = new ArrayList<>();
+        List<String> uploaded = new ArrayList<>();
+
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (file.startsWith(stagingDirectory)) {
+                deleteFile(file);
+            } else if (file.startsWith(thumbnailDirectory)) {
+                if (!Files.exists(resolveProfilePicture(uploadDirectory, name))) deleteFile(file);
+            } else if (isContentAddressed(name)) {
+                stored.add(name);
+            } else if (!name.equals(getDefaultProfilePicFullName())) {
+                uploaded.add(name);
+            }
+        }
+
+        List<String> names = new ArrayList<>(stored);
+        names.addAll(uploaded);
+        Set<String> referenced = names.isEmpty() ? Set.of() :
+                new HashSet<>(userProfileRepository.findProfilePictureFullNamesIn(names));
+
+        LocalDateTime cutoff = LocalDateTime.ofInstant(sweep.cutoff, ZoneId.systemDefault());
+        for (String name : stored) {
+            if (!referenced.contains(name) && store.deleteIfUnreferenced(name, cutoff)) sweep.deleted++;
+        }
+        for (String name : uploaded) {
+            if (referenced.contains(name)) continue;
+            store.delete(name);
+            sweep.deleted++;
+        }
+    }
+
+    private void deleteFile(Path file) throws IOException {
+        if (Files.deleteIfExists(file)) sweep.deleted++;
+    }
+
+    private void finish() {
+        if (sweep == null) return;
+        sweep.close();
+        log.info("Swept profile pictures: examined {} files, deleted {} orphans in {}s",
+                sweep.examined, sweep.deleted,
+                Duration.between(lastSweepStarted, Instant.now()).toSeconds());
+        sweep = null;
+    }
+
+    /**
+     * A walk over the directories holding profile pictures, one after the
+     * other, returning the files last modified before the cutoff. Only the
+     * directories on the path to the current file are open, each read as
+     * the walk goes, and entries deleted since they were listed are skipped
+     */
+    private static class Sweep {
+        private final Instant cutoff;
+        private final Deque<Path> roots = new ArrayDeque<>(List.of(
+                getProfilePictureUploadDirectory(),
+                getProfilePictureThumbnailDirectory(),
+                getProfilePictureStagingDirectory()));
+        private final Deque<DirectoryStream<Path>> directories = new ArrayDeque<>();
+        private final Deque<Iterator<Path>> entries = new ArrayDeque<>();
+        private boolean done = false;
+        private long examined = 0;
+        private long deleted = 0;
+
+        private Sweep(Instant cutoff) {
+            this.cutoff = cutoff;
+        }
+
+        /**
+         * Examines the next entries of the walk
+         *
+         * @param count how many entries to examine at most
+         */
+        private List<Path> next(int count) throws IOException {
+            List<Path> batch = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Path entry = nextEntry();
+                if (entry == null) {
+                    done = true;
+                    break;
+                }
+
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    open(entry);
+                } else if (attributes.isRegularFile()) {
+                    examined++;
+                    if (attributes.lastModifiedTime().toInstant().isBefore(cutoff)) batch.add(entry);
+                }
+            }
+            return batch;
+        }
+
+        private boolean isDone() {
+            return done;
+        }
+
+        private Path nextEntry() throws IOException {
+            while (true) {
+                if (entries.isEmpty()) {
+                    if (roots.isEmpty()) return null;
+                    open(roots.poll());
+                } else if (entries.peek().hasNext()) {
+                    return entries.peek().next();
+                } else {
+                    entries.pop();
+                    directories.pop().close();
+                }
+            }
+        }
+
+        private void open(Path directory) throws IOException {
+            try {
+                DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
+                directories.push(stream);
+                entries.push(stream.iterator());
+            } catch (NoSuchFileException e) {
+                // deleted since it was listed
+            }
+        }
+
+        private void close() {
+            for (DirectoryStream<Path> directory : directories) {
+                try {
+                    directory.close();
+                } catch (IOException e) {
+                    log.warn("Error closing directory swept", e);
+                }
+            }
+            directories.clear();
+            entries.clear();
+        }
+    }
+}
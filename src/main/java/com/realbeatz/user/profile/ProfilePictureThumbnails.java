@@ -0,0 +1,240 @@
+package com.realbeatz.user.profile;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.realbeatz.exceptions.InvalidUserInputException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static com.realbeatz.configs.FileUploadConfig.getProfilePictureThumbnailDirectory;
+import static com.realbeatz.utils.FileUtils.resolveProfilePicture;
+
+/**
+ * Square thumbnails of the profile pictures in a few fixed sizes, so lists of
+ * users don't download the original upload. Thumbnails are generated by a
+ * bounded pool of workers once a picture is uploaded, and on the first request
+ * for a size that is missing. Concurrent requests for the same missing thumbnail
+ * wait for a single generation instead of each decoding the picture.
+ */
+@Slf4j
+@Component
+public class ProfilePictureThumbnails {
+
+    // width and height in pixels of the thumbnails available
+    public static final List<Integer> THUMBNAIL_SIZES = List.of(48, 96, 256);
+    // how long a request waits for a missing thumbnail before the original is served
+    private static final long GENERATION_TIMEOUT_SECONDS = 10;
+
+    private final ThreadPoolExecutor workers;
+    // thumbnail being generated -> its generation, removed once done
+    private final Map<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    public ProfilePictureThumbnails(@Value("${application.profile-picture.thumbnailWorkers:2}") int workers,
+                                    @Value("${application.profile-picture.thumbnailQueueCapacity:100}") int queueCapacity) {
+        this.workers = new ThreadPoolExecutor(
+                workers, workers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("profile-picture-thumbnail-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public static void checkSize(int size) throws InvalidUserInputException {
+        if (!THUMBNAIL_SIZES.contains(size)) {
+            throw new InvalidUserInputException(
+                    "Size: " + size + " is not valid. Valid sizes: " + THUMBNAIL_SIZES);
+        }
+    }
+
+    /**
+     * Queues the generation of every size of a picture that was just stored
+     *
+     * @param picture the original picture
+     */
+    public void generateAll(Path picture) {
+        for (int size : THUMBNAIL_SIZES) {
+            generate(picture, size).whenComplete((thumbnail, e) -> {
+                if (e != null) log.error("Error generating {}px thumbnail of {}", size, picture.getFileName(), e);
+            });
+        }
+    }
+
+    /**
+     * Returns the thumbnail of a picture, generating it first if it is missing
+     *
+     * @param picture the original picture
+     * @param size    one of {@link #THUMBNAIL_SIZES}
+     * @throws IOException when the thumbnail can't be generated in time
+     */
+    public Path getThumbnail(Path picture, int size) throws IOException {
+        Path thumbnail = thumbnailPath(picture, size);
+        if (Files.isRegularFile(thumbnail)) return thumbnail;
+
+        try {
+            return generate(picture, size).get(GENERATION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException("Error generating " + size + "px thumbnail of " + picture.getFileName(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out generating " + size + "px thumbnail of " + picture.getFileName(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted generating " + size + "px thumbnail of " + picture.getFileName(), e);
+        }
+    }
+
+    /**
+     * Deletes every thumbnail of a picture
+     *
+     * @param picture the original picture
+     */
+    public void deleteAll(Path picture) throws IOException {
+        for (int size : THUMBNAIL_SIZES) {
+            Files.deleteIfExists(thumbnailPath(picture, size));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Starts generating a thumbnail unless it is already being generated,
+     * in which case the generation under way is returned
+     */
+    private CompletableFuture<Path> generate(Path picture, int size) {
+        Path thumbnail = thumbnailPath(picture, size);
+        CompletableFuture<Path> generation = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(thumbnail, generation);
+        if (existing != null) return existing;
+
+        try {
+            workers.execute(() -> {
+                try {
+                    generation.complete(write(picture, thumbnail, size));
+                } catch (Throwable e) {
+                    generation.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(thumbnail, generation);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(thumbnail, generation);
+            generation.completeExceptionally(e);
+        }
+        return generation;
+    }
+
+    private static Path write(Path picture, Path thumbnail, int size) throws IOException {
+        // generated by a previous generation that finished in the meantime
+        if (Files.isRegularFile(thumbnail)) return thumbnail;
+
+        String format = formatOf(picture);
+        BufferedImage image = resize(readSquare(picture, size), size, format.equals("png"));
+
+        // written next to its final place then moved, so a half written thumbnail is never served
+        Files.createDirectories(thumbnail.getParent());
+        Path temporary = Files.createTempFile(thumbnail.getParent(), "thumbnail-", ".tmp");
+        try {
+            if (!ImageIO.write(image, format, temporary.toFile())) {
+                throw new IOException("No writer for format: " + format);
+            }
+            Files.move(temporary, thumbnail, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        log.debug("Generated {}px thumbnail of {}", size, picture.getFileName());
+        return thumbnail;
+    }
+
+    /**
+     * Decodes the centered square of a picture, skipping rows and columns while
+     * decoding when the picture is much larger than the thumbnail, so a large
+     * upload is never fully decoded in memory
+     */
+    private static BufferedImage readSquare(Path picture, int size) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(picture.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("File: " + picture.getFileName() + " is not a readable image");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int side = Math.min(width, height);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle((width - side) / 2, (height - side) / 2, side, side));
+                // keep at least twice the pixels of the thumbnail for a smooth downscale
+                int subsampling = Math.max(1, side / (size * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales a square image down to the size passed in, halving it in steps
+     * so no detail is skipped. Smaller images are never scaled up
+     */
+    private static BufferedImage resize(BufferedImage image, int size, boolean hasAlpha) {
+        int type = hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        int target = Math.min(size, image.getWidth());
+        int current = image.getWidth();
+
+        do {
+            current = Math.max(target, current / 2);
+            BufferedImage scaled = new BufferedImage(current, current, type);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(image, 0, 0, current, current, null);
+            } finally {
+                graphics.dispose();
+            }
+            image = scaled;
+        } while (current > target);
+
+        return image;
+    }
+
+    private static String formatOf(Path picture) {
+        String name = picture.getFileName().toString().toLowerCase();
+        return name.endsWith(".png") ? "png" : "jpg";
+    }
+
+    /**
+     * Returns where the thumbnail of a picture is, whether it was generated or not
+     *
+     * @param picture the original picture
+     * @param size    one of {@link #THUMBNAIL_SIZES}
+     */
+    public static Path thumbnailPath(Path picture, int size) {
+        // spread over subdirectories the same way as the pictures
+        return resolveProfilePicture(
+                getProfilePictureThumbnailDirectory().resolve(String.valueOf(size)),
+                picture.getFileName().toString());
+    }
+}
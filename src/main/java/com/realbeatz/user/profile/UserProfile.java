@@ -22,7 +22,7 @@ public class UserProfile {
     @Setter(AccessLevel.NONE)
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_profiles_gen")
-    @SequenceGenerator(name = "user_profiles_gen", sequenceName = "user_profiles_seq", initialValue = 1000, allocationSize = 1)
+    @SequenceGenerator(name = "user_profiles_gen", sequenceName = "user_profiles_seq", initialValue = 1000, allocationSize = 50)
     @Column(name = "profile_id", nullable = false)
     private Long id;
 
@@ -51,11 +51,6 @@ public class UserProfile {
             FileUploadConfig.getDefaultProfilePicFullName();
 
     public Integer getAge() {
-        if (dob == null) return null;
-
-        LocalDate now = LocalDate.now();
-        Integer age = now.getYear() - dob.getYear();
-        if (now.getDayOfYear() < dob.getDayOfYear()) age--;
-        return age;
+        return calculateAge(dob);
     }
 }
@@ -1,8 +1,26 @@
 package com.realbeatz.user.profile;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface UserProfileRepository extends JpaRepository<UserProfile, Long> {
+
+    @Modifying
+    @Query("update UserProfile p set p.profilePictureFullName = ?2 " +
+            "where p.id = (select u.profile.id from User u where u.id = ?1)")
+    int updateProfilePictureFullName(Long userId, String profilePictureFullName);
+
+    @Query("select distinct p.profilePictureFullName from UserProfile p " +
+            "where p.profilePictureFullName in ?1")
+    List<String> findProfilePictureFullNamesIn(Collection<String> profilePictureFullNames);
+
+    @Query("select case when count(p) > 0 then true else false end " +
+            "from UserProfile p where p.profilePictureFullName = ?1")
+    boolean existsByProfilePictureFullName(String profilePictureFullName);
 }
@@ -0,0 +1,7 @@
+package com.realbeatz.user.search;
+
+/**
+ * Number of friends of a user, used to rank the users suggested by search
+ */
+public record FriendCount(Long userId, Long friends) {
+}
@@ -0,0 +1,28 @@
+package com.realbeatz.user.search;
+
+import com.realbeatz.user.User;
+import com.realbeatz.user.profile.UserProfile;
+
+/**
+ * The searchable fields of a user, along with what is shown for each suggestion
+ */
+public record UserSearchDocument(Long userId,
+                                 String username,
+                                 String firstName,
+                                 String lastName,
+                                 String profilePictureFullName) {
+
+    public UserSearchDocument withProfilePictureFullName(String profilePictureFullName) {
+        return new UserSearchDocument(userId, username, firstName, lastName, profilePictureFullName);
+    }
+
+    public static UserSearchDocument of(User user) {
+        UserProfile profile = user.getProfile();
+        return new UserSearchDocument(
+                user.getId(),
+                user.getUsername(),
+                profile.getFirstName(),
+                profile.getLastName(),
+                profile.getProfilePictureFullName());
+    }
+}
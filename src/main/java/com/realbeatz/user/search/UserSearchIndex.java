@@ -0,0 +1,518 @@
+package com.realbeatz.user.search;
+
+import com.realbeatz.user.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.realbeatz.utils.SearchUtils.MAX_USER_SEARCH_RESULTS;
+import static com.realbeatz.utils.SearchUtils.normalize;
+
+/**
+ * In memory trie over the username, first name, last name and full name of
+ * every user, used to suggest users while a name is being typed.
+ * Every node keeps the best ranked users found under it, most friends first,
+ * so a prefix is answered by walking down its characters without visiting the
+ * rest of the subtree. When a user leaves the list of a node that had more
+ * users than it keeps, the list is refilled from the lists of its children,
+ * never from the whole subtree. The node lists are kept up to date as users are
+ * registered, renamed, deleted and make or lose friends. Changes made inside
+ * a transaction are applied once it commits, and dropped if it rolls back.
+ * The index is rebuilt into a new trie that is swapped in once it is built,
+ * after replaying on it the changes committed while it was being built.
+ */
+@Slf4j
+@Component
+public class UserSearchIndex {
+
+    // users kept by each node, the most a single search can return
+    private static final int SUGGESTIONS_PER_NODE = MAX_USER_SEARCH_RESULTS;
+    // longer names are only indexed up to this length to bound the depth of the trie
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final long[] NO_USERS = new long[0];
+
+    private final UserRepository userRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Trie trie = new Trie();
+    // changes committed while a rebuild is running, replayed on the rebuilt trie
+    private List<Consumer<Trie>> changesDuringRebuild;
+
+    private record IndexedUser(UserSearchDocument document, List<String> keys, long friends) {
+
+        IndexedUser withFriends(long friends) {
+            return new IndexedUser(document, keys, Math.max(0, friends));
+        }
+    }
+
+    /**
+     * Node of the trie, children are kept in arrays sorted by character
+     * instead of maps since most nodes only have one or two
+     */
+    private static final class Node {
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        // users with a key ending at this node
+        long[] users = NO_USERS;
+        int userCount;
+        // keys ending at this node or below it
+        int keyCount;
+        // best ranked users with a key at this node or below it, best first
+        long[] top = NO_USERS;
+        int topCount;
+
+        Node child(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            return i < 0 ? null : children[i];
+        }
+
+        Node childOrCreate(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            if (i >= 0) return children[i];
+
+            int insertAt = -i - 1;
+            Node child = new Node();
+            labels = insert(labels, insertAt, label);
+            children = insert(children, insertAt, child);
+            return child;
+        }
+
+        void removeChild(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            if (i < 0) return;
+
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, i);
+            System.arraycopy(labels, i + 1, newLabels, i, labels.length - i - 1);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        // whether users with a key under this node may be missing from top
+        boolean isTruncated() {
+            return keyCount > topCount;
+        }
+    }
+
+    public UserSearchIndex(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Adds a user to the index, replacing their previous names if they were
+     * already indexed. The number of friends of a user already indexed is kept
+     */
+    public void index(UserSearchDocument document) {
+        List<String> keys = keysOf(document);
+
+        afterCommit(trie -> {
+            IndexedUser previous = trie.indexedUsers.get(document.userId());
+            long friends = previous == null ? 0 : previous.friends();
+            if (previous != null) trie.remove(previous);
+            trie.add(new IndexedUser(document, keys, friends));
+        });
+    }
+
+    public void remove(Long userId) {
+        afterCommit(trie -> {
+            IndexedUser indexedUser = trie.indexedUsers.get(userId);
+            if (indexedUser != null) trie.remove(indexedUser);
+        });
+    }
+
+    public void onFriendshipCreated(Long userId, Long friendId) {
+        afterCommit(trie -> {
+            trie.changeFriends(userId, 1);
+            trie.changeFriends(friendId, 1);
+        });
+    }
+
+    public void onFriendshipRemoved(Long userId, Long friendId) {
+        afterCommit(trie -> {
+            trie.changeFriends(userId, -1);
+            trie.changeFriends(friendId, -1);
+        });
+    }
+
+    /**
+     * Returns the users with a name starting with the prefix, users with
+     * the most friends first. Accents and case are ignored
+     *
+     * @param prefix start of a username, first name, last name or full name (Ex. 'taylor sw')
+     * @param limit  max number of users returned, at most {@link #SUGGESTIONS_PER_NODE}
+     */
+    public List<UserSearchDocument> search(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) return List.of();
+
+        lock.readLock().lock();
+        try {
+            Node node = trie.root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) return List.of();
+
+            int size = Math.min(limit, node.topCount);
+            List<UserSearchDocument> users = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                users.add(trie.indexedUsers.get(node.top[i]).document());
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the names and profile picture of a user as last indexed
+     */
+    public Optional<UserSearchDocument> get(Long userId) {
+        lock.readLock().lock();
+        try {
+            IndexedUser indexedUser = trie.indexedUsers.get(userId);
+            return Optional.ofNullable(indexedUser).map(IndexedUser::document);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<UserSearchDocument> get(String username) {
+        lock.readLock().lock();
+        try {
+            Long userId = trie.userIdsByUsername.get(username);
+            return Optional.ofNullable(userId).map(id -> trie.indexedUsers.get(id).document());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return trie.indexedUsers.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes every user by streaming only their names from the users table
+     * into a new trie, ranked by the number of friends they had when the
+     * rebuild started. Searches keep using the current trie until the new
+     * one is built, then the changes committed in the meantime are replayed
+     * on it before it replaces the current one.
+     */
+    @Transactional(readOnly = true)
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        log.info("Rebuilding user search index...");
+        long start = System.currentTimeMillis();
+
+        // recorded before reading anything so no change is lost, a change both
+        // read and replayed is harmless except for a friendship counted twice
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Trie rebuilt = new Trie();
+        try {
+            Map<Long, Long> friendCounts = userRepository.findFriendCounts().stream()
+                    .collect(Collectors.toMap(FriendCount::userId, FriendCount::friends));
+
+            try (Stream<UserSearchDocument> documents = userRepository.streamSearchDocuments()) {
+                documents.forEach(document -> rebuilt.add(new IndexedUser(
+                        document, keysOf(document), friendCounts.getOrDefault(document.userId(), 0L))));
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild.forEach(change -> change.accept(rebuilt));
+            changesDuringRebuild = null;
+            trie = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("User search index rebuilt with {} users in {}ms",
+                size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Applies a change to the index under the write lock once the current
+     * transaction (if any) commits
+     */
+    private void afterCommit(Consumer<Trie> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(change);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) apply(change);
+            }
+        });
+    }
+
+    private void apply(Consumer<Trie> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(trie);
+            if (changesDuringRebuild != null) changesDuringRebuild.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static List<String> keysOf(UserSearchDocument document) {
+        String firstName = normalize(document.firstName());
+        String lastName = normalize(document.lastName());
+
+        return Stream.of(normalize(document.username()), firstName, lastName, firstName + " " + lastName)
+                .map(String::strip)
+                .filter(key -> !key.isEmpty())
+                .map(key -> key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key)
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * The nodes of the trie along with the users indexed in it, which the
+     * nodes are ranked against, so a rebuild can fill a new one on the side
+     */
+    private static final class Trie {
+        final Node root = new Node();
+        // user id -> indexed keys and ranking, used to remove a user's keys when they change
+        final Map<Long, IndexedUser> indexedUsers = new HashMap<>();
+        final Map<String, Long> userIdsByUsername = new HashMap<>();
+        final Comparator<Long> byRank = Comparator
+                .comparingLong((Long userId) -> -indexedUsers.get(userId).friends())
+                .thenComparing(userId -> indexedUsers.get(userId).document().username())
+                .thenComparing(Comparator.naturalOrder());
+
+        void add(IndexedUser indexedUser) {
+            long userId = indexedUser.document().userId();
+            // the user must be indexed before being ranked against others
+            indexedUsers.put(userId, indexedUser);
+            userIdsByUsername.put(indexedUser.document().username(), userId);
+
+            for (String key : indexedUser.keys()) {
+                Node node = root;
+                for (int i = 0; i < key.length(); i++) {
+                    node = node.childOrCreate(key.charAt(i));
+                    node.keyCount++;
+                    offer(node, userId);
+                }
+                node.users = insert(node.users, node.userCount, userId);
+                node.userCount++;
+            }
+        }
+
+        void remove(IndexedUser indexedUser) {
+            long userId = indexedUser.document().userId();
+            List<Node> visited = nodesOf(indexedUser.keys());
+
+            for (String key : indexedUser.keys()) {
+                Node node = root;
+                for (int i = 0; i < key.length(); i++) {
+                    node = node.child(key.charAt(i));
+                    node.keyCount--;
+                }
+                int i = indexOf(node.users, node.userCount, userId);
+                System.arraycopy(node.users, i + 1, node.users, i, node.userCount - i - 1);
+                node.userCount--;
+            }
+
+            for (String key : indexedUser.keys()) {
+                prune(key);
+            }
+
+            // refilled once the user is gone from every key so they aren't picked up again,
+            // children before their parents so a parent is refilled from up to date lists
+            for (Node node : visited) {
+                int i = indexOf(node.top, node.topCount, userId);
+                if (i < 0) continue;
+                removeAt(node, i);
+                if (node.isTruncated()) refill(node);
+            }
+
+            indexedUsers.remove(userId);
+            userIdsByUsername.remove(indexedUser.document().username());
+        }
+
+        void changeFriends(Long userId, long change) {
+            IndexedUser indexedUser = indexedUsers.get(userId);
+            if (indexedUser == null) return;
+            indexedUsers.put(userId, indexedUser.withFriends(indexedUser.friends() + change));
+
+            // children before their parents so a parent is refilled from up to date lists
+            for (Node node : nodesOf(indexedUser.keys())) {
+                // move the user to their new place among the best ranked users
+                int current = indexOf(node.top, node.topCount, userId);
+                if (current >= 0) removeAt(node, current);
+                offer(node, userId);
+
+                // a user that dropped to the last place may now rank below one left out
+                if (change < 0 && node.isTruncated() &&
+                        node.top[node.topCount - 1] == userId) {
+                    refill(node);
+                }
+            }
+        }
+
+        /**
+         * Returns the nodes the keys go through, each once, deepest first
+         */
+        private List<Node> nodesOf(List<String> keys) {
+            Map<Node, Integer> depths = new IdentityHashMap<>();
+            for (String key : keys) {
+                Node node = root;
+                for (int i = 0; i < key.length(); i++) {
+                    node = node.child(key.charAt(i));
+                    depths.putIfAbsent(node, i);
+                }
+            }
+            List<Node> nodes = new ArrayList<>(depths.keySet());
+            nodes.sort(Comparator.comparingInt((Node node) -> depths.get(node)).reversed());
+            return nodes;
+        }
+
+        /**
+         * Puts a user among the best ranked users of a node if they rank high enough
+         */
+        private void offer(Node node, long userId) {
+            if (indexOf(node.top, node.topCount, userId) >= 0) return;
+
+            int insertAt = node.topCount;
+            while (insertAt > 0 && byRank.compare(userId, node.top[insertAt - 1]) < 0) {
+                insertAt--;
+            }
+            if (insertAt >= SUGGESTIONS_PER_NODE) return;
+
+            if (node.topCount == SUGGESTIONS_PER_NODE) {
+                // drop the last one to make room
+                node.topCount--;
+            }
+            if (node.topCount == node.top.length) {
+                node.top = Arrays.copyOf(node.top, Math.min(SUGGESTIONS_PER_NODE, Math.max(1, node.top.length * 2)));
+            }
+            System.arraycopy(node.top, insertAt, node.top, insertAt + 1, node.topCount - insertAt);
+            node.top[insertAt] = userId;
+            node.topCount++;
+        }
+
+        /**
+         * Recomputes the best ranked users of a node, only needed when a user
+         * leaves a node that had more users than it keeps. The best users below
+         * the node are among the users with a key ending at it and the best
+         * users of its children, so only those are ranked, which expects the
+         * lists of the children to be up to date
+         */
+        private void refill(Node node) {
+            // min heap holding the best users seen so far
+            PriorityQueue<Long> best = new PriorityQueue<>(SUGGESTIONS_PER_NODE + 1, byRank.reversed());
+            Set<Long> seen = new HashSet<>();
+
+            for (int i = 0; i < node.userCount; i++) {
+                if (!seen.add(node.users[i])) continue;
+                best.offer(node.users[i]);
+                if (best.size() > SUGGESTIONS_PER_NODE) best.poll();
+            }
+            for (Node child : node.children) {
+                for (int i = 0; i < child.topCount; i++) {
+                    if (!seen.add(child.top[i])) continue;
+                    best.offer(child.top[i]);
+                    if (best.size() > SUGGESTIONS_PER_NODE) best.poll();
+                }
+            }
+
+            node.top = new long[best.size()];
+            node.topCount = best.size();
+            for (int i = node.topCount - 1; i >= 0; i--) {
+                node.top[i] = best.poll();
+            }
+        }
+
+        /**
+         * Removes the nodes of a key that no other key goes through anymore
+         */
+        private void prune(String key) {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                Node child = node.child(key.charAt(i));
+                if (child == null) return;
+                if (child.keyCount == 0) {
+                    node.removeChild(key.charAt(i));
+                    return;
+                }
+                node = child;
+            }
+        }
+    }
+
+    private static void removeAt(Node node, int i) {
+        System.arraycopy(node.top, i + 1, node.top, i, node.topCount - i - 1);
+        node.topCount--;
+    }
+
+    private static int indexOf(long[] values, int count, long value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private static long[] insert(long[] values, int count, long value) {
+        if (count == values.length) {
+            values = Arrays.copyOf(values, Math.max(1, values.length * 2));
+        }
+        values[count] = value;
+        return values;
+    }
+
+    private static char[] insert(char[] values, int at, char value) {
+        char[] copy = new char[values.length + 1];
+        System.arraycopy(values, 0, copy, 0, at);
+        copy[at] = value;
+        System.arraycopy(values, at, copy, at + 1, values.length - at);
+        return copy;
+    }
+
+    private static Node[] insert(Node[] values, int at, Node value) {
+        Node[] copy = new Node[values.length + 1];
+        System.arraycopy(values, 0, copy, 0, at);
+        copy[at] = value;
+        System.arraycopy(values, at, copy, at + 1, values.length - at);
+        return copy;
+    }
+}
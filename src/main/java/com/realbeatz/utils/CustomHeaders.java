@@ -6,6 +6,7 @@ public class CustomHeaders {
     public static final String ACCESS_TOKEN = "access_token";
     public static final String REFRESH_TOKEN = "refresh_token";
     public static final String USERNAME = "authenticated_username";
+    public static final String NEXT_CURSOR = "next_cursor";
 
     // JWT Claim Keys
     public static final String AUTHORITY = "authority";
@@ -0,0 +1,77 @@
+package com.realbeatz.utils;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+
+public class ETagUtils {
+    // responses may be cached by the client but must be revalidated before every use
+    public static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    /**
+     * A response body along with its ETag, the body is left out
+     * when the client already has the current version
+     */
+    public record Tagged<T>(String etag, @Nullable T body) {
+
+        public static <T> Tagged<T> notModified(String etag) {
+            return new Tagged<>(etag, null);
+        }
+
+        public boolean isNotModified() {
+            return body == null;
+        }
+    }
+
+    /**
+     * Builds a strong ETag from the versions of everything a response is
+     * made of, so the body never has to be serialized to be tagged
+     *
+     * @param versions version numbers, counts or ids that change whenever the response does
+     * @return the quoted ETag
+     */
+    public static String strongETag(Object... versions) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (Object version : versions) {
+            hasher.putString(String.valueOf(version), StandardCharsets.UTF_8)
+                    .putChar('|');
+        }
+        return "\"" + hasher.hash() + "\"";
+    }
+
+    /**
+     * Checks whether an If-None-Match header matches an ETag
+     *
+     * @param ifNoneMatch value of the If-None-Match header, null if absent
+     * @param etag        current ETag of the resource
+     */
+    public static boolean matches(@Nullable String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            // If-None-Match uses weak comparison
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    public static <T> ResponseEntity<T> toResponse(Tagged<T> tagged) {
+        if (tagged.isNotModified()) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(tagged.etag())
+                    .cacheControl(REVALIDATE)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(tagged.etag())
+                .cacheControl(REVALIDATE)
+                .body(tagged.body());
+    }
+}
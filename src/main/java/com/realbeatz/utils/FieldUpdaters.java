@@ -0,0 +1,134 @@
+package com.realbeatz.utils;
+
+import com.realbeatz.exceptions.InvalidUserInputException;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Sets the updatable fields of an entity from the string values of a PATCH request.
+ * The setter of every field is compiled into a {@link BiConsumer} once, so applying
+ * an update is a map lookup and a direct call instead of a reflective field write
+ *
+ * @param <T> type of the entity being updated
+ */
+public class FieldUpdaters<T> {
+    // how the string sent by the client is turned into the type of each field
+    private static final Map<Class<?>, Function<String, ?>> CONVERTERS = Map.of(
+            String.class, Function.identity(),
+            LocalDate.class, LocalDate::parse,
+            Integer.class, Integer::valueOf,
+            Long.class, Long::valueOf,
+            Boolean.class, Boolean::valueOf);
+
+    private final Map<String, FieldUpdater<T>> updaters;
+
+    private FieldUpdaters(Map<String, FieldUpdater<T>> updaters) {
+        this.updaters = Map.copyOf(updaters);
+    }
+
+    /**
+     * Compiles the setters of the fields passed in, failing at startup
+     * if a field has no public setter or its type can't be converted
+     *
+     * @param type   the entity class
+     * @param fields names of the updatable fields
+     */
+    public static <T> FieldUpdaters<T> of(Class<T> type, Collection<String> fields) {
+        Map<String, FieldUpdater<T>> updaters = new HashMap<>();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            for (String name : fields) {
+                Field field = ReflectionUtils.findField(type, name);
+                if (field == null) {
+                    throw new IllegalArgumentException(
+                            "Field: " + name + " doesn't exist in " + type.getSimpleName());
+                }
+                Function<String, ?> converter = CONVERTERS.get(field.getType());
+                if (converter == null) {
+                    throw new IllegalArgumentException(
+                            "Field: " + name + " of type " + field.getType().getSimpleName() +
+                                    " can't be updated from a string");
+                }
+
+                MethodHandle setter = lookup.findVirtual(type,
+                        "set" + StringUtils.capitalize(name),
+                        MethodType.methodType(void.class, field.getType()));
+                updaters.put(name, new FieldUpdater<>(compile(lookup, setter), converter));
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException(
+                    "Error compiling field updaters of " + type.getSimpleName(), e);
+        }
+        return new FieldUpdaters<>(updaters);
+    }
+
+    /**
+     * Turns a setter into a lambda, which unlike a {@link MethodHandle}
+     * kept in a map is inlined by the JIT like any other call
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> BiConsumer<T, Object> compile(MethodHandles.Lookup lookup,
+                                                     MethodHandle setter) throws Throwable {
+        CallSite site = LambdaMetafactory.metafactory(
+                lookup,
+                "accept",
+                MethodType.methodType(BiConsumer.class),
+                MethodType.methodType(void.class, Object.class, Object.class),
+                setter,
+                setter.type());
+        return (BiConsumer<T, Object>) site.getTarget().invoke();
+    }
+
+    public boolean isUpdatable(String field) {
+        return updaters.containsKey(field);
+    }
+
+    public Set<String> getFields() {
+        return updaters.keySet();
+    }
+
+    /**
+     * Converts the value to the type of the field and sets it on the target
+     *
+     * @throws InvalidUserInputException if the value can't be converted
+     */
+    public void update(T target, String field, String value) throws InvalidUserInputException {
+        FieldUpdater<T> updater = updaters.get(field);
+        if (updater == null) {
+            throw new IllegalArgumentException(
+                    "Field: " + field + " is not updatable, " +
+                            "check your invalid field filter");
+        }
+        updater.setter().accept(target, convert(updater, field, value));
+    }
+
+    private static Object convert(FieldUpdater<?> updater,
+                                  String field,
+                                  String value) throws InvalidUserInputException {
+        if (value == null) return null;
+        try {
+            return updater.converter().apply(value);
+        } catch (RuntimeException e) {
+            throw new InvalidUserInputException(
+                    "Input: " + value + " for field: " + field + " is not valid");
+        }
+    }
+
+    private record FieldUpdater<T>(BiConsumer<T, Object> setter,
+                                   Function<String, ?> converter) {
+    }
+}
@@ -0,0 +1,225 @@
+package com.realbeatz.utils;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.realbeatz.utils.ETagUtils.matches;
+import static com.realbeatz.utils.ETagUtils.strongETag;
+
+public class FileResponseUtils {
+    // for files that never change under the same name, clients don't even revalidate them
+    public static final String IMMUTABLE =
+            CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().getHeaderValue() + ", immutable";
+
+    // request attributes Tomcat reads to send a file with sendfile once the headers are written
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Serves a file without reading it into memory. Under Tomcat the file is
+     * handed to the connector and sent with sendfile, straight from the page
+     * cache to the socket, otherwise it is copied to the response through a
+     * small buffer. The response carries an ETag and Last-Modified to answer
+     * conditional requests with 304, and a single byte range is answered with
+     * 206 (several ranges are answered as multipart/byteranges by Spring)
+     *
+     * @param file         the file to serve
+     * @param cacheControl value of the Cache-Control header (Ex. {@link #IMMUTABLE})
+     * @param request      the request, for its conditional and Range headers
+     */
+    public static ResponseEntity<?> toFileResponse(Path file,
+                                                   String cacheControl,
+                                                   HttpServletRequest request) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attributes.size();
+        HttpHeaders headers = headersOf(file.getFileName().toString(), length,
+                attributes.lastModifiedTime().toMillis(), cacheControl);
+
+        if (isNotModified(request, headers)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        headers.setContentType(MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM));
+        Resource resource = new FileSystemResource(file);
+        String range = request.getHeader(HttpHeaders.RANGE);
+
+        if (!canSendfile(request)) {
+            // Spring answers Range requests made for a resource itself
+            return ResponseEntity.ok().headers(headers).body(resource);
+        }
+
+        if (range == null) {
+            headers.setContentLength(length);
+            sendfile(request, file, 0, length);
+            return ResponseEntity.ok().headers(headers).build();
+        }
+
+        ResourceRegion region;
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            if (ranges.size() != 1) return ResponseEntity.ok().headers(headers).body(resource);
+            region = ranges.get(0).toResourceRegion(resource);
+        } catch (IllegalArgumentException e) {
+            // let Spring answer ranges that can't be satisfied with 416
+            return ResponseEntity.ok().headers(headers).body(resource);
+        }
+
+        long start = region.getPosition();
+        long end = start + region.getCount();
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+        headers.setContentLength(region.getCount());
+        sendfile(request, file, start, end);
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).build();
+    }
+
+    /**
+     * Serves the content of a file held in memory, with the same headers as
+     * {@link #toFileResponse} would send for the file. Byte ranges are read
+     * straight from their offset in the buffer
+     *
+     * @param content      the content of the file, read from its position to its limit
+     * @param fileName     name of the file, for its ETag and Content-Type
+     * @param lastModified when the file was last modified, in milliseconds
+     * @param cacheControl value of the Cache-Control header (Ex. {@link #IMMUTABLE})
+     * @param request      the request, for its conditional and Range headers
+     */
+    public static ResponseEntity<?> toBufferResponse(ByteBuffer content,
+                                                     String fileName,
+                                                     long lastModified,
+                                                     String cacheControl,
+                                                     HttpServletRequest request) {
+        HttpHeaders headers = headersOf(fileName, content.remaining(), lastModified, cacheControl);
+
+        if (isNotModified(request, headers)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        headers.setContentType(MediaTypeFactory.getMediaType(fileName)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM));
+        // Spring answers Range requests made for a resource itself
+        return ResponseEntity.ok().headers(headers).body(new ByteBufferResource(content, fileName));
+    }
+
+    private static HttpHeaders headersOf(String fileName, long length, long lastModified, String cacheControl) {
+        // HTTP dates only have second precision
+        lastModified = lastModified / 1000 * 1000;
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(strongETag(fileName, length, lastModified));
+        headers.setLastModified(lastModified);
+        headers.setCacheControl(cacheControl);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        return headers;
+    }
+
+    private static boolean isNotModified(HttpServletRequest request, HttpHeaders headers) {
+        String etag = headers.getETag();
+        long lastModified = headers.getLastModified();
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        // If-Modified-Since is ignored when If-None-Match is sent
+        if (ifNoneMatch != null) return matches(ifNoneMatch, etag);
+
+        try {
+            long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean canSendfile(HttpServletRequest request) {
+        // the body of a HEAD response is never sent
+        return HttpMethod.GET.matches(request.getMethod()) &&
+                Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT));
+    }
+
+    private static void sendfile(HttpServletRequest request, Path file, long start, long end) throws IOException {
+        request.setAttribute(SENDFILE_FILENAME, file.toRealPath().toString());
+        request.setAttribute(SENDFILE_START, start);
+        request.setAttribute(SENDFILE_END, end);
+    }
+
+    /**
+     * A resource reading a buffer, each stream reading its own view of it so
+     * the buffer can be served to several requests at once
+     */
+    private static class ByteBufferResource extends AbstractResource {
+        private final ByteBuffer content;
+        private final String fileName;
+
+        private ByteBufferResource(ByteBuffer content, String fileName) {
+            this.content = content;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteBufferInputStream(content.duplicate());
+        }
+
+        @Override
+        public long contentLength() {
+            return content.remaining();
+        }
+
+        @Override
+        public String getFilename() {
+            return fileName;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Buffer of " + fileName;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.min(Math.max(n, 0), buffer.remaining());
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
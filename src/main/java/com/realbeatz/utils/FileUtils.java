@@ -2,17 +2,20 @@ package com.realbeatz.utils;
 
 import com.realbeatz.exceptions.IllegalFileTypeException;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.tomcat.util.http.fileupload.impl.FileSizeLimitExceededException;
+import org.apache.tomcat.util.http.fileupload.util.LimitedInputStream;
 import org.springframework.context.annotation.Bean;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.StringUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
-import java.util.Base64;
+import java.util.Optional;
+import java.util.regex.Pattern;
 
 import static com.realbeatz.configs.FileUploadConfig.PROFILE_PICTURE_UPLOAD_DIRECTORY_PATH;
 
@@ -21,49 +24,95 @@ public class FileUtils {
 
     private static final String[] ACCEPTABLE_IMAGE_EXTENSIONS =
             {".png", ".jpeg", ".jpg"};
-    private static final long MAX_PROFILE_PIC_BYTE_SIZE = 10485760L;
+    public static final long MAX_PROFILE_PIC_BYTE_SIZE = 10485760L;
+    // the first bytes of every file in each format
+    private static final byte[] PNG_SIGNATURE =
+            {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] JPEG_SIGNATURE =
+            {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    // hex SHA-256 of the picture followed by its extension
+    private static final Pattern CONTENT_ADDRESSED_NAME =
+            Pattern.compile("[0-9a-f]{64}\\.[a-z]+");
 
 
     /**
-     * Stores a picture file into the default directory for profile pictures
+     * Checks only the name of a picture file, for when its content isn't available yet
      *
-     * @param file the picture file to be stored
-     * @return The full file name with a unique file code attached to the beginning (Ex. 'XXXXXXXX-filename.ext')
-     * @throws IllegalFileTypeException when the file passed in is not an acceptable
-     *                                  image file
+     * @throws IllegalFileTypeException when the file name doesn't have an acceptable image extension
      */
-    public static String saveProfilePicture(MultipartFile file, Path targetDirectory) throws IllegalFileTypeException, IOException {
-        log.debug("Saving profile picture: {}", file.getOriginalFilename());
-        System.out.println("saving profile picture: " + file.getOriginalFilename());
-        validateProfilePicture(file);
-        // create file code
-        String fileCode = RandomStringUtils.randomAlphabetic(8);
-        String fullFileName = fileCode + "-" + file.getOriginalFilename();
-        log.debug("Generated file code: {}, full file name: {}", fileCode, fullFileName);
-
-        Path targetPath = targetDirectory.resolve(fullFileName);
-        Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-        log.debug("File: {} saved successfully.", fullFileName);
-
-        return fullFileName;
-    }
-
-    private static void validateProfilePicture(MultipartFile file) throws IllegalFileTypeException, FileSizeLimitExceededException {
-        String filename = file.getOriginalFilename();
-        if (!isAcceptableImageFile(filename)) {
+    public static void checkProfilePictureName(String filename) throws IllegalFileTypeException {
+        if (filename == null || !isAcceptableImageFile(filename)) {
             throw new IllegalFileTypeException(String.format(
                     "File: '%s' is not a valid image file. Valid file types: %s",
                     filename, Arrays.toString(ACCEPTABLE_IMAGE_EXTENSIONS)
             ));
         }
+    }
+
+    /**
+     * Opens an uploaded picture to be read while it is streamed. Its first bytes
+     * are read right away and must be the signature of the image format its
+     * extension names, and reading past the maximum upload size fails, so an
+     * invalid upload is rejected without reading the rest of it
+     *
+     * @param content  the picture as it is uploaded
+     * @param filename name of the file as uploaded
+     * @return the whole picture, including the bytes already checked
+     * @throws IllegalFileTypeException when the file isn't a PNG or JPEG image matching its extension
+     * @throws IOException when the picture can't be read, reading it throws
+     *                     {@link FileSizeLimitExceededException} once past the maximum upload size
+     */
+    public static InputStream openProfilePicture(InputStream content, String filename) throws IllegalFileTypeException, IOException {
+        checkProfilePictureName(filename);
 
-        if (file.getSize() > MAX_PROFILE_PIC_BYTE_SIZE) {
-            throw new FileSizeLimitExceededException(String.format(
-                    "File: '%s' exceeds the maximum upload size of %dMB.",
-                    filename, bytesToMB(MAX_PROFILE_PIC_BYTE_SIZE)),
-                    file.getSize(),
-                    MAX_PROFILE_PIC_BYTE_SIZE);
+        boolean isPng = filename.endsWith(".png");
+        byte[] signature = isPng ? PNG_SIGNATURE : JPEG_SIGNATURE;
+        byte[] head = content.readNBytes(signature.length);
+        if (!Arrays.equals(head, signature)) {
+            throw new IllegalFileTypeException(String.format(
+                    "File: '%s' is not a valid %s image.", filename, isPng ? "PNG" : "JPEG"));
         }
+
+        InputStream picture = new SequenceInputStream(new ByteArrayInputStream(head), content);
+        return new LimitedInputStream(picture, MAX_PROFILE_PIC_BYTE_SIZE) {
+            @Override
+            protected void raiseError(long max, long count) throws IOException {
+                throw new FileSizeLimitExceededException(String.format(
+                        "File: '%s' exceeds the maximum upload size of %dMB.",
+                        filename, bytesToMB(max)),
+                        count,
+                        max);
+            }
+        };
+    }
+
+    /**
+     * Returns the extension of a picture file name in lower case (Ex. '.png')
+     */
+    public static String getProfilePictureExtension(String filename) {
+        String extension = StringUtils.getFilenameExtension(filename);
+        return extension == null ? "" : "." + extension.toLowerCase();
+    }
+
+    /**
+     * Resolves the path of a profile picture in a directory. Content addressed
+     * pictures are spread over two levels of subdirectories named after the first
+     * bytes of their hash (Ex. 'ab/cd/abcd...ef.png'), so no directory ever holds
+     * more than a few files and lookups stay fast with millions of pictures.
+     * Any other name (Ex. the default picture) sits in the directory itself
+     */
+    public static Path resolveProfilePicture(Path directory, String fileFullName) {
+        if (!CONTENT_ADDRESSED_NAME.matcher(fileFullName).matches()) {
+            return directory.resolve(fileFullName);
+        }
+        return directory
+                .resolve(fileFullName.substring(0, 2))
+                .resolve(fileFullName.substring(2, 4))
+                .resolve(fileFullName);
+    }
+
+    public static boolean isContentAddressed(String fileFullName) {
+        return fileFullName != null && CONTENT_ADDRESSED_NAME.matcher(fileFullName).matches();
     }
 
     private static long bytesToMB(long bytes) {
@@ -83,23 +132,31 @@ public class FileUtils {
     }
 
     /**
-     * Fetches the profile picture requested as a byte array
-     * @param fileFullName the file name with file code attached (Ex. 'XXXXXXXX-filename.ext')
-     * @return a byte array representing the requested profile picture
-     * @throws IOException when the picture cannot be fetched
+     * Finds the file of the profile picture requested
+     *
+     * @param fileFullName the file name (Ex. '<sha-256 of the picture>.png')
+     * @return the path to the picture, empty if there is no such picture
+     * or the name points outside the profile pictures directory
      */
-    public static byte[] getProfilePictureAsBinary(String fileFullName) throws IOException {
-        log.debug("Fetching profile picture: {}", fileFullName);
-        Path filePath =
-                Path.of(PROFILE_PICTURE_UPLOAD_DIRECTORY_PATH)
-                        .resolve(fileFullName);
-        log.debug("Fetching profile picture {} from {}", fileFullName, filePath);
-        return Files.readAllBytes(filePath);
+    public static Optional<Path> findProfilePicture(String fileFullName) {
+        return getProfilePicturePath(fileFullName).filter(Files::isRegularFile);
     }
 
-    public static byte[] getProfilePictureAsBase64(String fileFullName) throws IOException {
-        return Base64.getEncoder()
-                .encode(getProfilePictureAsBinary(fileFullName));
+    /**
+     * Resolves where the file of a profile picture would be, without checking it exists
+     *
+     * @param fileFullName the file name (Ex. '<sha-256 of the picture>.png')
+     * @return the path to the picture, empty if the name points outside the
+     * profile pictures directory
+     */
+    public static Optional<Path> getProfilePicturePath(String fileFullName) {
+        Path directory = Path.of(PROFILE_PICTURE_UPLOAD_DIRECTORY_PATH).normalize();
+        Path filePath = resolveProfilePicture(directory, fileFullName).normalize();
+        log.debug("Resolved profile picture {} to {}", fileFullName, filePath);
+
+        // content addressed names are only made of hex digits, any other name must not leave the directory
+        boolean insideDirectory = isContentAddressed(fileFullName) || directory.equals(filePath.getParent());
+        return insideDirectory ? Optional.of(filePath) : Optional.empty();
     }
 
 
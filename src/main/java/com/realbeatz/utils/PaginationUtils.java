@@ -0,0 +1,142 @@
+package com.realbeatz.utils;
+
+import com.realbeatz.exceptions.InvalidUserInputException;
+import com.realbeatz.utils.ETagUtils.Tagged;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import static com.realbeatz.utils.CustomHeaders.NEXT_CURSOR;
+import static com.realbeatz.utils.ETagUtils.REVALIDATE;
+
+public class PaginationUtils {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final String CURSOR_SEPARATOR = "|";
+
+    /**
+     * Position of the last item of a page in a list ordered by (time desc, id desc)
+     */
+    public record Cursor(LocalDateTime time, Long id) {
+    }
+
+    /**
+     * One page of items and the opaque cursor pointing at the next page
+     * (null when there are no more items)
+     */
+    public record CursorPage<T>(List<T> items, String nextCursor) {
+        public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+            List<R> mapped = items.stream()
+                    .<R>map(mapper)
+                    .toList();
+            return new CursorPage<>(mapped, nextCursor);
+        }
+    }
+
+    /**
+     * Clamps the page size requested by a client to [1, MAX_PAGE_SIZE]
+     *
+     * @param requested the page size requested, null for the default page size
+     * @return a valid page size
+     */
+    public static int pageSize(Integer requested) {
+        if (requested == null || requested < 1) return DEFAULT_PAGE_SIZE;
+        return Math.min(requested, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Returns a pageable that fetches one item more than the page size,
+     * used to find out if a next page exists without a count query
+     */
+    public static Pageable lookAhead(int pageSize) {
+        return PageRequest.of(0, pageSize + 1);
+    }
+
+    public static String encodeCursor(LocalDateTime time, Long id) {
+        String raw = time + CURSOR_SEPARATOR + id;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor previously created by {@link #encodeCursor(LocalDateTime, Long)}
+     *
+     * @param cursor the opaque cursor sent by the client, may be null
+     * @return the decoded cursor, or null when no cursor was sent
+     * @throws InvalidUserInputException when the cursor is malformed
+     */
+    public static Cursor decodeCursor(String cursor) throws InvalidUserInputException {
+        if (cursor == null || cursor.isBlank()) return null;
+
+        try {
+            String raw = new String(
+                    Base64.getUrlDecoder().decode(cursor),
+                    StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(CURSOR_SEPARATOR);
+            return new Cursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.valueOf(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidUserInputException("Cursor: " + cursor + " is not valid");
+        }
+    }
+
+    /**
+     * Trims a look-ahead result down to the page size and creates
+     * the cursor of the next page if the extra item was found
+     *
+     * @param items    items fetched with {@link #lookAhead(int)}
+     * @param pageSize the page size requested
+     * @param time     extracts the ordering time of an item
+     * @param id       extracts the id of an item
+     */
+    public static <T> CursorPage<T> toPage(List<T> items,
+                                           int pageSize,
+                                           Function<T, LocalDateTime> time,
+                                           Function<T, Long> id) {
+        if (items.size() <= pageSize) {
+            return new CursorPage<>(items, null);
+        }
+
+        List<T> page = items.subList(0, pageSize);
+        T last = page.get(pageSize - 1);
+        return new CursorPage<>(page, encodeCursor(time.apply(last), id.apply(last)));
+    }
+
+    /**
+     * Creates a 200 response with the items of the page as the body and
+     * the cursor of the next page in the {@link CustomHeaders#NEXT_CURSOR} header
+     */
+    public static <T> ResponseEntity<List<T>> toResponse(CursorPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR, page.nextCursor());
+        }
+        return response.body(page.items());
+    }
+
+    /**
+     * Same as {@link #toResponse(CursorPage)} for a page tagged with an ETag,
+     * answering 304 Not Modified when the client already has the page
+     */
+    public static <T> ResponseEntity<List<T>> toResponse(Tagged<CursorPage<T>> tagged) {
+        if (tagged.isNotModified()) {
+            return ETagUtils.toResponse(Tagged.notModified(tagged.etag()));
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(tagged.etag())
+                .cacheControl(REVALIDATE);
+        if (tagged.body().nextCursor() != null) {
+            response.header(NEXT_CURSOR, tagged.body().nextCursor());
+        }
+        return response.body(tagged.body().items());
+    }
+}
@@ -1,48 +1,25 @@
 package com.realbeatz.utils;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.Predicate;
+import com.realbeatz.post.Post;
 
 public class PostUtils {
     public static final int MAX_CONTENT_LENGTH = 280;
     public static final int MAX_SONG_TITLE_LENGTH = 100;
     public static final int MAX_ARTISTS_LENGTH = 100;
-    private static final Map<String, Predicate<Object>> postContentChecks = new HashMap<>();
+    // number of newest comments included with each post
+    public static final int LATEST_COMMENTS_PREVIEW_SIZE = 3;
+    // how much a search term found in each field of a post counts
+    public static final int SONG_TITLE_SEARCH_WEIGHT = 3;
+    public static final int ARTISTS_SEARCH_WEIGHT = 2;
+    public static final int CONTENT_SEARCH_WEIGHT = 1;
+    // posts written per batch of an import, same as hibernate.jdbc.batch_size
+    public static final int IMPORT_BATCH_SIZE = 50;
+    public static final int MAX_REPORTED_IMPORT_FAILURES = 1000;
 
-    /**
-     * Returns a hashmap containing all the checks needed for
-     * validating each field of a post mapped to the name
-     * of the field being validated
-     * @return hashmap containing all the checks
-     */
-    public static Map<String, Predicate<Object>> getPostChecks() {
-        if (postContentChecks.isEmpty()) {
-            initializeChecks();
-        }
-        return postContentChecks;
-    }
-
-    /**
-     * Adds the appropriate input validation for each field of a post
-     */
-    private static void initializeChecks() {
-
-        Predicate<Object> contentCheck = content -> {
-            String contentString = (String) content;
-            return contentString.length() <= MAX_CONTENT_LENGTH;
-        };
-        Predicate<Object> songTitleCheck = songTitle -> {
-            String songTitleString = (String) songTitle;
-            return songTitleString.length() <= MAX_SONG_TITLE_LENGTH;
-        };
-        Predicate<Object> artistsCheck = artists -> {
-            String artistsString = (String) artists;
-            return artistsString.length() <= MAX_ARTISTS_LENGTH;
-        };
-
-        postContentChecks.put("content", contentCheck);
-        postContentChecks.put("songTitle", songTitleCheck);
-        postContentChecks.put("artists", artistsCheck);
-    }
+    // input validation checks for all the fields of a post set by its creator
+    public static final ValidationSchema<Post> POST_SCHEMA = ValidationSchema.<Post>builder()
+            .maxLength("content", Post::getContent, MAX_CONTENT_LENGTH)
+            .maxLength("songTitle", Post::getSongTitle, MAX_SONG_TITLE_LENGTH)
+            .maxLength("artists", Post::getArtists, MAX_ARTISTS_LENGTH)
+            .build();
 }
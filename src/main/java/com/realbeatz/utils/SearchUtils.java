@@ -0,0 +1,76 @@
+package com.realbeatz.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+public class SearchUtils {
+    public static final String PREFIX_MARKER = "*";
+    public static final int DEFAULT_SEARCH_RESULTS = 20;
+    public static final int MAX_SEARCH_RESULTS = 100;
+    public static final int DEFAULT_USER_SEARCH_RESULTS = 10;
+    public static final int MAX_USER_SEARCH_RESULTS = 20;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern TOKEN_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}*]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * Splits text into lowercase search terms with accents removed
+     * (Ex. 'Beyoncé - Halo' becomes ['beyonce', 'halo'])
+     *
+     * @param text the text to tokenize, may be null
+     * @return the terms in the order they appear in the text
+     */
+    public static List<String> tokenize(String text) {
+        return tokenize(text, false);
+    }
+
+    /**
+     * Tokenizes a search query the same way as {@link #tokenize(String)} but keeps
+     * the trailing '*' of terms used as prefixes (Ex. 'beyon*' matches 'beyonce')
+     */
+    public static List<String> tokenizeQuery(String query) {
+        return tokenize(query, true);
+    }
+
+    public static boolean isPrefixTerm(String term) {
+        return term.endsWith(PREFIX_MARKER);
+    }
+
+    /**
+     * Lowercases text and removes its accents, collapsing every run of whitespace
+     * into a single space (Ex. ' Beyoncé  Knowles' becomes 'beyonce knowles')
+     *
+     * @param text the text to normalize, may be null
+     * @return the normalized text, empty if the text is null or blank
+     */
+    public static String normalize(String text) {
+        if (text == null || text.isBlank()) return "";
+
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text.strip(), Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        return WHITESPACE.matcher(normalized).replaceAll(" ");
+    }
+
+    private static List<String> tokenize(String text, boolean keepPrefixMarker) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) return terms;
+
+        String normalized = normalize(text);
+
+        for (String token : TOKEN_SEPARATORS.split(normalized)) {
+            String term = token.replace(PREFIX_MARKER, "");
+            if (term.isEmpty()) continue;
+
+            if (keepPrefixMarker && token.endsWith(PREFIX_MARKER)) {
+                term += PREFIX_MARKER;
+            }
+            terms.add(term);
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,64 @@
+package com.realbeatz.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+public class StreamingUtils {
+    // rows fetched from the database per round trip by the queries behind streamed responses
+    public static final String STREAM_FETCH_SIZE = "1000";
+
+    /**
+     * Writes every item of an export to the response as newline delimited
+     * JSON while it is being read from the database, so the items are
+     * never all held in memory at once
+     *
+     * @param objectMapper mapper used to serialize each item
+     * @param export       reads the items and hands them one by one to the consumer passed in
+     */
+    public static <T> ResponseEntity<StreamingResponseBody> toNdjsonResponse(ObjectMapper objectMapper,
+                                                                             Export<T> export) {
+        // flushing after every item would send a packet per row, the generator buffers instead
+        ObjectWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                try {
+                    export.forEach(item -> {
+                        try {
+                            writer.writeValue(generator, item);
+                            generator.writeRaw('\n');
+                        } catch (IOException e) {
+                            // the client went away, stop reading from the database
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Source of the items of a streamed response
+     */
+    @FunctionalInterface
+    public interface Export<T> {
+        void forEach(Consumer<T> consumer);
+    }
+}
@@ -1,12 +1,10 @@
 package com.realbeatz.utils;
 
-import com.realbeatz.user.User;
-import com.realbeatz.user.profile.UserProfile;
+import com.realbeatz.payloads.requests.RegisterUserRequest;
 
 import java.time.LocalDate;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.Predicate;
+import java.time.ZoneId;
+import java.util.function.Function;
 
 public class UserUtils {
     public static final int MAX_USERNAME_LENGTH = 30;
@@ -15,58 +13,59 @@ public class UserUtils {
     public static final int MAX_LAST_NAME_LENGTH = 40;
     public static final int MAX_FIRST_NAME_LENGTH = 50;
     public static final int MAX_BIO_LENGTH = 150;
+    // max number of ids and usernames looked up by a single batch request
+    public static final int MAX_USERS_PER_BATCH = 100;
 
-    public static final Map<String, Predicate<Object>> userAccountChecks = new HashMap<>();
+    private static volatile Today currentDay = Today.now();
+
+    // input validation checks for all the fields of a user account, also used
+    // for updates to the User and UserProfile fields of the same name
+    public static final ValidationSchema<RegisterUserRequest> USER_ACCOUNT_SCHEMA =
+            ValidationSchema.<RegisterUserRequest>builder()
+                    .maxLength("username", RegisterUserRequest::getUsername, MAX_USERNAME_LENGTH)
+                    .maxLength("password", RegisterUserRequest::getPassword, MAX_PASSWORD_LENGTH)
+                    .maxLength("lastName", RegisterUserRequest::getLastName, MAX_LAST_NAME_LENGTH)
+                    .maxLength("firstName", RegisterUserRequest::getFirstName, MAX_FIRST_NAME_LENGTH)
+                    .field("dob", RegisterUserRequest::getDob, LocalDate::parse,
+                            dob -> dob.isBefore(today()))
+                    .optionalField("bio", RegisterUserRequest::getBio, Function.identity(),
+                            bio -> bio.length() <= MAX_BIO_LENGTH)
+                    .build();
 
     /**
-     * Returns a hashmap containing all the checks needed for
-     * validating each field of a {@link User} and {@link UserProfile} mapped to the name
-     * of the field being validated
-     * @return hashmap containing all the checks
+     * Returns the age in years of someone born on the date passed in, null if unknown
      */
-    public static Map<String, Predicate<Object>> getUserAccountChecks() {
-        if (userAccountChecks.isEmpty()) {
-            initializeChecks();
-        }
-        return userAccountChecks;
+    public static Integer calculateAge(LocalDate dob) {
+        if (dob == null) return null;
+
+        LocalDate now = LocalDate.now();
+        Integer age = now.getYear() - dob.getYear();
+        if (now.getDayOfYear() < dob.getDayOfYear()) age--;
+        return age;
     }
 
     /**
-     * Defines all the input validation predicates for
-     * user input on User and UserProfile
+     * Returns the current date without allocating, the date
+     * is only recomputed once the previous day is over
      */
-    private static void initializeChecks() {
-        Predicate<Object> usernameCheck = username -> {
-            String usernameString = (String) username;
-            return usernameString.length() <= MAX_USERNAME_LENGTH;
-        };
-        Predicate<Object> passwordCheck = password -> {
-            String passwordString = (String) password;
-            return passwordString.length() <= MAX_PASSWORD_LENGTH;
-        };
-        Predicate<Object> lastNameCheck = lastName -> {
-            String lastNameString = (String) lastName;
-            return lastNameString.length() <= MAX_LAST_NAME_LENGTH;
-        };
-        Predicate<Object> firstNameCheck = firstName -> {
-            String firstNameString = (String) firstName;
-            return firstNameString.length() <= MAX_FIRST_NAME_LENGTH;
-        };
-        Predicate<Object> dobCheck = dob -> {
-            LocalDate dateOfBirth = (LocalDate) dob;
-            return dateOfBirth.isBefore(LocalDate.now());
-        };
-        Predicate<Object> bioCheck = bio -> {
-            if (bio == null) return true;
-            String bioString = (String) bio;
-            return bioString.length() <= MAX_BIO_LENGTH;
-        };
+    public static LocalDate today() {
+        Today current = currentDay;
+        if (System.currentTimeMillis() >= current.endMillis()) {
+            current = Today.now();
+            currentDay = current;
+        }
+        return current.date();
+    }
+
+    private record Today(LocalDate date, long endMillis) {
 
-        userAccountChecks.put("username", usernameCheck);
-        userAccountChecks.put("password", passwordCheck);
-        userAccountChecks.put("lastName", lastNameCheck);
-        userAccountChecks.put("firstName", firstNameCheck);
-        userAccountChecks.put("dob", dobCheck);
-        userAccountChecks.put("bio", bioCheck);
+        static Today now() {
+            LocalDate date = LocalDate.now();
+            long endMillis = date.plusDays(1)
+                    .atStartOfDay(ZoneId.systemDefault())
+                    .toInstant()
+                    .toEpochMilli();
+            return new Today(date, endMillis);
+        }
     }
 }
@@ -0,0 +1,193 @@
+package com.realbeatz.utils;
+
+import com.realbeatz.exceptions.InvalidUserInputException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable set of input checks for the fields of one payload type, built once
+ * and shared by every request thread. A whole payload is validated in a single
+ * pass that reports every invalid field, and nothing is allocated unless a
+ * field turns out to be invalid
+ *
+ * @param <T> type of the payload validated
+ */
+public class ValidationSchema<T> {
+    private final Rule<T, ?>[] rules;
+    private final Map<String, Rule<T, ?>> rulesByField;
+
+    private ValidationSchema(List<Rule<T, ?>> rules) {
+        @SuppressWarnings("unchecked")
+        Rule<T, ?>[] array = rules.toArray(new Rule[0]);
+        this.rules = array;
+        this.rulesByField = rules.stream()
+                .collect(Collectors.toUnmodifiableMap(Rule::field, Function.identity()));
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Checks every field of a payload
+     *
+     * @return the invalid fields, an empty list if the payload is valid
+     */
+    public List<Violation> validate(T payload) {
+        List<Violation> violations = Collections.emptyList();
+        for (Rule<T, ?> rule : rules) {
+            violations = rule.check(payload, violations);
+        }
+        return violations;
+    }
+
+    /**
+     * Checks the new values of the fields being updated by a PATCH request,
+     * converting them to the type of the field first (Ex. dob)
+     *
+     * @param updates new values mapped to the name of the field
+     * @param fields  names of the fields being updated, fields without checks are skipped
+     * @return the invalid fields, an empty list if every update is valid
+     */
+    public List<Violation> validateUpdates(Map<String, String> updates, List<String> fields) {
+        List<Violation> violations = Collections.emptyList();
+        for (int i = 0; i < fields.size(); i++) {
+            Rule<T, ?> rule = rulesByField.get(fields.get(i));
+            if (rule != null) {
+                violations = rule.checkUpdate(updates.get(rule.field()), violations);
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Same as {@link #validate(Object)}
+     *
+     * @throws InvalidUserInputException listing every invalid field
+     */
+    public void check(T payload) throws InvalidUserInputException {
+        throwIfInvalid(validate(payload));
+    }
+
+    /**
+     * Same as {@link #validateUpdates(Map, List)}
+     *
+     * @throws InvalidUserInputException listing every invalid field
+     */
+    public void checkUpdates(Map<String, String> updates, List<String> fields) throws InvalidUserInputException {
+        throwIfInvalid(validateUpdates(updates, fields));
+    }
+
+    private static void throwIfInvalid(List<Violation> violations) throws InvalidUserInputException {
+        if (violations.isEmpty()) return;
+        throw new InvalidUserInputException(violations.stream()
+                .map(Violation::getMessage)
+                .collect(Collectors.joining("; ")));
+    }
+
+    /**
+     * A field that failed its check along with the value rejected
+     */
+    public record Violation(String field, Object value) {
+
+        public String getMessage() {
+            return "Input: " + value + " for field: " + field + " is not valid";
+        }
+    }
+
+    public static class Builder<T> {
+        private final List<Rule<T, ?>> rules = new ArrayList<>();
+
+        /**
+         * Adds a field that must be present and pass the check passed in
+         *
+         * @param field  name of the field, as sent in PATCH requests
+         * @param getter reads the field from a payload
+         * @param parser converts the string sent in a PATCH request to the type of the field
+         * @param check  whether a non-null value is valid
+         */
+        public <V> Builder<T> field(String field,
+                                    Function<? super T, ? extends V> getter,
+                                    Function<String, ? extends V> parser,
+                                    Predicate<? super V> check) {
+            return add(new Rule<>(field, getter, parser, check, false));
+        }
+
+        /**
+         * Same as {@link #field(String, Function, Function, Predicate)} for a field
+         * that is allowed to be null
+         */
+        public <V> Builder<T> optionalField(String field,
+                                            Function<? super T, ? extends V> getter,
+                                            Function<String, ? extends V> parser,
+                                            Predicate<? super V> check) {
+            return add(new Rule<>(field, getter, parser, check, true));
+        }
+
+        /**
+         * Shorthand for a string field that must not be longer than maxLength
+         */
+        public Builder<T> maxLength(String field,
+                                    Function<? super T, String> getter,
+                                    int maxLength) {
+            return field(field, getter, Function.identity(), value -> value.length() <= maxLength);
+        }
+
+        private Builder<T> add(Rule<T, ?> rule) {
+            if (rules.stream().anyMatch(existing -> existing.field().equals(rule.field()))) {
+                throw new IllegalArgumentException(
+                        "Field: " + rule.field() + " already has a check");
+            }
+            rules.add(rule);
+            return this;
+        }
+
+        public ValidationSchema<T> build() {
+            return new ValidationSchema<>(rules);
+        }
+    }
+
+    private record Rule<T, V>(String field,
+                              Function<? super T, ? extends V> getter,
+                              Function<String, ? extends V> parser,
+                              Predicate<? super V> check,
+                              boolean nullable) {
+
+        List<Violation> check(T payload, List<Violation> violations) {
+            V value = getter.apply(payload);
+            return isValid(value) ? violations : add(violations, value);
+        }
+
+        List<Violation> checkUpdate(String input, List<Violation> violations) {
+            if (input == null) {
+                return nullable ? violations : add(violations, null);
+            }
+            V value;
+            try {
+                value = parser.apply(input);
+            } catch (RuntimeException e) {
+                return add(violations, input);
+            }
+            return isValid(value) ? violations : add(violations, input);
+        }
+
+        private boolean isValid(V value) {
+            if (value == null) return nullable;
+            return check.test(value);
+        }
+
+        private List<Violation> add(List<Violation> violations, Object value) {
+            // the list is only created once the first invalid field is found
+            if (violations.isEmpty()) violations = new ArrayList<>();
+            violations.add(new Violation(field, value));
+            return violations;
+        }
+    }
+}
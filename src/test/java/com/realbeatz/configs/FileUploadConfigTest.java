@@ -0,0 +1,16 @@
+package com.realbeatz.configs;
+
+import org.junit.jupiter.api.Test;
+
+import static com.realbeatz.configs.FileUploadConfig.stripFileScheme;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FileUploadConfigTest {
+
+    @Test
+    void keepsBasePathsAbsolute() {
+        assertEquals("/opt/realbeatz/target/classes/", stripFileScheme("file:/opt/realbeatz/target/classes/"));
+        assertEquals("/opt/app/realbeatz.jar!/", stripFileScheme("jar:file:/opt/app/realbeatz.jar!/"));
+        assertEquals("C:/realbeatz/target/classes/", stripFileScheme("file:/C:/realbeatz/target/classes/"));
+    }
+}
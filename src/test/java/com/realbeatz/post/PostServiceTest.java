@@ -0,0 +1,126 @@
+package com.realbeatz.post;
+
+import com.realbeatz.post.comment.CommentDTO;
+import com.realbeatz.post.comment.CommentRepository;
+import com.realbeatz.post.comment.CommentView;
+import com.realbeatz.post.like.LikeService;
+import com.realbeatz.post.like.LikerBitmaps;
+import com.realbeatz.post.timeline.TimelineItem;
+import com.realbeatz.post.timeline.TimelineService;
+import com.realbeatz.user.UserService;
+import com.realbeatz.utils.ETagUtils.Tagged;
+import com.realbeatz.utils.PaginationUtils.CursorPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static com.realbeatz.utils.PostUtils.LATEST_COMMENTS_PREVIEW_SIZE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class PostServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2022, 11, 5, 18, 30);
+
+    private final PostRepository postRepository = mock(PostRepository.class);
+    private final CommentRepository commentRepository = mock(CommentRepository.class);
+    private final UserService userService = mock(UserService.class);
+    private final TimelineService timelineService = mock(TimelineService.class);
+    private final LikeService likeService = mock(LikeService.class);
+    private final LikerBitmaps likerBitmaps = mock(LikerBitmaps.class);
+
+    // search and trending are only used when posts change
+    private final PostService postService = new PostService(
+            postRepository, commentRepository, userService,
+            timelineService, likeService, null, null,
+            new PostMapper(commentRepository, likerBitmaps));
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(userService.getUserIdByUsername("alice")).thenReturn(1L);
+        when(userService.getUserIdByUsername("bob")).thenReturn(2L);
+        when(likeService.getLikeCount(any(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(1));
+        when(likerBitmaps.getLikeCount(any(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(1));
+    }
+
+    @Test
+    void pagesThroughTheFeedWithCursors() throws Exception {
+        // looks one post ahead to tell whether there is a next page
+        when(postRepository.findViewPageByCreatorId(eq(2L), any()))
+                .thenReturn(List.of(post(5, NOW), post(4, NOW), post(3, NOW.minusSeconds(1))));
+        when(postRepository.findViewPageByCreatorIdBefore(eq(2L), eq(NOW), eq(4L), any()))
+                .thenReturn(List.of(post(3, NOW.minusSeconds(1))));
+
+        CursorPage<PostDTO> first = postService.getPostsByUser("bob", null, 2);
+        assertEquals(List.of(5L, 4L), ids(first));
+        assertNotNull(first.nextCursor());
+
+        CursorPage<PostDTO> last = postService.getPostsByUser("bob", first.nextCursor(), 2);
+        assertEquals(List.of(3L), ids(last));
+        assertNull(last.nextCursor());
+    }
+
+    @Test
+    void mapsTheHomeFeedWithCommentPreviewsAndUnflushedLikes() throws Exception {
+        // post 13 was deleted after it was fanned out
+        when(timelineService.getTimeline(1L, null, 10)).thenReturn(new CursorPage<>(List.of(
+                new TimelineItem(12L, NOW), new TimelineItem(13L, NOW), new TimelineItem(11L, NOW.minusSeconds(1))), null));
+        when(postRepository.findViewsByIdIn(anyCollection()))
+                .thenReturn(List.of(post(11, NOW.minusSeconds(1)), post(12, NOW)));
+        when(commentRepository.findLatestIdsByPostIdIn(List.of(12L, 11L), LATEST_COMMENTS_PREVIEW_SIZE))
+                .thenReturn(List.of(102L, 101L));
+        when(commentRepository.findViewsByIdIn(List.of(102L, 101L))).thenReturn(List.of(
+                comment(102, 11, "second"), comment(101, 11, "first")));
+        when(likerBitmaps.likedBy(1L, List.of(12L, 11L))).thenReturn(Map.of(11L, true, 12L, false));
+        when(likerBitmaps.getLikeCount(11L, 4)).thenReturn(5);
+
+        Tagged<CursorPage<PostDTO>> feed = postService.getPostsRelatedToUser("alice", null, 10, null);
+        List<PostDTO> posts = feed.body().items();
+
+        assertEquals(List.of(12L, 11L), posts.stream().map(PostDTO::getId).toList());
+        assertEquals(List.of(), posts.get(0).getComments());
+        assertEquals(List.of("second", "first"),
+                posts.get(1).getComments().stream().map(CommentDTO::getContent).toList());
+        assertEquals(4, posts.get(0).getLikes());
+        assertEquals(5, posts.get(1).getLikes());
+        assertFalse(posts.get(0).getLikedByMe());
+        assertTrue(posts.get(1).getLikedByMe());
+
+        // the same page is only tagged when the client already has it
+        Tagged<CursorPage<PostDTO>> unchanged = postService.getPostsRelatedToUser("alice", null, 10, feed.etag());
+        assertTrue(unchanged.isNotModified());
+        assertEquals(feed.etag(), unchanged.etag());
+    }
+
+    @Test
+    void skipsLoadingCommentsWhenNoPostHasAny() throws Exception {
+        when(postRepository.findViewPageByCreatorId(eq(2L), any())).thenReturn(List.of(post(5, NOW)));
+        when(commentRepository.findLatestIdsByPostIdIn(List.of(5L), LATEST_COMMENTS_PREVIEW_SIZE))
+                .thenReturn(List.of());
+
+        CursorPage<PostDTO> page = postService.getPostsByUser("bob", null, 2);
+
+        assertEquals(List.of(), page.items().get(0).getComments());
+        verify(commentRepository, never()).findViewsByIdIn(any());
+    }
+
+    private static List<Long> ids(CursorPage<PostDTO> page) {
+        return page.items().stream().map(PostDTO::getId).toList();
+    }
+
+    private static PostView post(long id, LocalDateTime postTime) {
+        return new PostView(id, "post " + id, "song", "artist", 4, 0,
+                2L, "bob", null, postTime);
+    }
+
+    private static CommentView comment(long id, long postId, String content) {
+        return new CommentView(id, content, NOW, postId, 1L, "alice");
+    }
+}
@@ -0,0 +1,136 @@
+package com.realbeatz.post.like;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LikerSetTest {
+
+    @Test
+    void countsEachUserOnce() {
+        LikerSet likers = LikerSet.empty();
+
+        assertTrue(likers.add(7));
+        assertFalse(likers.add(7));
+        assertTrue(likers.add(8));
+        assertTrue(likers.remove(7));
+        assertFalse(likers.remove(7));
+
+        assertEquals(1, likers.size());
+        assertTrue(likers.contains(8));
+        assertFalse(likers.contains(7));
+    }
+
+    @Test
+    void countsConcurrentLikesOnTheSamePostExactly() throws Exception {
+        LikerSet likers = LikerSet.empty();
+        int threads = 8;
+        int users = 10_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> added = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                // every thread likes for every user, only one of them gets each like in
+                added.add(executor.submit(() -> LongStream.rangeClosed(1, users)
+                        .filter(likers::add)
+                        .count()));
+            }
+            long total = 0;
+            for (Future<Long> future : added) total += future.get();
+
+            assertEquals(users, total);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(users, likers.size());
+        assertEquals(users, likers.snapshot().likeCount());
+    }
+
+    @Test
+    void pagesThroughLikersInAscendingOrder() {
+        LikerSet likers = LikerSet.empty();
+        for (long userId = 1; userId <= 50; userId++) {
+            likers.add(userId * 3);
+        }
+
+        assertEquals(List.of(3L, 6L, 9L, 12L), likers.page(null, 4));
+        assertEquals(List.of(15L, 18L, 21L), likers.page(12L, 3));
+        assertEquals(List.of(150L), likers.page(147L, 10));
+        assertEquals(List.of(), likers.page(150L, 10));
+    }
+
+    @Test
+    void readsBackWhatASnapshotWrote() {
+        LikerSet likers = LikerSet.empty();
+        likers.add(1);
+        likers.add(1_000_000_007L);
+        LikerSet.Snapshot snapshot = likers.snapshot();
+
+        LikerSet read = LikerSet.deserialize(snapshot.bytes(), 4);
+
+        assertEquals(2, read.size());
+        assertTrue(read.contains(1_000_000_007L));
+        assertEquals(4L, read.snapshot().storedVersion());
+        assertTrue(read.snapshot().changes().isEmpty());
+    }
+
+    @Test
+    void forgetsWrittenChangesUnlessMadeAgain() {
+        LikerSet likers = LikerSet.empty();
+        likers.add(1);
+        likers.add(2);
+        LikerSet.Snapshot snapshot = likers.snapshot();
+        assertEquals(Map.of(1L, true, 2L, true), snapshot.changes());
+
+        likers.remove(2);
+        likers.written(snapshot, 0);
+
+        LikerSet.Snapshot next = likers.snapshot();
+        assertEquals(Map.of(2L, false), next.changes());
+        assertEquals(0L, next.storedVersion());
+    }
+
+    @Test
+    void replaysUnwrittenChangesOnTheStoredSet() {
+        // another writer stored users 1 and 2
+        LikerSet stored = LikerSet.empty();
+        stored.add(1);
+        stored.add(2);
+        byte[] bytes = stored.snapshot().bytes();
+
+        LikerSet likers = LikerSet.empty();
+        likers.add(2);
+        likers.add(3);
+        likers.rebase(bytes, 5L);
+
+        // user 2 liked on both sides and is counted once
+        assertEquals(3, likers.size());
+        assertEquals(List.of(1L, 2L, 3L), likers.page(null, 10));
+        assertEquals(5L, likers.snapshot().storedVersion());
+        assertEquals(Map.of(2L, true, 3L, true), likers.snapshot().changes());
+    }
+
+    @Test
+    void isOnlyReleasedWhenUnchangedSinceItsSnapshot() {
+        LikerSet likers = LikerSet.empty();
+        likers.add(1);
+        LikerSet.Snapshot snapshot = likers.snapshot();
+        likers.add(2);
+
+        boolean[] released = {false};
+        assertFalse(likers.releaseIfUnchanged(snapshot, () -> released[0] = true));
+        assertFalse(released[0]);
+
+        assertTrue(likers.releaseIfUnchanged(likers.snapshot(), () -> released[0] = true));
+        assertTrue(released[0]);
+    }
+}
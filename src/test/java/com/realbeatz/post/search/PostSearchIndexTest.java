@@ -0,0 +1,45 @@
+package com.realbeatz.post.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostSearchIndexTest {
+
+    // only rebuild reads the posts table
+    private final PostSearchIndex index = new PostSearchIndex(null);
+
+    @Test
+    void ranksPostsMatchingMoreOfTheQueryFirst() {
+        index.index(new SearchDocument(1L, "Shake It Off", "Taylor Swift", "on repeat"));
+        index.index(new SearchDocument(2L, "Halo", "Beyoncé", "on repeat"));
+        index.index(new SearchDocument(3L, "Love Story", "Taylor Swift", "a classic"));
+
+        assertEquals(List.of(1L, 3L), index.search("taylor repeat", 2));
+        assertEquals(List.of(2L), index.search("beyonce", 10));
+        assertEquals(List.of(), index.search("drake", 10));
+    }
+
+    @Test
+    void expandsPrefixesToTheTermsInTheMostPosts() {
+        // more rare terms sorting before the common one than a prefix expands to
+        long postId = 1;
+        for (char first = 'a'; first <= 'c'; first++) {
+            for (char second = 'a'; second <= 'z'; second++) {
+                index.index(new SearchDocument(postId++, "song", "artist", "sw" + first + second));
+            }
+        }
+        for (long common = 0; common < 3; common++) {
+            index.index(new SearchDocument(postId++, "song", "artist", "swift"));
+        }
+
+        List<Long> found = index.search("sw*", 1_000);
+
+        assertTrue(found.containsAll(List.of(postId - 3, postId - 2, postId - 1)), found.toString());
+        // the common term and the first 63 rare ones, one post each
+        assertEquals(3 + 63, found.size());
+    }
+}
@@ -0,0 +1,55 @@
+package com.realbeatz.post.trending;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTest {
+
+    @Test
+    void estimatesExactCountsWithoutCollisions() {
+        CountMinSketch sketch = new CountMinSketch(1024, 4);
+        for (int i = 0; i < 5; i++) sketch.add("anti-hero");
+        sketch.add("karma");
+
+        assertEquals(5, sketch.estimate("anti-hero"));
+        assertEquals(1, sketch.estimate("karma"));
+        assertEquals(0, sketch.estimate("lavender haze"));
+    }
+
+    @Test
+    void neverUnderCountsAndOverCountsByLittle() {
+        int width = 256;
+        CountMinSketch sketch = new CountMinSketch(width, 4);
+        Map<String, Integer> counts = new HashMap<>();
+        Random random = new Random(42);
+        int total = 20_000;
+        for (int i = 0; i < total; i++) {
+            // a few keys are much more frequent than the rest
+            String key = "song-" + (random.nextBoolean() ? random.nextInt(10) : random.nextInt(5_000));
+            sketch.add(key);
+            counts.merge(key, 1, Integer::sum);
+        }
+
+        counts.forEach((key, count) -> {
+            long estimate = sketch.estimate(key);
+            assertTrue(estimate >= count, key + " under counted");
+            // e / width of the total, with high probability
+            assertTrue(estimate - count <= Math.E / width * total, key + " over counted by " + (estimate - count));
+        });
+    }
+
+    @Test
+    void clearForgetsEveryKey() {
+        CountMinSketch sketch = new CountMinSketch(64, 3);
+        sketch.add("shake it off");
+        sketch.clear();
+
+        assertEquals(0, sketch.estimate("shake it off"));
+    }
+}
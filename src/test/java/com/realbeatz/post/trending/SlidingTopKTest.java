@@ -0,0 +1,70 @@
+package com.realbeatz.post.trending;
+
+import com.realbeatz.post.trending.SlidingTopK.Ranked;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlidingTopKTest {
+
+    private static final TrendingWindow WINDOW = TrendingWindow.HOUR;
+    private static final long BUCKET = WINDOW.getBucketMillis();
+    private static final long NOW = 1_000 * WINDOW.getLength().toMillis();
+
+    @Test
+    void ranksKeysMostFrequentFirst() {
+        SlidingTopK<String> topK = new SlidingTopK<>(WINDOW, 8, 256, 4);
+        add(topK, "cruel summer", 5, NOW);
+        add(topK, "august", 3, NOW - BUCKET);
+        add(topK, "willow", 1, NOW - 2 * BUCKET);
+
+        assertEquals(List.of(new Ranked<>("cruel summer", 5), new Ranked<>("august", 3)),
+                topK.top(2, NOW));
+    }
+
+    @Test
+    void sumsAKeyOverEveryBucketOfTheWindow() {
+        SlidingTopK<String> topK = new SlidingTopK<>(WINDOW, 8, 256, 4);
+        for (int bucket = 0; bucket < WINDOW.getBuckets(); bucket++) {
+            add(topK, "style", 2, NOW - bucket * BUCKET);
+        }
+
+        assertEquals(List.of(new Ranked<>("style", 2L * WINDOW.getBuckets())), topK.top(1, NOW));
+    }
+
+    @Test
+    void forgetsBucketsThatSlidOutOfTheWindow() {
+        SlidingTopK<String> topK = new SlidingTopK<>(WINDOW, 8, 256, 4);
+        add(topK, "old", 10, NOW);
+        add(topK, "new", 1, NOW + WINDOW.getLength().toMillis() - BUCKET);
+
+        long later = NOW + WINDOW.getLength().toMillis();
+        assertEquals(List.of(new Ranked<>("new", 1)), topK.top(5, later));
+    }
+
+    @Test
+    void ignoresTimesAlreadyOutOfTheWindow() {
+        SlidingTopK<String> topK = new SlidingTopK<>(WINDOW, 8, 256, 4);
+        add(topK, "late", 3, NOW - WINDOW.getLength().toMillis());
+
+        assertTrue(topK.top(5, NOW).isEmpty());
+    }
+
+    @Test
+    void keepsTheLatestItemOfAKey() {
+        SlidingTopK<String> topK = new SlidingTopK<>(WINDOW, 8, 256, 4);
+        topK.add("song-1", "Lover", NOW - BUCKET, NOW);
+        topK.add("song-1", "Lover (Remix)", NOW, NOW);
+
+        assertEquals(List.of(new Ranked<>("Lover (Remix)", 2)), topK.top(1, NOW));
+    }
+
+    private static void add(SlidingTopK<String> topK, String key, int times, long timeMillis) {
+        for (int i = 0; i < times; i++) {
+            topK.add(key, key, timeMillis, Math.max(timeMillis, NOW));
+        }
+    }
+}
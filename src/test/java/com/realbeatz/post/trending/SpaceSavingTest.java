@@ -0,0 +1,73 @@
+package com.realbeatz.post.trending;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+
+    @Test
+    void countsExactlyUnderCapacity() {
+        SpaceSaving<String> summary = new SpaceSaving<>(3);
+        summary.add("a", "first a");
+        summary.add("a", "second a");
+        summary.add("b", "b");
+
+        assertEquals(2, summary.upperBound("a"));
+        assertEquals(1, summary.upperBound("b"));
+        assertEquals(0, summary.upperBound("c"));
+        assertEquals("second a", itemsByKey(summary).get("a"));
+    }
+
+    @Test
+    void replacesTheSmallestCounterWhenFull() {
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        summary.add("a", "a");
+        summary.add("a", "a");
+        summary.add("b", "b");
+        summary.add("c", "c");
+
+        // c took the counter of b and its count
+        assertEquals(2, summary.counters().size());
+        assertEquals(2, summary.upperBound("a"));
+        assertEquals(2, summary.upperBound("c"));
+        // b is no longer tracked, seen at most as often as the smallest counter
+        assertEquals(2, summary.upperBound("b"));
+    }
+
+    @Test
+    void keepsKeysSeenMoreThanTotalOverCapacity() {
+        int capacity = 10;
+        SpaceSaving<String> summary = new SpaceSaving<>(capacity);
+        int total = 0;
+        for (int i = 0; i < 1_000; i++) {
+            summary.add("heavy", "heavy");
+            summary.add("rare-" + i, "rare");
+            summary.add("rare-" + i + "-again", "rare");
+            total += 3;
+        }
+
+        assertTrue(1_000 > total / capacity);
+        assertTrue(itemsByKey(summary).containsKey("heavy"));
+        assertTrue(summary.upperBound("heavy") >= 1_000);
+    }
+
+    @Test
+    void clearDropsEveryCounter() {
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        summary.add("a", "a");
+        summary.clear();
+
+        assertTrue(summary.counters().isEmpty());
+        assertEquals(0, summary.upperBound("a"));
+    }
+
+    private static Map<String, String> itemsByKey(SpaceSaving<String> summary) {
+        return summary.counters().stream()
+                .collect(Collectors.toMap(SpaceSaving.Counter::getKey, SpaceSaving.Counter::getItem));
+    }
+}
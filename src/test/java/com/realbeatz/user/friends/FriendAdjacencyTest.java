@@ -0,0 +1,101 @@
+package com.realbeatz.user.friends;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FriendAdjacencyTest {
+
+    @Test
+    void keepsFriendsSortedWhateverTheOrderTheyAreAdded() {
+        FriendAdjacency adjacency = new FriendAdjacency(0);
+        assertTrue(adjacency.add(1, 5));
+        assertTrue(adjacency.add(1, 2));
+        assertTrue(adjacency.add(1, 9));
+        assertTrue(adjacency.add(1, 3));
+        assertFalse(adjacency.add(1, 5));
+
+        assertArrayEquals(new long[]{2, 3, 5, 9}, adjacency.friendsOf(1));
+        assertEquals(4, adjacency.degree(1));
+        assertTrue(adjacency.contains(1, 9));
+        assertFalse(adjacency.contains(1, 4));
+        assertEquals(4, adjacency.friendships());
+    }
+
+    @Test
+    void growsPastTheExpectedNumberOfUsers() {
+        FriendAdjacency adjacency = new FriendAdjacency(2);
+        int users = 10_000;
+        for (long userId = 1; userId <= users; userId++) {
+            for (long friendId = 1; friendId <= userId % 7; friendId++) {
+                adjacency.add(userId, friendId);
+            }
+        }
+
+        assertEquals(users - users / 7, adjacency.users());
+        for (long userId = 1; userId <= users; userId++) {
+            assertEquals(userId % 7, adjacency.degree(userId), "degree of " + userId);
+            if (userId % 7 > 0) assertTrue(adjacency.contains(userId, userId % 7));
+        }
+    }
+
+    @Test
+    void removesFriends() {
+        FriendAdjacency adjacency = new FriendAdjacency(0);
+        adjacency.add(1, 2);
+        adjacency.add(1, 3);
+        adjacency.add(1, 4);
+
+        assertTrue(adjacency.remove(1, 3));
+        assertFalse(adjacency.remove(1, 3));
+        assertFalse(adjacency.remove(7, 1));
+        assertArrayEquals(new long[]{2, 4}, adjacency.friendsOf(1));
+        assertEquals(2, adjacency.friendships());
+    }
+
+    @Test
+    void removingEveryFriendKeepsOtherUsersReachable() {
+        FriendAdjacency adjacency = new FriendAdjacency(0);
+        for (long userId = 1; userId <= 100; userId++) {
+            adjacency.add(userId, userId + 1);
+        }
+
+        assertArrayEquals(new long[]{51}, adjacency.removeAll(50));
+        assertArrayEquals(new long[0], adjacency.removeAll(50));
+        assertEquals(0, adjacency.degree(50));
+        // users probed past the emptied slot are still found
+        for (long userId = 1; userId <= 100; userId++) {
+            if (userId != 50) assertTrue(adjacency.contains(userId, userId + 1), "friend of " + userId);
+        }
+        assertEquals(99, adjacency.friendships());
+    }
+
+    @Test
+    void trimKeepsEveryFriend() {
+        FriendAdjacency adjacency = new FriendAdjacency(0);
+        for (long friendId = 2; friendId <= 20; friendId++) {
+            adjacency.add(1, friendId);
+        }
+        adjacency.removeAll(1);
+        adjacency.add(2, 1);
+        adjacency.trim();
+
+        assertArrayEquals(new long[0], adjacency.friendsOf(1));
+        assertArrayEquals(new long[]{1}, adjacency.friendsOf(2));
+        assertTrue(adjacency.add(1, 3));
+    }
+
+    @Test
+    void rejectsTheIdMarkingFreeSlots() {
+        FriendAdjacency adjacency = new FriendAdjacency(0);
+
+        assertThrows(IllegalArgumentException.class, () -> adjacency.add(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> adjacency.add(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> adjacency.add(-1, 1));
+        // 0 is never found, even though free slots hold it
+        assertFalse(adjacency.contains(0, 1));
+        assertArrayEquals(new long[0], adjacency.friendsOf(0));
+        assertEquals(0, adjacency.degree(0));
+        assertEquals(0, adjacency.users());
+    }
+}
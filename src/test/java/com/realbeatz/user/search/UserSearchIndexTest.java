@@ -0,0 +1,240 @@
+package com.realbeatz.user.search;
+
+import com.realbeatz.user.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+import static com.realbeatz.utils.SearchUtils.MAX_USER_SEARCH_RESULTS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserSearchIndexTest {
+
+    // only rebuild reads the users table
+    private final UserSearchIndex index = new UserSearchIndex(null);
+
+    @BeforeEach
+    void setUp() {
+        index.index(user(1, "tswift", "Taylor", "Swift"));
+        index.index(user(2, "tlautner", "Taylor", "Lautner"));
+        index.index(user(3, "zed", "Zéd", "Beyoncé"));
+    }
+
+    @Test
+    void findsUsersByAnyOfTheirNames() {
+        assertEquals(List.of("tlautner", "tswift"), usernames("tay"));
+        assertEquals(List.of("tswift"), usernames("Taylor S"));
+        assertEquals(List.of("zed"), usernames("bey"));
+        assertEquals(List.of("zed"), usernames("ZED"));
+        assertEquals(List.of(), usernames("x"));
+    }
+
+    @Test
+    void ranksUsersWithMoreFriendsFirst() {
+        index.onFriendshipCreated(1L, 3L);
+        assertEquals(List.of("tswift", "tlautner"), usernames("tay"));
+
+        index.onFriendshipCreated(2L, 3L);
+        index.onFriendshipCreated(2L, 1L);
+        assertEquals(List.of("tlautner", "tswift"), usernames("tay"));
+
+        index.onFriendshipRemoved(2L, 3L);
+        index.onFriendshipRemoved(2L, 1L);
+        assertEquals(List.of("tswift", "tlautner"), usernames("tay"));
+    }
+
+    @Test
+    void renamedUsersAreOnlyFoundByTheirNewNames() {
+        index.onFriendshipCreated(1L, 3L);
+        index.index(user(1, "swifty", "Taylor", "Swift"));
+
+        assertEquals(List.of("swifty"), usernames("sw"));
+        assertEquals(List.of(), usernames("tsw"));
+        // the friends of a renamed user are kept
+        assertEquals(List.of("swifty", "tlautner"), usernames("tay"));
+        assertEquals(Optional.empty(), index.get("tswift"));
+        assertEquals(1L, index.get("swifty").orElseThrow().userId());
+    }
+
+    @Test
+    void deletedUsersAreNoLongerFound() {
+        index.remove(1L);
+
+        assertEquals(List.of("tlautner"), usernames("tay"));
+        assertEquals(List.of(), usernames("sw"));
+        assertEquals(Optional.empty(), index.get(1L));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void refillsTopListsWhenAUserLeavesAFullNode() {
+        // more users named fan than a node keeps, user 12 ranks last among the ones without friends
+        for (long userId = 10; userId < 35; userId++) {
+            String username = userId == 12 ? "fanzz" : "fan" + userId;
+            index.index(user(userId, username, "Fan", "Number " + userId));
+        }
+        for (long userId = 10; userId < 20; userId++) {
+            for (long friendId = userId + 1; friendId < 20; friendId++) {
+                index.onFriendshipCreated(userId, friendId);
+            }
+        }
+        assertEquals(MAX_USER_SEARCH_RESULTS, usernames("fan").size());
+
+        // a deleted user's friends lose them first, as when deleting a user
+        for (long friendId = 11; friendId < 20; friendId++) {
+            index.onFriendshipRemoved(10L, friendId);
+        }
+        index.remove(10L);
+        index.index(user(11, "renamed", "Renamed", "User"));
+        // drops to the last place, below users left out of the list
+        for (long friendId = 11; friendId < 20; friendId++) {
+            if (friendId != 12) index.onFriendshipRemoved(12L, friendId);
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (long userId = 13; userId < 13 + MAX_USER_SEARCH_RESULTS; userId++) {
+            expected.add("fan" + userId);
+        }
+        assertEquals(expected, usernames("fan"));
+    }
+
+    @Test
+    void rebuildsFromTheUsersTable() {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findFriendCounts()).thenReturn(List.of(new FriendCount(2L, 1L), new FriendCount(3L, 1L)));
+        when(userRepository.streamSearchDocuments()).thenReturn(Stream.of(
+                user(1, "tswift", "Taylor", "Swift"),
+                user(2, "tlautner", "Taylor", "Lautner"),
+                user(3, "zed", "Zéd", "Beyoncé")));
+        UserSearchIndex index = new UserSearchIndex(userRepository);
+
+        index.rebuild();
+
+        assertEquals(3, index.size());
+        assertEquals(List.of(2L, 1L), userIds(index, "tay"));
+    }
+
+    @Test
+    void keepsChangesMadeWhileRebuilding() {
+        UserRepository userRepository = mock(UserRepository.class);
+        UserSearchIndex index = new UserSearchIndex(userRepository);
+        when(userRepository.findFriendCounts()).thenReturn(List.of());
+        // the users read were committed before the changes made while reading them
+        when(userRepository.streamSearchDocuments()).thenAnswer(invocation -> {
+            index.index(user(4, "tnew", "Taylor", "New"));
+            index.index(user(2, "lautner", "Taylor", "Lautner"));
+            index.remove(1L);
+            index.onFriendshipCreated(2L, 3L);
+            index.onFriendshipCreated(2L, 4L);
+            return Stream.of(
+                    user(1, "tswift", "Taylor", "Swift"),
+                    user(2, "tlautner", "Taylor", "Lautner"),
+                    user(3, "zed", "Zéd", "Beyoncé"));
+        });
+
+        index.rebuild();
+
+        assertEquals(3, index.size());
+        assertEquals(List.of(2L, 4L), userIds(index, "tay"));
+        assertEquals(Optional.empty(), index.get(1L));
+        assertEquals(Optional.empty(), index.get("tlautner"));
+        assertEquals(2L, index.get("lautner").orElseThrow().userId());
+    }
+
+    @Test
+    void keepsTheSameTopListsAsRankingEveryUser() {
+        // without the users of setUp
+        UserSearchIndex index = new UserSearchIndex(null);
+        Random random = new Random(7);
+        Map<Long, UserSearchDocument> documents = new HashMap<>();
+        Map<Long, Long> friends = new HashMap<>();
+        long nextUserId = 100;
+
+        for (int step = 0; step < 5_000; step++) {
+            List<Long> userIds = new ArrayList<>(documents.keySet());
+            int operation = random.nextInt(10);
+            if (operation < 3 || userIds.size() < 2) {
+                long userId = nextUserId++;
+                UserSearchDocument document = user(userId, "u" + name(random) + userId, name(random), name(random));
+                documents.put(userId, document);
+                friends.put(userId, 0L);
+                index.index(document);
+            } else if (operation < 4) {
+                long userId = userIds.get(random.nextInt(userIds.size()));
+                documents.remove(userId);
+                friends.remove(userId);
+                index.remove(userId);
+            } else if (operation < 5) {
+                long userId = userIds.get(random.nextInt(userIds.size()));
+                UserSearchDocument document = user(userId, "u" + name(random) + userId, name(random), name(random));
+                documents.put(userId, document);
+                index.index(document);
+            } else {
+                long userId = userIds.get(random.nextInt(userIds.size()));
+                long friendId = userIds.get(random.nextInt(userIds.size()));
+                if (userId == friendId) continue;
+                if (operation < 8) {
+                    friends.merge(userId, 1L, Long::sum);
+                    friends.merge(friendId, 1L, Long::sum);
+                    index.onFriendshipCreated(userId, friendId);
+                } else if (friends.get(userId) > 0 && friends.get(friendId) > 0) {
+                    friends.merge(userId, -1L, Long::sum);
+                    friends.merge(friendId, -1L, Long::sum);
+                    index.onFriendshipRemoved(userId, friendId);
+                }
+            }
+
+            if (step % 100 != 0) continue;
+            for (String prefix : List.of("a", "b", "ab", "ca", "u", "ua", "a b", "abc")) {
+                List<Long> expected = documents.values().stream()
+                        .filter(document -> hasNameStartingWith(document, prefix))
+                        .map(UserSearchDocument::userId)
+                        .sorted(Comparator.comparingLong((Long userId) -> -friends.get(userId))
+                                .thenComparing(userId -> documents.get(userId).username())
+                                .thenComparing(Comparator.naturalOrder()))
+                        .limit(MAX_USER_SEARCH_RESULTS)
+                        .toList();
+                List<Long> found = index.search(prefix, MAX_USER_SEARCH_RESULTS).stream()
+                        .map(UserSearchDocument::userId)
+                        .toList();
+                assertEquals(expected, found, "step " + step + ", prefix '" + prefix + "'");
+            }
+        }
+    }
+
+    private List<String> usernames(String prefix) {
+        return index.search(prefix, MAX_USER_SEARCH_RESULTS).stream()
+                .map(UserSearchDocument::username)
+                .toList();
+    }
+
+    private static List<Long> userIds(UserSearchIndex index, String prefix) {
+        return index.search(prefix, MAX_USER_SEARCH_RESULTS).stream()
+                .map(UserSearchDocument::userId)
+                .toList();
+    }
+
+    private static UserSearchDocument user(long userId, String username, String firstName, String lastName) {
+        return new UserSearchDocument(userId, username, firstName, lastName, null);
+    }
+
+    // short names over a few letters, so many users share prefixes
+    private static String name(Random random) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0, length = 1 + random.nextInt(4); i < length; i++) {
+            name.append("abc".charAt(random.nextInt(3)));
+        }
+        return name.toString();
+    }
+
+    private static boolean hasNameStartingWith(UserSearchDocument document, String prefix) {
+        return document.username().startsWith(prefix) ||
+                document.firstName().startsWith(prefix) ||
+                document.lastName().startsWith(prefix) ||
+                (document.firstName() + " " + document.lastName()).startsWith(prefix);
+    }
+}
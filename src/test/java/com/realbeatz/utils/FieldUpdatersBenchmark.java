@@ -0,0 +1,74 @@
+package com.realbeatz.utils;
+
+import com.realbeatz.user.profile.UserProfile;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares applying a profile update through {@link FieldUpdaters} with
+ * the reflection based updates UserService used to do.
+ * Run with the main method, it is not picked up by the test phase
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldUpdatersBenchmark {
+    private static final List<String> UPDATABLE_USER_PROFILE_FIELDS =
+            List.of("lastName", "firstName", "dob", "bio");
+
+    private final FieldUpdaters<UserProfile> userProfileUpdaters =
+            FieldUpdaters.of(UserProfile.class, UPDATABLE_USER_PROFILE_FIELDS);
+    private final Map<String, String> updates = Map.of(
+            "firstName", "Taylor",
+            "lastName", "Swift",
+            "dob", "1989-12-13",
+            "bio", "Shake it off");
+    private UserProfile profile;
+
+    @Setup
+    public void setUp() {
+        profile = new UserProfile();
+    }
+
+    @Benchmark
+    public UserProfile reflection() {
+        updates.forEach((key, value) -> {
+            Field field = ReflectionUtils.findField(UserProfile.class, key);
+            Objects.requireNonNull(field).setAccessible(true);
+            if (key.equals("dob")) {
+                ReflectionUtils.setField(field, profile, LocalDate.parse(value));
+            } else {
+                ReflectionUtils.setField(field, profile, value);
+            }
+        });
+        return profile;
+    }
+
+    @Benchmark
+    public UserProfile fieldUpdaters() throws Exception {
+        for (Map.Entry<String, String> update : updates.entrySet()) {
+            userProfileUpdaters.update(profile, update.getKey(), update.getValue());
+        }
+        return profile;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FieldUpdatersBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
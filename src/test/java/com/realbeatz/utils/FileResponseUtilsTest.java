@@ -0,0 +1,118 @@
+package com.realbeatz.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.realbeatz.utils.FileResponseUtils.IMMUTABLE;
+import static com.realbeatz.utils.FileResponseUtils.toBufferResponse;
+import static com.realbeatz.utils.FileResponseUtils.toFileResponse;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileResponseUtilsTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void servesAFileWithItsValidators() throws Exception {
+        Path file = write("picture.png");
+
+        ResponseEntity<?> response = toFileResponse(file, IMMUTABLE, get());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        HttpHeaders headers = response.getHeaders();
+        assertNotNull(headers.getETag());
+        assertEquals(Files.getLastModifiedTime(file).toMillis() / 1000 * 1000, headers.getLastModified());
+        assertEquals(IMMUTABLE, headers.getCacheControl());
+        assertEquals("image/png", String.valueOf(headers.getContentType()));
+        assertArrayEquals(CONTENT, ((Resource) response.getBody()).getInputStream().readAllBytes());
+    }
+
+    @Test
+    void answersConditionalRequestsWithNotModified() throws Exception {
+        Path file = write("picture.png");
+        String etag = toFileResponse(file, IMMUTABLE, get()).getHeaders().getETag();
+
+        MockHttpServletRequest matching = get();
+        matching.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        ResponseEntity<?> response = toFileResponse(file, IMMUTABLE, matching);
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+
+        MockHttpServletRequest modifiedSince = get();
+        modifiedSince.addHeader(HttpHeaders.IF_MODIFIED_SINCE, Files.getLastModifiedTime(file).toMillis());
+        assertEquals(HttpStatus.NOT_MODIFIED, toFileResponse(file, IMMUTABLE, modifiedSince).getStatusCode());
+
+        // If-Modified-Since is ignored when the ETag doesn't match
+        modifiedSince.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\"");
+        assertEquals(HttpStatus.OK, toFileResponse(file, IMMUTABLE, modifiedSince).getStatusCode());
+    }
+
+    @Test
+    void handsFilesToSendfileWhenTheConnectorSupportsIt() throws Exception {
+        Path file = write("picture.png");
+        MockHttpServletRequest request = get();
+        request.setAttribute("org.apache.tomcat.sendfile.support", true);
+
+        ResponseEntity<?> response = toFileResponse(file, IMMUTABLE, request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals(CONTENT.length, response.getHeaders().getContentLength());
+        assertEquals(file.toRealPath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(0L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals((long) CONTENT.length, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    void sendsASingleByteRangeWithSendfile() throws Exception {
+        Path file = write("picture.png");
+        MockHttpServletRequest request = get();
+        request.setAttribute("org.apache.tomcat.sendfile.support", true);
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+
+        ResponseEntity<?> response = toFileResponse(file, IMMUTABLE, request);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 2-5/10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(4, response.getHeaders().getContentLength());
+        assertEquals(2L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(6L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    void servesBuffersWithTheSameValidatorsAsTheirFile() throws Exception {
+        Path file = write("picture.png");
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        ByteBuffer buffer = ByteBuffer.wrap(CONTENT);
+
+        ResponseEntity<?> fromFile = toFileResponse(file, IMMUTABLE, get());
+        ResponseEntity<?> fromBuffer = toBufferResponse(buffer, "picture.png", lastModified, IMMUTABLE, get());
+
+        assertEquals(fromFile.getHeaders().getETag(), fromBuffer.getHeaders().getETag());
+        Resource resource = (Resource) fromBuffer.getBody();
+        // every read gets the whole buffer
+        assertArrayEquals(CONTENT, resource.getInputStream().readAllBytes());
+        assertArrayEquals(CONTENT, resource.getInputStream().readAllBytes());
+        assertEquals(0, buffer.position());
+    }
+
+    private Path write(String name) throws Exception {
+        return Files.write(directory.resolve(name), CONTENT);
+    }
+
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/");
+    }
+}
@@ -0,0 +1,74 @@
+package com.realbeatz.utils;
+
+import com.realbeatz.exceptions.InvalidUserInputException;
+import com.realbeatz.utils.PaginationUtils.Cursor;
+import com.realbeatz.utils.PaginationUtils.CursorPage;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.realbeatz.utils.PaginationUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaginationUtilsTest {
+
+    private record Item(LocalDateTime time, Long id) {
+    }
+
+    @Test
+    void decodesTheCursorItEncoded() throws InvalidUserInputException {
+        for (LocalDateTime time : List.of(
+                LocalDateTime.of(2022, 11, 5, 18, 30, 15, 123_456_789),
+                // printed without its seconds
+                LocalDateTime.of(2022, 11, 5, 18, 30),
+                LocalDateTime.of(1999, 1, 1, 0, 0, 0, 1_000))) {
+            String cursor = encodeCursor(time, 42L);
+
+            assertEquals(new Cursor(time, 42L), decodeCursor(cursor));
+            // safe to send in a query parameter or header as is
+            assertTrue(cursor.matches("[A-Za-z0-9_-]+"), cursor);
+        }
+    }
+
+    @Test
+    void decodesNoCursorAsTheFirstPage() throws InvalidUserInputException {
+        assertNull(decodeCursor(null));
+        assertNull(decodeCursor(" "));
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        for (String cursor : List.of("not a cursor", "bm90IGEgY3Vyc29y", encodeCursor(LocalDateTime.now(), null))) {
+            InvalidUserInputException e = assertThrows(InvalidUserInputException.class, () -> decodeCursor(cursor));
+            assertEquals("Cursor: " + cursor + " is not valid", e.getMessage());
+        }
+    }
+
+    @Test
+    void pagesThroughALookAheadResult() throws InvalidUserInputException {
+        LocalDateTime start = LocalDateTime.of(2022, 11, 5, 18, 30);
+        List<Item> items = List.of(
+                new Item(start, 5L),
+                new Item(start, 4L),
+                new Item(start.minusSeconds(1), 3L));
+
+        CursorPage<Item> page = toPage(items, 2, Item::time, Item::id);
+        assertEquals(items.subList(0, 2), page.items());
+        assertEquals(new Cursor(start, 4L), decodeCursor(page.nextCursor()));
+
+        CursorPage<Item> last = toPage(items.subList(2, 3), 2, Item::time, Item::id);
+        assertEquals(items.subList(2, 3), last.items());
+        assertNull(last.nextCursor());
+        assertEquals(List.of(3L), last.map(Item::id).items());
+    }
+
+    @Test
+    void clampsPageSizes() {
+        assertEquals(DEFAULT_PAGE_SIZE, pageSize(null));
+        assertEquals(DEFAULT_PAGE_SIZE, pageSize(0));
+        assertEquals(7, pageSize(7));
+        assertEquals(MAX_PAGE_SIZE, pageSize(MAX_PAGE_SIZE + 1));
+        assertEquals(8, lookAhead(7).getPageSize());
+    }
+}